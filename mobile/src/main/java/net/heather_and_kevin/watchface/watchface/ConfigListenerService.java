@@ -0,0 +1,31 @@
+package net.heather_and_kevin.watchface.watchface;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.android.gms.wearable.MessageEvent;
+import com.google.android.gms.wearable.WearableListenerService;
+
+import net.heather_and_kevin.watchface.core.ConfigTransport;
+
+/**
+ * Hands config sync messages from the watch to {@link WatchConfigSync}. Declared in the manifest
+ * for {@link ConfigTransport#DATA_LAYER_PATH}, so Play services starts the app for them.
+ */
+public class ConfigListenerService extends WearableListenerService {
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    @Override
+    public void onMessageReceived(final MessageEvent event) {
+        if (!ConfigTransport.DATA_LAYER_PATH.equals(event.getPath())) {
+            return;
+        }
+        // called on a binder thread; the sync lives on the main thread
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                WatchConfigSync.get(ConfigListenerService.this).onMessageReceived(event);
+            }
+        });
+    }
+}
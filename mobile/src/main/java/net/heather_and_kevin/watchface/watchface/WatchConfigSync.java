@@ -0,0 +1,164 @@
+package net.heather_and_kevin.watchface.watchface;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.wearable.MessageEvent;
+import com.google.android.gms.wearable.Node;
+import com.google.android.gms.wearable.NodeApi;
+import com.google.android.gms.wearable.Wearable;
+
+import net.heather_and_kevin.watchface.core.ConfigSender;
+import net.heather_and_kevin.watchface.core.ConfigTransport;
+import net.heather_and_kevin.watchface.core.FaceConfig;
+
+/**
+ * The phone end of config sync: settings screens call {@link #edit} as the user changes things,
+ * and bursts of edits go to every connected watch as one delta over the Wearable Data Layer. The
+ * last config sent and its version are kept in preferences, so a restarted app continues the
+ * version sequence the watch knows.
+ *
+ * There is one per process, see {@link #get}. Messages from the watch reach it through
+ * {@link ConfigListenerService}, which Play services starts even when nothing else of the app is
+ * running, so a watch asking for the full config is always answered.
+ *
+ * Used on the main thread only.
+ */
+public class WatchConfigSync implements ConfigTransport, GoogleApiClient.ConnectionCallbacks {
+    private static final String TAG = "WatchConfigSync";
+    private static final String PREFERENCES = "watch_config";
+    private static final long COALESCE_MS = 250;
+
+    private static WatchConfigSync instance;
+
+    private final GoogleApiClient client;
+    private final SharedPreferences preferences;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ConfigSender sender;
+    private Receiver receiver;
+
+    /**
+     * The last message sent while disconnected; sent on connect. Older ones are dropped, the
+     * watch asks for the full config if it misses a delta.
+     */
+    private byte[] unsent;
+
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            sender.flush();
+            save();
+        }
+    };
+
+    public static WatchConfigSync get(Context context) {
+        if (instance == null) {
+            instance = new WatchConfigSync(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private WatchConfigSync(Context context) {
+        client = new GoogleApiClient.Builder(context)
+                .addApi(Wearable.API)
+                .addConnectionCallbacks(this)
+                .build();
+        preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        FaceConfig config = new FaceConfig(
+                preferences.getString("theme", FaceConfig.DEFAULT.theme),
+                preferences.getInt("sweepMaxFps", FaceConfig.DEFAULT.sweepMaxFps),
+                preferences.getInt("complications", FaceConfig.DEFAULT.complications));
+        sender = new ConfigSender(this, new ConfigSender.Host() {
+            @Override
+            public void scheduleFlush(long delayMs) {
+                handler.postDelayed(flush, delayMs);
+            }
+        }, COALESCE_MS, config, preferences.getInt("version", 0));
+    }
+
+    public void connect() {
+        if (!client.isConnected() && !client.isConnecting()) {
+            client.connect();
+        }
+    }
+
+    public FaceConfig getConfig() {
+        return sender.getConfig();
+    }
+
+    public void edit(FaceConfig config) {
+        connect();
+        sender.edit(config);
+    }
+
+    /**
+     * Bytes sent per edit so far, for the settings screen's debug line.
+     */
+    public String getStats() {
+        return "edits=" + sender.getEdits() + " messages=" + sender.getMessages() + " bytes="
+                + sender.getBytesSent() + " resyncs=" + sender.getResyncs();
+    }
+
+    @Override
+    public void setReceiver(Receiver receiver) {
+        this.receiver = receiver;
+    }
+
+    @Override
+    public void send(final byte[] message) {
+        if (!client.isConnected()) {
+            unsent = message;
+            connect();
+            return;
+        }
+        Wearable.NodeApi.getConnectedNodes(client).setResultCallback(
+                new ResultCallback<NodeApi.GetConnectedNodesResult>() {
+                    @Override
+                    public void onResult(NodeApi.GetConnectedNodesResult result) {
+                        for (Node node : result.getNodes()) {
+                            Wearable.MessageApi.sendMessage(client, node.getId(),
+                                    DATA_LAYER_PATH, message);
+                        }
+                    }
+                });
+    }
+
+    @Override
+    public void onConnected(Bundle connectionHint) {
+        if (unsent != null) {
+            byte[] message = unsent;
+            unsent = null;
+            send(message);
+        }
+    }
+
+    @Override
+    public void onConnectionSuspended(int cause) {
+        Log.d(TAG, "connection suspended: " + cause);
+    }
+
+    /**
+     * A message from a watch, e.g. asking for the full config. Called on the main thread.
+     */
+    public void onMessageReceived(MessageEvent event) {
+        if (receiver != null) {
+            receiver.onMessage(event.getData());
+        }
+    }
+
+    private void save() {
+        FaceConfig config = sender.getConfig();
+        preferences.edit()
+                .putString("theme", config.theme)
+                .putInt("sweepMaxFps", config.sweepMaxFps)
+                .putInt("complications", config.complications)
+                .putInt("version", sender.getVersion())
+                .apply();
+    }
+}
@@ -0,0 +1,95 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame hand math: directions and clipped lengths from the precomputed tables (against the
+ * trig they replaced), and the table rebuild that happens on surface changes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HandBenchmark {
+    private final HandGeometry geometry = new HandGeometry(40f, 10f);
+    private int frame;
+
+    @Setup
+    public void setUp() {
+        geometry.update(320, 320, true, 30f);
+    }
+
+    @Benchmark
+    public float directionsFromTable() {
+        int i = frame++;
+        int second = i % 60;
+        int minute = (i / 60) % 60;
+        int hour = (i / 3600) % 24;
+        int hourPosition = HandGeometry.hourPosition(hour, minute);
+        int minutePosition = HandGeometry.minutePosition(minute, second);
+        int secondPosition = HandGeometry.secondPosition(second);
+        return HandGeometry.SIN[hourPosition] + HandGeometry.COS[hourPosition]
+                + HandGeometry.SIN[minutePosition] + HandGeometry.COS[minutePosition]
+                + HandGeometry.SIN[secondPosition] + HandGeometry.COS[secondPosition];
+    }
+
+    @Benchmark
+    public float directionsFromTrig() {
+        int i = frame++;
+        int second = i % 60;
+        int minute = (i / 60) % 60;
+        int hour = (i / 3600) % 24;
+        return direction(HandAngles.hour(hour, minute))
+                + direction(HandAngles.minute(minute, second))
+                + direction(HandAngles.second(second));
+    }
+
+    @Benchmark
+    public float clippedLengthsFromTable() {
+        int i = frame++;
+        int second = i % 60;
+        int minute = (i / 60) % 60;
+        return geometry.secondLengths[second] + geometry.minuteLengths[minute * 60 + second];
+    }
+
+    @Benchmark
+    public float clippedLengthsFromTrig() {
+        int i = frame++;
+        int second = i % 60;
+        int minute = (i / 60) % 60;
+        return chinClipped(second, HandAngles.second(second), 24, 36, 10f)
+                + chinClipped(minute, HandAngles.minute(minute, second), 23, 35, 40f);
+    }
+
+    @Benchmark
+    public HandGeometry rebuildTables() {
+        geometry.update(320, 320, true, 30f);
+        return geometry;
+    }
+
+    /**
+     * The per-frame direction computation {@link HandGeometry#SIN} and {@link HandGeometry#COS}
+     * replaced.
+     */
+    private static float direction(float angle) {
+        double radians = Math.toRadians(angle);
+        return (float) (Math.sin(radians) + Math.cos(radians));
+    }
+
+    /**
+     * The per-frame length computation the tables replaced.
+     */
+    private static float chinClipped(int position, float angle, int from, int to, float inset) {
+        if (position < from || position > to) {
+            return 160f - inset;
+        }
+        return (float) ((160f - 30f) / -Math.cos(Math.toRadians(angle))) - inset;
+    }
+}
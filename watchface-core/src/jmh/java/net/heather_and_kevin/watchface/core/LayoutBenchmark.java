@@ -0,0 +1,51 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Layout and instrumentation overhead: accessory positions and the frame recorder, enabled and
+ * disabled.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LayoutBenchmark {
+    private final AccessoryLayout layout = new AccessoryLayout(30f, 8f, 42f);
+    private final FrameStats enabledStats = new FrameStats();
+    private final FrameStats disabledStats = new FrameStats();
+
+    public LayoutBenchmark() {
+        disabledStats.setEnabled(false);
+    }
+
+    @Benchmark
+    public float accessoryLayout() {
+        layout.update(320, 320);
+        return layout.centerY[AccessoryLayout.TOP];
+    }
+
+    @Benchmark
+    public long frameStatsEnabled() {
+        return recordFrame(enabledStats);
+    }
+
+    @Benchmark
+    public long frameStatsDisabled() {
+        return recordFrame(disabledStats);
+    }
+
+    private static long recordFrame(FrameStats stats) {
+        stats.begin(FrameStats.PHASE_FRAME);
+        stats.begin(FrameStats.PHASE_SECOND_HAND);
+        stats.end(FrameStats.PHASE_SECOND_HAND);
+        stats.endFrame(false, 1000000000L);
+        return stats.getInteractiveFrames();
+    }
+}
@@ -0,0 +1,80 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduling policy costs paid on every wakeup and frame: the tick scheduler and the frame-rate
+ * governor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SchedulingBenchmark {
+    private long uptime;
+    private long wall = 1458500000000L;
+    private long scheduled;
+
+    private final TickScheduler scheduler = new TickScheduler(new TickScheduler.Clock() {
+        @Override
+        public long uptimeMillis() {
+            return uptime;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return wall;
+        }
+    }, new TickScheduler.Host() {
+        @Override
+        public void scheduleWakeup(long uptimeMillis) {
+            scheduled = uptimeMillis;
+        }
+
+        @Override
+        public void cancelWakeup() {
+        }
+
+        @Override
+        public void invalidate() {
+        }
+    }, 1000);
+
+    private final FrameRateGovernor governor = new FrameRateGovernor();
+    private long frameCost;
+
+    @Setup
+    public void setUp() {
+        scheduler.start();
+        governor.setMaxRate(60);
+        governor.setBattery(1f, true);
+    }
+
+    @Benchmark
+    public long tickWakeup() {
+        long delta = scheduled - uptime;
+        uptime += delta;
+        wall += delta;
+        scheduler.onWakeup();
+        return scheduled;
+    }
+
+    @Benchmark
+    public boolean coalescedFrameRequest() {
+        return scheduler.requestFrame();
+    }
+
+    @Benchmark
+    public boolean governorFrame() {
+        // mostly cheap frames with the occasional expensive one
+        frameCost = (frameCost + 7919) % 20000000L;
+        return governor.onFrame(frameCost < 19000000L ? 1000000L : frameCost);
+    }
+}
@@ -0,0 +1,44 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time decomposition per frame: {@link FaceTime} against {@link Calendar}. The comparison with
+ * {@code android.text.format.Time} needs a device, see TimeSourceBenchmark in the wear module.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimeBenchmark {
+    private static final TimeZone ZONE = TimeZone.getTimeZone("America/Los_Angeles");
+
+    private final FaceTime faceTime = new FaceTime(ZONE);
+    private final Calendar calendar = Calendar.getInstance(ZONE);
+
+    // one frame a second starting shortly before the 2016 spring-forward transition
+    private long millis = 1457863000000L;
+
+    @Benchmark
+    public int faceTime() {
+        millis += 1000;
+        faceTime.set(millis);
+        return faceTime.hour + faceTime.minute + faceTime.second;
+    }
+
+    @Benchmark
+    public int calendar() {
+        millis += 1000;
+        calendar.setTimeInMillis(millis);
+        return calendar.get(Calendar.HOUR_OF_DAY) + calendar.get(Calendar.MINUTE)
+                + calendar.get(Calendar.SECOND);
+    }
+}
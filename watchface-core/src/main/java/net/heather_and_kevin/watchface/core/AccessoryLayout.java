@@ -0,0 +1,41 @@
+package net.heather_and_kevin.watchface.core;
+
+/**
+ * Positions of the three accessory discs: above, right of and left of the center, each halfway
+ * between the hand mount and the hour ticks.
+ */
+public class AccessoryLayout {
+    public static final int TOP = 0;
+    public static final int RIGHT = 1;
+    public static final int LEFT = 2;
+    public static final int COUNT = 3;
+
+    public final float[] centerX = new float[COUNT];
+    public final float[] centerY = new float[COUNT];
+    public float radius;
+
+    private final float hourTickHeight;
+    private final float baseMountWidth;
+    private final float circleSize;
+
+    public AccessoryLayout(float hourTickHeight, float baseMountWidth, float circleSize) {
+        this.hourTickHeight = hourTickHeight;
+        this.baseMountWidth = baseMountWidth;
+        this.circleSize = circleSize;
+    }
+
+    public void update(int width, int height) {
+        float xCenter = width / 2f;
+        float yCenter = height / 2f;
+        float offset = (yCenter - hourTickHeight + baseMountWidth) / 2f;
+
+        // nudged one pixel outwards so the discs don't touch the hand mount
+        centerX[TOP] = xCenter;
+        centerY[TOP] = yCenter - 1f - offset;
+        centerX[RIGHT] = xCenter + 1f + offset;
+        centerY[RIGHT] = yCenter;
+        centerX[LEFT] = xCenter - 1f - offset;
+        centerY[LEFT] = yCenter;
+        radius = circleSize - 2f;
+    }
+}
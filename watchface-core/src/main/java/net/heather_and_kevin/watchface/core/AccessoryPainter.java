@@ -0,0 +1,73 @@
+package net.heather_and_kevin.watchface.core;
+
+/**
+ * Fills the accessory discs with complication values: the battery level as a bar across the left
+ * disc and the date as a ring of 31 marks around the right one, with today's mark drawn longer
+ * in the accent color. The top disc is still free.
+ */
+public class AccessoryPainter {
+    static final int DAYS = 31;
+
+    private final Style trackStyle;
+    private final Style levelStyle;
+    private final Style markStyle;
+    private final Style todayStyle;
+
+    /**
+     * @param trackStyle the empty part of the battery bar
+     * @param levelStyle the charged part of the battery bar
+     * @param markStyle  stroke for the date marks
+     * @param todayStyle stroke for today's date mark
+     */
+    public AccessoryPainter(Style trackStyle, Style levelStyle, Style markStyle, Style todayStyle) {
+        this.trackStyle = trackStyle;
+        this.levelStyle = levelStyle;
+        this.markStyle = markStyle;
+        this.todayStyle = todayStyle;
+    }
+
+    /**
+     * @param values quantized values as taken from {@link ComplicationPipeline#snapshot}
+     */
+    public void paint(RenderTarget target, AccessoryLayout layout, int[] values) {
+        paintBattery(target, layout.centerX[AccessoryLayout.LEFT],
+                layout.centerY[AccessoryLayout.LEFT], layout.radius,
+                values[ComplicationPipeline.BATTERY]);
+        paintDate(target, layout.centerX[AccessoryLayout.RIGHT],
+                layout.centerY[AccessoryLayout.RIGHT], layout.radius,
+                values[ComplicationPipeline.DAY_OF_MONTH]);
+    }
+
+    private void paintBattery(RenderTarget target, float cx, float cy, float radius, int percent) {
+        if (percent == ComplicationPipeline.NO_VALUE) {
+            return;
+        }
+        float halfLength = radius * 0.6f;
+        float halfHeight = radius * 0.12f;
+        float level = Math.max(0, Math.min(100, percent)) / 100f;
+        float split = cx - halfLength + 2 * halfLength * level;
+        target.drawRect(cx - halfLength, cy - halfHeight, cx + halfLength, cy + halfHeight,
+                trackStyle);
+        if (level > 0) {
+            target.drawRect(cx - halfLength, cy - halfHeight, split, cy + halfHeight, levelStyle);
+        }
+    }
+
+    private void paintDate(RenderTarget target, float cx, float cy, float radius, int day) {
+        if (day == ComplicationPipeline.NO_VALUE) {
+            return;
+        }
+        float outer = radius * 0.85f;
+        float inner = radius * 0.7f;
+        float todayInner = radius * 0.45f;
+        for (int i = 1; i <= DAYS; i++) {
+            // day 1 at the top, clockwise
+            double angle = 2 * Math.PI * (i - 1) / DAYS;
+            float sin = (float) Math.sin(angle);
+            float cos = (float) Math.cos(angle);
+            float start = i == day ? todayInner : inner;
+            target.drawLine(cx + sin * start, cy - cos * start, cx + sin * outer, cy - cos * outer,
+                    i == day ? todayStyle : markStyle);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package net.heather_and_kevin.watchface.core;
+
+/**
+ * Pixel operations for the ambient dial, on ARGB pixels read back from a bitmap.
+ */
+public final class AmbientPalette {
+    public static final int BLACK = 0xFF000000;
+    public static final int WHITE = 0xFFFFFFFF;
+
+    private AmbientPalette() {
+    }
+
+    /**
+     * Reduces the pixels to opaque black and white at half luminance, for displays that only
+     * have one bit per channel in ambient mode. Translucent pixels count as black.
+     */
+    public static void toOneBit(int[] pixels) {
+        for (int i = 0; i < pixels.length; i++) {
+            int pixel = pixels[i];
+            int alpha = pixel >>> 24;
+            int luminance = (((pixel >> 16) & 0xFF) * 299
+                    + ((pixel >> 8) & 0xFF) * 587
+                    + (pixel & 0xFF) * 114) / 1000;
+            pixels[i] = alpha >= 0x80 && luminance >= 0x80 ? WHITE : BLACK;
+        }
+    }
+
+    /**
+     * @return the number of pixels that light up, i.e. aren't black or transparent
+     */
+    public static int countLit(int[] pixels) {
+        int lit = 0;
+        for (int pixel : pixels) {
+            if ((pixel >>> 24) != 0 && (pixel & 0xFFFFFF) != 0) {
+                lit++;
+            }
+        }
+        return lit;
+    }
+}
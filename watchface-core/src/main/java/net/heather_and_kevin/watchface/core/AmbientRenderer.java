@@ -0,0 +1,151 @@
+package net.heather_and_kevin.watchface.core;
+
+/**
+ * Draws ambient frames, once per minute: the ambient dial layer and the hour and minute hands,
+ * nothing else. On low-bit displays the hands are drawn without anti-aliasing (the dial is
+ * expected to be 1-bit already, see {@link AmbientPalette#toOneBit}). With burn-in protection
+ * the whole face moves by a few pixels every minute so no pixel stays lit for long.
+ *
+ * The lit-pixel ratio of the last frame is estimated from the dial's lit pixels and the hands'
+ * areas, without reading pixels back.
+ */
+public class AmbientRenderer {
+    /**
+     * Burn-in offsets step through a 5x5 grid, one step per minute.
+     */
+    static final int BURN_IN_SHIFT = 2;
+    private static final int BURN_IN_STEPS = 2 * BURN_IN_SHIFT + 1;
+
+    private final HandGeometry geometry;
+    private final int handColor;
+    private final float hourHandWidth;
+    private final float minuteHandWidth;
+    private final float hourHandLengthPercent;
+    private final StylePool pool;
+    private ClockHand hourHand;
+    private ClockHand minuteHand;
+    private boolean lowBit;
+    private boolean burnInProtection;
+    private FrameStats stats = new FrameStats();
+
+    private Layer dial;
+    private int dialLitPixels;
+    private float hourHandLength;
+    private double litPixelRatio;
+    private int offsetX;
+    private int offsetY;
+
+    /**
+     * @param geometry the interactive renderer's hand tables, shared so they're built once
+     * @param pool     the render plan's, so the hand styles are shared like its own
+     */
+    public AmbientRenderer(HandGeometry geometry, int handColor,
+                           float hourHandWidth, float minuteHandWidth, float hourHandLengthPercent,
+                           StylePool pool) {
+        this.geometry = geometry;
+        this.handColor = handColor;
+        this.hourHandWidth = hourHandWidth;
+        this.minuteHandWidth = minuteHandWidth;
+        this.hourHandLengthPercent = hourHandLengthPercent;
+        this.pool = pool;
+        buildHands();
+    }
+
+    public void setStats(FrameStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Applies the PROPERTY_LOW_BIT_AMBIENT and PROPERTY_BURN_IN_PROTECTION display properties.
+     */
+    public void setDisplay(boolean lowBit, boolean burnInProtection) {
+        if (lowBit != this.lowBit) {
+            this.lowBit = lowBit;
+            buildHands();
+        }
+        this.burnInProtection = burnInProtection;
+    }
+
+    public boolean isLowBit() {
+        return lowBit;
+    }
+
+    public boolean hasBurnInProtection() {
+        return burnInProtection;
+    }
+
+    /**
+     * Call on surface changes, after the shared geometry has been updated.
+     */
+    public void setSurface(int width, int height) {
+        hourHandLength = height / 2f * hourHandLengthPercent;
+    }
+
+    /**
+     * @param dial       an opaque layer of the surface size, or null to draw the hands on black
+     * @param litPixels  how many of the dial's pixels are lit, see {@link AmbientPalette#countLit}
+     */
+    public void setDial(Layer dial, int litPixels) {
+        this.dial = dial;
+        this.dialLitPixels = dial != null ? litPixels : 0;
+    }
+
+    public void draw(RenderTarget target, int hour, int minute) {
+        stats.begin(FrameStats.PHASE_AMBIENT);
+        int faceWidth = target.getWidth();
+        int faceHeight = target.getHeight();
+
+        if (burnInProtection) {
+            int step = hour * 60 + minute;
+            offsetX = step % BURN_IN_STEPS - BURN_IN_SHIFT;
+            offsetY = (step / BURN_IN_STEPS) % BURN_IN_STEPS - BURN_IN_SHIFT;
+        } else {
+            offsetX = 0;
+            offsetY = 0;
+        }
+        float xCenter = faceWidth / 2.0f + offsetX;
+        float yCenter = faceHeight / 2.0f + offsetY;
+
+        // the dial covers the surface unless it's shifted or missing
+        if (dial == null || offsetX != 0 || offsetY != 0) {
+            target.drawColor(AmbientPalette.BLACK);
+        }
+        if (dial != null) {
+            target.drawLayer(dial, offsetX, offsetY);
+        }
+
+        // keep the minute tip on the screen whichever way the face is shifted
+        float minuteLength = geometry.minuteLengths[minute * 60]
+                - (burnInProtection ? BURN_IN_SHIFT : 0);
+
+        hourHand.setHandLength(hourHandLength);
+        hourHand.drawHand(target, xCenter, yCenter, HandGeometry.hourPosition(hour, minute));
+        minuteHand.setHandLength(minuteLength);
+        minuteHand.drawHand(target, xCenter, yCenter, HandGeometry.minutePosition(minute, 0));
+
+        litPixelRatio = (dialLitPixels + hourHandWidth * hourHandLength
+                + minuteHandWidth * minuteLength) / ((double) faceWidth * faceHeight);
+        stats.end(FrameStats.PHASE_AMBIENT);
+    }
+
+    /**
+     * @return estimated fraction of the surface lit by the last frame
+     */
+    public double getLitPixelRatio() {
+        return litPixelRatio;
+    }
+
+    public int getOffsetX() {
+        return offsetX;
+    }
+
+    public int getOffsetY() {
+        return offsetY;
+    }
+
+    private void buildHands() {
+        Style style = pool.intern(Style.fill(handColor, !lowBit));
+        hourHand = new ClockHand(style, hourHandWidth, 0f, pool);
+        minuteHand = new ClockHand(style, minuteHandWidth, 0f, pool);
+    }
+}
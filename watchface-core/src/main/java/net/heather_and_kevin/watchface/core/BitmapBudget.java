@@ -0,0 +1,234 @@
+package net.heather_and_kevin.watchface.core;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Every bitmap the face holds, accounted per kind. Allocations go through here so the budget
+ * picks the pixel format (16-bit where the content allows it, see {@link #bytesPerPixel}) and
+ * can hand out a released bitmap of the same size and format instead of allocating again, e.g.
+ * when the theme changes or the backgrounds are reloaded.
+ *
+ * Released bitmaps are pooled up to {@code maxPooledBytes}; {@link #trimPool} frees them under
+ * memory pressure. Pooled bitmaps count towards {@link #getCurrentBytes} since they're still
+ * resident. Safe to use from the loader, layer worker and main threads.
+ */
+public class BitmapBudget<T> {
+    /**
+     * The interactive background image.
+     */
+    public static final int BACKGROUND = 0;
+    /**
+     * The ambient background; opaque, and grayscale or 1-bit, so 16 bits per pixel are enough.
+     */
+    public static final int AMBIENT_DIAL = 1;
+    /**
+     * The static layer the background, dial and accessories are composited into.
+     */
+    public static final int STATIC_LAYER = 2;
+    /**
+     * Layers created on the frame path: the partial redraw frame layer and hand sprites.
+     */
+    public static final int FRAME_LAYER = 3;
+    /**
+     * Intermediate images while decoding, see {@link #track}.
+     */
+    public static final int DECODE = 4;
+    public static final int KINDS = 5;
+
+    public interface Allocator<T> {
+        T allocate(int width, int height, int bytesPerPixel);
+
+        /**
+         * Readies a pooled bitmap for its next owner, e.g. by clearing it to transparent.
+         */
+        void reset(T bitmap);
+
+        void free(T bitmap);
+    }
+
+    private final Allocator<T> allocator;
+    private final long maxPooledBytes;
+    private final IdentityHashMap<T, Allocation> live = new IdentityHashMap<>();
+    private final List<T> pool = new ArrayList<>();
+    private final List<Allocation> pooled = new ArrayList<>();
+    private final long[] kindBytes = new long[KINDS];
+    private long pooledBytes;
+    private long currentBytes;
+    private long peakBytes;
+    private boolean closed;
+
+    private int allocations;
+    private int reuses;
+    private int trims;
+    private long trimmedBytes;
+
+    public BitmapBudget(Allocator<T> allocator, long maxPooledBytes) {
+        this.allocator = allocator;
+        this.maxPooledBytes = maxPooledBytes;
+    }
+
+    /**
+     * 2 for {@link #AMBIENT_DIAL}, 4 for everything else.
+     */
+    public static int bytesPerPixel(int kind) {
+        return kind == AMBIENT_DIAL ? 2 : 4;
+    }
+
+    /**
+     * A bitmap of {@code kind}'s format; a pooled one of the same size if there is one. If the
+     * allocator runs out of memory the pool is freed and the allocation retried once.
+     */
+    public synchronized T allocate(int kind, int width, int height) {
+        int bytesPerPixel = bytesPerPixel(kind);
+        for (int i = 0; i < pool.size(); i++) {
+            Allocation allocation = pooled.get(i);
+            if (allocation.width == width && allocation.height == height
+                    && allocation.bytesPerPixel == bytesPerPixel) {
+                T bitmap = pool.remove(i);
+                pooled.remove(i);
+                pooledBytes -= allocation.bytes;
+                currentBytes -= allocation.bytes;
+                allocator.reset(bitmap);
+                reuses++;
+                add(bitmap, new Allocation(kind, width, height, bytesPerPixel, true));
+                return bitmap;
+            }
+        }
+        T bitmap;
+        try {
+            bitmap = allocator.allocate(width, height, bytesPerPixel);
+        } catch (OutOfMemoryError e) {
+            if (pool.isEmpty()) {
+                throw e;
+            }
+            trimPool();
+            bitmap = allocator.allocate(width, height, bytesPerPixel);
+        }
+        allocations++;
+        add(bitmap, new Allocation(kind, width, height, bytesPerPixel, true));
+        return bitmap;
+    }
+
+    /**
+     * Accounts for a bitmap made elsewhere, e.g. by an image decoder. It is freed, never pooled,
+     * when released.
+     */
+    public synchronized void track(int kind, T bitmap, int width, int height, int bytesPerPixel) {
+        add(bitmap, new Allocation(kind, width, height, bytesPerPixel, false));
+    }
+
+    /**
+     * Gives up {@code bitmap}: it is pooled if it was allocated here and fits, freed otherwise.
+     *
+     * @throws IllegalArgumentException if the bitmap isn't from this budget or already released
+     */
+    public synchronized void release(T bitmap) {
+        Allocation allocation = live.remove(bitmap);
+        if (allocation == null) {
+            throw new IllegalArgumentException("not a live bitmap of this budget: " + bitmap);
+        }
+        kindBytes[allocation.kind] -= allocation.bytes;
+        if (allocation.poolable && !closed && pooledBytes + allocation.bytes <= maxPooledBytes) {
+            pool.add(bitmap);
+            pooled.add(allocation);
+            pooledBytes += allocation.bytes;
+        } else {
+            currentBytes -= allocation.bytes;
+            allocator.free(bitmap);
+        }
+    }
+
+    /**
+     * Frees every pooled bitmap.
+     *
+     * @return the bytes freed
+     */
+    public synchronized long trimPool() {
+        long freed = pooledBytes;
+        for (T bitmap : pool) {
+            allocator.free(bitmap);
+        }
+        pool.clear();
+        pooled.clear();
+        currentBytes -= freed;
+        pooledBytes = 0;
+        if (freed > 0) {
+            trims++;
+            trimmedBytes += freed;
+        }
+        return freed;
+    }
+
+    /**
+     * Frees the pool and stops pooling; bitmaps released afterwards are freed right away. Call
+     * when the face is destroyed.
+     */
+    public synchronized void close() {
+        closed = true;
+        trimPool();
+    }
+
+    private void add(T bitmap, Allocation allocation) {
+        if (live.put(bitmap, allocation) != null) {
+            throw new IllegalStateException("bitmap accounted twice: " + bitmap);
+        }
+        kindBytes[allocation.kind] += allocation.bytes;
+        currentBytes += allocation.bytes;
+        peakBytes = Math.max(peakBytes, currentBytes);
+    }
+
+    /**
+     * @return the bytes of {@code kind}'s live bitmaps, not counting pooled ones
+     */
+    public synchronized long getBytes(int kind) {
+        return kindBytes[kind];
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public synchronized long getPeakBytes() {
+        return peakBytes;
+    }
+
+    public synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    public synchronized int getAllocations() {
+        return allocations;
+    }
+
+    public synchronized int getReuses() {
+        return reuses;
+    }
+
+    public synchronized int getTrims() {
+        return trims;
+    }
+
+    public synchronized long getTrimmedBytes() {
+        return trimmedBytes;
+    }
+
+    private static final class Allocation {
+        final int kind;
+        final int width;
+        final int height;
+        final int bytesPerPixel;
+        final long bytes;
+        final boolean poolable;
+
+        Allocation(int kind, int width, int height, int bytesPerPixel, boolean poolable) {
+            this.kind = kind;
+            this.width = width;
+            this.height = height;
+            this.bytesPerPixel = bytesPerPixel;
+            this.bytes = (long) width * height * bytesPerPixel;
+            this.poolable = poolable;
+        }
+    }
+}
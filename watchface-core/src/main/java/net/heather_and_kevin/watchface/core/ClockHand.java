@@ -0,0 +1,182 @@
+package net.heather_and_kevin.watchface.core;
+
+/**
+ * Created by kmager on 3/20/16.
+ */
+public class ClockHand {
+    private Style handStrokeStyle;
+    private float handWidth;
+    private float halfWidth;
+    private float handLength;
+    private float handOffSetLength;
+
+    /**
+     * Sprite mode: one pre-rendered layer per quantized position, blitted without rotation.
+     */
+    private SpriteCache<Layer> sprites;
+    private float[] spriteLengths;
+    private int[] spriteLefts;
+    private int[] spriteTops;
+    private float spriteCenterX;
+    private float spriteCenterY;
+
+    public ClockHand(Style style, float handWidth) {
+        this(style, handWidth, 0f);
+    }
+
+    public ClockHand(Style style, float handWidth, float handOffSetLength) {
+        this(style, handWidth, handOffSetLength, new StylePool());
+    }
+
+    /**
+     * @param pool shares the hand's stroke style, and so its paint, with other hands of the same
+     *             color and width
+     */
+    public ClockHand(Style style, float handWidth, float handOffSetLength, StylePool pool) {
+        this.handWidth = handWidth;
+        this.halfWidth = handWidth / 2f;
+
+        this.handOffSetLength = handOffSetLength;
+
+        this.handStrokeStyle = pool.intern(style.withStrokeWidth(this.handWidth));
+    }
+
+    public void setHandLength(float handLength) {
+        this.handLength = handLength;
+    }
+
+    /**
+     * Switches the hand to sprite mode: the hand is rendered once per position into its own
+     * layer and afterwards drawn with a single unrotated drawLayer. Positions are quantized to
+     * {@code positions} steps per revolution, e.g. 60 for seconds or 720 for hours. Sprites are
+     * evicted least recently used first once they take more than {@code budgetBytes}.
+     */
+    public void enableSprites(int positions, int budgetBytes) {
+        disableSprites();
+        this.sprites = new SpriteCache<>(positions, budgetBytes, new SpriteCache.Recycler<Layer>() {
+            @Override
+            public void recycle(Layer sprite) {
+                sprite.release();
+            }
+        });
+        this.spriteLengths = new float[positions];
+        this.spriteLefts = new int[positions];
+        this.spriteTops = new int[positions];
+    }
+
+    public void disableSprites() {
+        if (this.sprites != null) {
+            this.sprites.clear();
+            this.sprites = null;
+        }
+    }
+
+    public SpriteCache<Layer> getSprites() {
+        return this.sprites;
+    }
+
+    /**
+     * Writes the area {@link #drawHand} paints at this position into {@code bounds} as left, top,
+     * right, bottom, padded by a pixel for anti-aliasing.
+     */
+    public void getBounds(float xCenter, float yCenter, int position, float[] bounds) {
+        if (this.sprites != null) {
+            position = fromSprite(toSprite(position));
+        }
+        float sin = HandGeometry.SIN[position];
+        float cos = HandGeometry.COS[position];
+        float tailX = xCenter - sin * this.handOffSetLength;
+        float tailY = yCenter + cos * this.handOffSetLength;
+        float tipX = xCenter + sin * this.handLength;
+        float tipY = yCenter - cos * this.handLength;
+
+        float pad = this.halfWidth + 1f;
+        bounds[0] = Math.min(tailX, tipX) - pad;
+        bounds[1] = Math.min(tailY, tipY) - pad;
+        bounds[2] = Math.max(tailX, tipX) + pad;
+        bounds[3] = Math.max(tailY, tipY) + pad;
+    }
+
+    /**
+     * @param position one of {@link HandGeometry#FINE_POSITIONS} steps clockwise from 12 o'clock,
+     *                 see {@link HandGeometry#hourPosition} and friends
+     */
+    public void drawHand(RenderTarget target, float xCenter, float yCenter, int position) {
+        if (this.sprites != null) {
+            drawSprite(target, xCenter, yCenter, position);
+        } else {
+            drawStroke(target, xCenter, yCenter, position);
+        }
+    }
+
+    /**
+     * The sprite nearest to a fine position.
+     */
+    private int toSprite(int position) {
+        int positions = this.sprites.positions();
+        return (position * positions + HandGeometry.FINE_POSITIONS / 2)
+                / HandGeometry.FINE_POSITIONS % positions;
+    }
+
+    private int fromSprite(int sprite) {
+        return sprite * HandGeometry.FINE_POSITIONS / this.sprites.positions();
+    }
+
+    private void drawSprite(RenderTarget target, float xCenter, float yCenter, int finePosition) {
+        if (xCenter != this.spriteCenterX || yCenter != this.spriteCenterY) {
+            // sprites are positioned in surface coordinates, so a new center invalidates them all
+            this.sprites.clear();
+            this.spriteCenterX = xCenter;
+            this.spriteCenterY = yCenter;
+        }
+
+        int position = toSprite(finePosition);
+        Layer sprite = this.sprites.get(position);
+        if (sprite == null || this.spriteLengths[position] != this.handLength) {
+            sprite = renderSprite(target, position, xCenter, yCenter, fromSprite(position));
+            this.sprites.put(position, sprite, sprite.getByteCount());
+        }
+        target.drawLayer(sprite, this.spriteLefts[position], this.spriteTops[position]);
+    }
+
+    private Layer renderSprite(RenderTarget target, int position,
+                               float xCenter, float yCenter, int finePosition) {
+        float sin = HandGeometry.SIN[finePosition];
+        float cos = HandGeometry.COS[finePosition];
+        float tailX = xCenter - sin * this.handOffSetLength;
+        float tailY = yCenter + cos * this.handOffSetLength;
+        float tipX = xCenter + sin * this.handLength;
+        float tipY = yCenter - cos * this.handLength;
+
+        // one extra pixel around the stroke for anti-aliasing
+        float pad = this.halfWidth + 1f;
+        int left = (int) Math.floor(Math.min(tailX, tipX) - pad);
+        int top = (int) Math.floor(Math.min(tailY, tipY) - pad);
+        int right = (int) Math.ceil(Math.max(tailX, tipX) + pad);
+        int bottom = (int) Math.ceil(Math.max(tailY, tipY) + pad);
+
+        Layer sprite = target.createLayer(right - left, bottom - top);
+        target.openLayer(sprite).drawLine(tailX - left, tailY - top, tipX - left, tipY - top,
+                this.handStrokeStyle);
+
+        this.spriteLengths[position] = this.handLength;
+        this.spriteLefts[position] = left;
+        this.spriteTops[position] = top;
+        return sprite;
+    }
+
+    /**
+     * Draws the hand as a single butt-capped stroke from the tail to the tip, which is the same
+     * rectangle the rotated drawRect produced without a save/rotate/restore per frame.
+     */
+    private void drawStroke(RenderTarget target, float xCenter, float yCenter, int position) {
+        float sin = HandGeometry.SIN[position];
+        float cos = HandGeometry.COS[position];
+
+        target.drawLine(xCenter - sin * this.handOffSetLength,
+                yCenter + cos * this.handOffSetLength,
+                xCenter + sin * this.handLength,
+                yCenter - cos * this.handLength,
+                this.handStrokeStyle);
+    }
+}
@@ -0,0 +1,148 @@
+package net.heather_and_kevin.watchface.core;
+
+import java.util.Arrays;
+
+/**
+ * Values shown in the accessory discs. Sources publish raw readings as often as they like; each
+ * one is quantized to the precision it is displayed at, and only a change of the quantized value
+ * marks the source dirty. Dirty bits collect until the next frame takes them, so any number of
+ * changes between two frames cost one frame request and one layer rebuild.
+ *
+ * Publishing and taking happen on the main thread.
+ */
+public class ComplicationPipeline {
+    public static final int BATTERY = 0;
+    public static final int DAY_OF_MONTH = 1;
+    public static final int COUNT = 2;
+    public static final int ALL = (1 << COUNT) - 1;
+
+    /**
+     * The value of a source that hasn't published yet.
+     */
+    public static final int NO_VALUE = Integer.MIN_VALUE;
+
+    public interface Host {
+        /**
+         * Called once when the first source turns dirty after a frame took the changes.
+         */
+        void requestFrame();
+    }
+
+    private final Host host;
+    private final float[] precision = new float[COUNT];
+    private final int[] values = new int[COUNT];
+    private int dirty;
+    private int enabled = ALL;
+
+    private long published;
+    private long changes;
+    private long frames;
+
+    public ComplicationPipeline(Host host) {
+        this.host = host;
+        Arrays.fill(precision, 1f);
+        Arrays.fill(values, NO_VALUE);
+    }
+
+    /**
+     * @param precision the smallest change the display shows, in the source's unit
+     */
+    public void setPrecision(int source, float precision) {
+        this.precision[source] = precision;
+    }
+
+    /**
+     * @return whether the quantized value changed
+     */
+    public boolean publish(int source, float value) {
+        published++;
+        int quantized = Math.round(value / precision[source]);
+        if (quantized == values[source]) {
+            return false;
+        }
+        values[source] = quantized;
+        changes++;
+        if ((enabled & 1 << source) != 0) {
+            markDirty(1 << source);
+        }
+        return true;
+    }
+
+    /**
+     * @param sources one bit per source; the others read as {@link #NO_VALUE} and aren't drawn
+     */
+    public void setEnabled(int sources) {
+        int changed = enabled ^ sources;
+        if (changed == 0) {
+            return;
+        }
+        enabled = sources;
+        markDirty(changed);
+    }
+
+    public int getEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the quantized value, in units of the source's precision, or {@link #NO_VALUE}
+     */
+    public int getValue(int source) {
+        return (enabled & 1 << source) != 0 ? values[source] : NO_VALUE;
+    }
+
+    /**
+     * A copy of every quantized value, for painting off the main thread.
+     */
+    public int[] snapshot() {
+        return snapshot(new int[COUNT]);
+    }
+
+    /**
+     * Like {@link #snapshot()}, into {@code into}, for painting on this thread without
+     * allocating.
+     *
+     * @return {@code into}
+     */
+    public int[] snapshot(int[] into) {
+        for (int source = 0; source < COUNT; source++) {
+            into[source] = (enabled & 1 << source) != 0 ? values[source] : NO_VALUE;
+        }
+        return into;
+    }
+
+    /**
+     * Returns the bits of the sources that changed since the last call, one bit per source, and
+     * clears them. Called once per frame.
+     */
+    public int takeDirty() {
+        int taken = dirty;
+        dirty = 0;
+        if (taken != 0) {
+            frames++;
+        }
+        return taken;
+    }
+
+    private void markDirty(int sources) {
+        if (dirty == 0) {
+            host.requestFrame();
+        }
+        dirty |= sources;
+    }
+
+    public long getPublished() {
+        return published;
+    }
+
+    public long getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return how many frames picked up changes
+     */
+    public long getFrames() {
+        return frames;
+    }
+}
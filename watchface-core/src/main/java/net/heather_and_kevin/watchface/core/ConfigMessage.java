@@ -0,0 +1,196 @@
+package net.heather_and_kevin.watchface.core;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * The wire format of config sync. A message is the format byte, the type, the version it brings
+ * the receiver to (or, for {@link #RESYNC}, the version the receiver is at), for deltas the
+ * version it applies on top of, then a bit per key present and those keys' values. Numbers are
+ * unsigned varints and strings length-prefixed UTF-8, so changing one number costs about six
+ * bytes.
+ */
+final class ConfigMessage {
+    static final int FORMAT = 1;
+
+    /**
+     * The keys that changed since {@link #baseVersion}.
+     */
+    static final int DELTA = 1;
+    /**
+     * Every key; replaces whatever the receiver has.
+     */
+    static final int FULL = 2;
+    /**
+     * From the watch: it missed a delta and needs a full config.
+     */
+    static final int RESYNC = 3;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    final int type;
+    final int version;
+    final int baseVersion;
+    final int keys;
+    /**
+     * The values of {@link #keys}; the other keys are left at their defaults.
+     */
+    final FaceConfig values;
+
+    private ConfigMessage(int type, int version, int baseVersion, int keys, FaceConfig values) {
+        this.type = type;
+        this.version = version;
+        this.baseVersion = baseVersion;
+        this.keys = keys;
+        this.values = values;
+    }
+
+    static byte[] delta(int baseVersion, int version, int keys, FaceConfig config) {
+        return encode(DELTA, version, baseVersion, keys, config);
+    }
+
+    static byte[] full(int version, FaceConfig config) {
+        return encode(FULL, version, 0, FaceConfig.ALL, config);
+    }
+
+    static byte[] resync(int version) {
+        return encode(RESYNC, version, 0, 0, null);
+    }
+
+    /**
+     * @return {@code base} with this message's keys replaced
+     */
+    FaceConfig applyTo(FaceConfig base) {
+        return new FaceConfig(
+                (keys & 1 << FaceConfig.THEME) != 0 ? values.theme : base.theme,
+                (keys & 1 << FaceConfig.SWEEP_MAX_FPS) != 0 ? values.sweepMaxFps : base.sweepMaxFps,
+                (keys & 1 << FaceConfig.COMPLICATIONS) != 0
+                        ? values.complications : base.complications);
+    }
+
+    private static byte[] encode(int type, int version, int baseVersion, int keys,
+                                 FaceConfig config) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16);
+        out.write(FORMAT);
+        out.write(type);
+        writeVarint(out, version);
+        if (type == DELTA) {
+            writeVarint(out, baseVersion);
+        }
+        if (type == RESYNC) {
+            return out.toByteArray();
+        }
+        out.write(keys);
+        if ((keys & 1 << FaceConfig.THEME) != 0) {
+            byte[] theme = config.theme.getBytes(UTF_8);
+            writeVarint(out, theme.length);
+            out.write(theme, 0, theme.length);
+        }
+        if ((keys & 1 << FaceConfig.SWEEP_MAX_FPS) != 0) {
+            writeVarint(out, config.sweepMaxFps);
+        }
+        if ((keys & 1 << FaceConfig.COMPLICATIONS) != 0) {
+            writeVarint(out, config.complications);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code message} is truncated, of another format or
+     *                                  otherwise not a config message
+     */
+    static ConfigMessage decode(byte[] message) {
+        Reader in = new Reader(message);
+        if (in.readByte() != FORMAT) {
+            throw new IllegalArgumentException("unknown format " + message[0]);
+        }
+        int type = in.readByte();
+        if (type != DELTA && type != FULL && type != RESYNC) {
+            throw new IllegalArgumentException("unknown type " + type);
+        }
+        int version = in.readVarint();
+        int baseVersion = type == DELTA ? in.readVarint() : 0;
+        if (type == RESYNC) {
+            in.expectEnd();
+            return new ConfigMessage(type, version, 0, 0, null);
+        }
+        int keys = in.readByte();
+        if ((keys & ~FaceConfig.ALL) != 0 || (type == FULL && keys != FaceConfig.ALL)) {
+            throw new IllegalArgumentException("bad keys " + Integer.toBinaryString(keys));
+        }
+        FaceConfig defaults = FaceConfig.DEFAULT;
+        String theme = defaults.theme;
+        int sweepMaxFps = defaults.sweepMaxFps;
+        int complications = defaults.complications;
+        if ((keys & 1 << FaceConfig.THEME) != 0) {
+            theme = in.readString();
+        }
+        if ((keys & 1 << FaceConfig.SWEEP_MAX_FPS) != 0) {
+            sweepMaxFps = in.readVarint();
+        }
+        if ((keys & 1 << FaceConfig.COMPLICATIONS) != 0) {
+            complications = in.readVarint();
+        }
+        in.expectEnd();
+        return new ConfigMessage(type, version, baseVersion, keys,
+                new FaceConfig(theme, sweepMaxFps, complications));
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("negative " + value);
+        }
+        while (value >= 0x80) {
+            out.write(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int readByte() {
+            if (position >= bytes.length) {
+                throw new IllegalArgumentException("truncated message");
+            }
+            return bytes[position++] & 0xFF;
+        }
+
+        int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    if (value < 0) {
+                        throw new IllegalArgumentException("varint out of range");
+                    }
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("varint too long");
+        }
+
+        String readString() {
+            int length = readVarint();
+            if (length > bytes.length - position) {
+                throw new IllegalArgumentException("truncated message");
+            }
+            String value = new String(bytes, position, length, UTF_8);
+            position += length;
+            return value;
+        }
+
+        void expectEnd() {
+            if (position != bytes.length) {
+                throw new IllegalArgumentException("trailing bytes");
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package net.heather_and_kevin.watchface.core;
+
+/**
+ * The watch side of config sync. Applies each delta on top of the current config and tells the
+ * listener which keys changed, so it only rebuilds what depends on them. A delta that doesn't
+ * apply to the current version means one was lost, or that the phone's versions started over
+ * because its data was cleared; either way it is dropped and the phone is asked for the full
+ * config. A full config is only taken if it is newer than the current one or answers such a
+ * request, so a late one can't roll the config back. Repeats of the last delta are ignored.
+ *
+ * Used on the main thread only.
+ */
+public class ConfigReceiver implements ConfigTransport.Receiver {
+    public interface Listener {
+        /**
+         * Called for every message applied, so the config and {@link #getVersion} can be
+         * persisted.
+         *
+         * @param changed one bit per {@link FaceConfig} key whose value changed; 0 when only the
+         *                version moved, e.g. a resync that found nothing new
+         */
+        void onConfigChanged(FaceConfig config, int changed);
+    }
+
+    private final ConfigTransport transport;
+    private final Listener listener;
+
+    private FaceConfig config;
+    private int version;
+    private boolean resyncPending;
+
+    private long received;
+    private long bytesReceived;
+    private long applied;
+    private long ignored;
+    private long malformed;
+    private long resyncsRequested;
+    private long lastApplyNanos;
+    private long maxApplyNanos;
+    private long totalApplyNanos;
+
+    public ConfigReceiver(ConfigTransport transport, Listener listener, FaceConfig config) {
+        this(transport, listener, config, 0);
+    }
+
+    /**
+     * @param config  the config last applied, e.g. restored from preferences
+     * @param version that config's version
+     */
+    public ConfigReceiver(ConfigTransport transport, Listener listener, FaceConfig config,
+                          int version) {
+        this.transport = transport;
+        this.listener = listener;
+        this.config = config;
+        this.version = version;
+        transport.setReceiver(this);
+    }
+
+    /**
+     * Asks the phone for the full config, e.g. once the transport connects after a restart.
+     */
+    public void requestResync() {
+        resyncPending = true;
+        resyncsRequested++;
+        transport.send(ConfigMessage.resync(version));
+    }
+
+    @Override
+    public void onMessage(byte[] message) {
+        long start = System.nanoTime();
+        received++;
+        bytesReceived += message.length;
+        ConfigMessage decoded;
+        try {
+            decoded = ConfigMessage.decode(message);
+        } catch (IllegalArgumentException e) {
+            malformed++;
+            return;
+        }
+        switch (decoded.type) {
+            case ConfigMessage.DELTA:
+                if (decoded.baseVersion == version) {
+                    break;
+                }
+                if (decoded.version == version) {
+                    ignored++;
+                    return;
+                }
+                // a lost delta, or versions going backwards
+                requestResync();
+                return;
+            case ConfigMessage.FULL:
+                if (decoded.version <= version && !resyncPending) {
+                    ignored++;
+                    return;
+                }
+                resyncPending = false;
+                break;
+            default:
+                ignored++;
+                return;
+        }
+
+        FaceConfig next = decoded.applyTo(config);
+        int changed = config.diff(next);
+        config = next;
+        version = decoded.version;
+        applied++;
+        listener.onConfigChanged(next, changed);
+        lastApplyNanos = System.nanoTime() - start;
+        maxApplyNanos = Math.max(maxApplyNanos, lastApplyNanos);
+        totalApplyNanos += lastApplyNanos;
+    }
+
+    public FaceConfig getConfig() {
+        return config;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    public long getApplied() {
+        return applied;
+    }
+
+    /**
+     * @return repeated deltas and stale full configs that were dropped
+     */
+    public long getIgnored() {
+        return ignored;
+    }
+
+    public long getMalformed() {
+        return malformed;
+    }
+
+    public long getResyncsRequested() {
+        return resyncsRequested;
+    }
+
+    /**
+     * @return how long decoding and applying the last change took, listener included
+     */
+    public long getLastApplyNanos() {
+        return lastApplyNanos;
+    }
+
+    public long getMaxApplyNanos() {
+        return maxApplyNanos;
+    }
+
+    public long getMeanApplyNanos() {
+        return applied == 0 ? 0 : totalApplyNanos / applied;
+    }
+}
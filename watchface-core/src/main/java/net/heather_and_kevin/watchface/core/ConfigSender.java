@@ -0,0 +1,130 @@
+package net.heather_and_kevin.watchface.core;
+
+/**
+ * The phone side of config sync. Edits only replace the pending config; the first edit of a
+ * burst schedules a flush, and the flush sends whatever keys differ from what was last sent as
+ * one versioned delta. Dragging a slider through ten values therefore costs one small message.
+ * When the watch reports it missed a delta, the next flush sends the full config instead.
+ *
+ * Used on the main thread only.
+ */
+public class ConfigSender implements ConfigTransport.Receiver {
+    public interface Host {
+        /**
+         * Calls {@link #flush} after {@code delayMs}.
+         */
+        void scheduleFlush(long delayMs);
+    }
+
+    private final ConfigTransport transport;
+    private final Host host;
+    private final long coalesceMs;
+
+    private FaceConfig sent;
+    private FaceConfig pending;
+    private int version;
+    private boolean flushScheduled;
+    private boolean fullRequested;
+
+    private long edits;
+    private long messages;
+    private long bytesSent;
+    private long resyncs;
+
+    /**
+     * @param coalesceMs how long edits collect before they are sent
+     * @param config     the config the watch was last sent, e.g. restored from preferences
+     * @param version    that config's version
+     */
+    public ConfigSender(ConfigTransport transport, Host host, long coalesceMs,
+                        FaceConfig config, int version) {
+        this.transport = transport;
+        this.host = host;
+        this.coalesceMs = coalesceMs;
+        this.sent = config;
+        this.pending = config;
+        this.version = version;
+        transport.setReceiver(this);
+    }
+
+    public void edit(FaceConfig config) {
+        edits++;
+        pending = config;
+        scheduleFlush(coalesceMs);
+    }
+
+    /**
+     * Sends the pending changes, if any, as one message.
+     */
+    public void flush() {
+        flushScheduled = false;
+        byte[] message;
+        if (fullRequested) {
+            fullRequested = false;
+            message = ConfigMessage.full(version + 1, pending);
+        } else {
+            int keys = sent.diff(pending);
+            if (keys == 0) {
+                return;
+            }
+            message = ConfigMessage.delta(version, version + 1, keys, pending);
+        }
+        version++;
+        sent = pending;
+        messages++;
+        bytesSent += message.length;
+        transport.send(message);
+    }
+
+    @Override
+    public void onMessage(byte[] message) {
+        ConfigMessage decoded;
+        try {
+            decoded = ConfigMessage.decode(message);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        if (decoded.type == ConfigMessage.RESYNC) {
+            resyncs++;
+            fullRequested = true;
+            scheduleFlush(0);
+        }
+    }
+
+    private void scheduleFlush(long delayMs) {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            host.scheduleFlush(delayMs);
+        }
+    }
+
+    public FaceConfig getConfig() {
+        return pending;
+    }
+
+    /**
+     * @return the version of the last config sent, to persist with it
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public long getEdits() {
+        return edits;
+    }
+
+    public long getMessages() {
+        return messages;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * @return how many times the watch asked for the full config
+     */
+    public long getResyncs() {
+        return resyncs;
+    }
+}
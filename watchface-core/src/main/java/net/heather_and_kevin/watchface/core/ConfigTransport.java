@@ -0,0 +1,27 @@
+package net.heather_and_kevin.watchface.core;
+
+/**
+ * Carries encoded {@link FaceConfig} changes between the phone and the watch, e.g. over the
+ * Wearable Data Layer. Messages may be lost or arrive out of order; the versions in them let the
+ * receiving side notice and ask for a full config instead.
+ */
+public interface ConfigTransport {
+    /**
+     * The message path both apps use on the Wearable Data Layer.
+     */
+    String DATA_LAYER_PATH = "/watchface/config";
+
+    interface Receiver {
+        /**
+         * Called on the main thread.
+         */
+        void onMessage(byte[] message);
+    }
+
+    /**
+     * Sends to the other side; must not block.
+     */
+    void send(byte[] message);
+
+    void setReceiver(Receiver receiver);
+}
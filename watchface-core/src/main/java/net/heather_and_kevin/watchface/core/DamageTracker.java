@@ -0,0 +1,111 @@
+package net.heather_and_kevin.watchface.core;
+
+/**
+ * Tracks which part of the frame changed. Each frame the bounds of everything that moves are
+ * added with {@link #include}; {@link #endFrame} then yields the union of those bounds and the
+ * previous frame's, which is everything that has to be repainted to erase the old positions and
+ * draw the new ones. The damage is rounded out to whole pixels and clamped to the surface.
+ */
+public class DamageTracker {
+    public int left;
+    public int top;
+    public int right;
+    public int bottom;
+
+    private float currentLeft;
+    private float currentTop;
+    private float currentRight;
+    private float currentBottom;
+    private float previousLeft;
+    private float previousTop;
+    private float previousRight;
+    private float previousBottom;
+    private boolean fullDamage = true;
+
+    private long frames;
+    private double damagedFraction;
+
+    public DamageTracker() {
+        clearCurrent();
+        previousLeft = Float.POSITIVE_INFINITY;
+        previousTop = Float.POSITIVE_INFINITY;
+        previousRight = Float.NEGATIVE_INFINITY;
+        previousBottom = Float.NEGATIVE_INFINITY;
+    }
+
+    public void beginFrame() {
+        clearCurrent();
+    }
+
+    public void include(float left, float top, float right, float bottom) {
+        currentLeft = Math.min(currentLeft, left);
+        currentTop = Math.min(currentTop, top);
+        currentRight = Math.max(currentRight, right);
+        currentBottom = Math.max(currentBottom, bottom);
+    }
+
+    /**
+     * Damages the whole surface on the next frame, e.g. after the static layer was rebuilt.
+     */
+    public void invalidateAll() {
+        fullDamage = true;
+    }
+
+    /**
+     * Computes the damage for the frame into {@link #left}, {@link #top}, {@link #right} and
+     * {@link #bottom}.
+     *
+     * @return false if nothing needs repainting
+     */
+    public boolean endFrame(int width, int height) {
+        if (fullDamage) {
+            left = 0;
+            top = 0;
+            right = width;
+            bottom = height;
+            fullDamage = false;
+        } else {
+            left = Math.max(0, (int) Math.floor(Math.min(previousLeft, currentLeft)));
+            top = Math.max(0, (int) Math.floor(Math.min(previousTop, currentTop)));
+            right = Math.min(width, (int) Math.ceil(Math.max(previousRight, currentRight)));
+            bottom = Math.min(height, (int) Math.ceil(Math.max(previousBottom, currentBottom)));
+            if (right <= left || bottom <= top) {
+                left = 0;
+                top = 0;
+                right = 0;
+                bottom = 0;
+            }
+        }
+        previousLeft = currentLeft;
+        previousTop = currentTop;
+        previousRight = currentRight;
+        previousBottom = currentBottom;
+
+        frames++;
+        damagedFraction += (double) (right - left) * (bottom - top) / ((double) width * height);
+        return right > left;
+    }
+
+    /**
+     * @return the average fraction of the surface repainted per frame
+     */
+    public double getAverageFraction() {
+        return frames > 0 ? damagedFraction / frames : 0;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public void resetStats() {
+        frames = 0;
+        damagedFraction = 0;
+    }
+
+    private void clearCurrent() {
+        currentLeft = Float.POSITIVE_INFINITY;
+        currentTop = Float.POSITIVE_INFINITY;
+        currentRight = Float.NEGATIVE_INFINITY;
+        currentBottom = Float.NEGATIVE_INFINITY;
+    }
+}
@@ -0,0 +1,122 @@
+package net.heather_and_kevin.watchface.core;
+
+/**
+ * Draws the dial (hour and minute ticks, optionally hour numerals) from geometry instead of a
+ * background image. All 60 tick segments for a surface are computed once into one packed array,
+ * and each tick class goes to the target as a single batched {@link RenderTarget#drawLines}.
+ *
+ * Ticks end just inside the visible edge along their angle, so they follow round, square and
+ * flat tire screens alike. Numerals are placed the same way, inside the hour ticks.
+ */
+public class DialGenerator {
+    public static final int HOUR_TICKS = 12;
+    public static final int MINUTE_TICKS = HandGeometry.POSITIONS - HOUR_TICKS;
+    static final int FLOATS_PER_TICK = 4;
+
+    private static final String[] NUMERALS = {
+            "12", "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11"
+    };
+
+    private final float margin;
+    private final float hourTickLength;
+    private final float minuteTickLength;
+    private final float numeralInset;
+    private final Style hourStyle;
+    private final Style minuteStyle;
+    private final Style numeralStyle;
+
+    /**
+     * Hour ticks first, then minute ticks, each as startX, startY, stopX, stopY.
+     */
+    final float[] ticks = new float[HandGeometry.POSITIONS * FLOATS_PER_TICK];
+    final float[] numeralX = new float[HOUR_TICKS];
+    final float[] numeralY = new float[HOUR_TICKS];
+
+    private int width;
+    private int height;
+    private boolean round;
+    private float chinSize = -1;
+    private int builds;
+
+    /**
+     * @param margin           gap between the outer end of a tick and the screen edge
+     * @param hourTickLength   length of the ticks at the hours
+     * @param minuteTickLength length of the other ticks
+     * @param numeralInset     distance from the screen edge to the center of a numeral
+     * @param numeralStyle     a {@link Style#text} style, or null for a dial without numerals
+     */
+    public DialGenerator(float margin, float hourTickLength, float minuteTickLength,
+                         float numeralInset, Style hourStyle, Style minuteStyle,
+                         Style numeralStyle) {
+        this.margin = margin;
+        this.hourTickLength = hourTickLength;
+        this.minuteTickLength = minuteTickLength;
+        this.numeralInset = numeralInset;
+        this.hourStyle = hourStyle;
+        this.minuteStyle = minuteStyle;
+        this.numeralStyle = numeralStyle;
+    }
+
+    /**
+     * Recomputes the tick segments and numeral positions if the surface or insets changed.
+     */
+    public void update(int width, int height, boolean round, float chinSize) {
+        if (width == this.width && height == this.height && round == this.round
+                && chinSize == this.chinSize) {
+            return;
+        }
+        this.width = width;
+        this.height = height;
+        this.round = round;
+        this.chinSize = chinSize;
+        builds++;
+
+        float centerX = width / 2f;
+        float centerY = height / 2f;
+        int hour = 0;
+        int minute = HOUR_TICKS;
+        for (int position = 0; position < HandGeometry.POSITIONS; position++) {
+            float angle = position * 360f / HandGeometry.POSITIONS;
+            double radians = Math.toRadians(angle);
+            float sin = (float) Math.sin(radians);
+            float cos = (float) Math.cos(radians);
+            float edge = HandGeometry.edgeDistance(angle, centerX, centerY, round, chinSize);
+            float outer = edge - margin;
+            boolean isHour = position % (HandGeometry.POSITIONS / HOUR_TICKS) == 0;
+            float inner = outer - (isHour ? hourTickLength : minuteTickLength);
+
+            int i = (isHour ? hour++ : minute++) * FLOATS_PER_TICK;
+            ticks[i] = centerX + sin * inner;
+            ticks[i + 1] = centerY - cos * inner;
+            ticks[i + 2] = centerX + sin * outer;
+            ticks[i + 3] = centerY - cos * outer;
+            if (isHour) {
+                float distance = edge - numeralInset;
+                numeralX[hour - 1] = centerX + sin * distance;
+                numeralY[hour - 1] = centerY - cos * distance;
+            }
+        }
+    }
+
+    /**
+     * Paints the dial as computed by the last {@link #update}: one batched call per tick class,
+     * then the numerals.
+     */
+    public void paint(RenderTarget target) {
+        target.drawLines(ticks, 0, HOUR_TICKS * FLOATS_PER_TICK, hourStyle);
+        target.drawLines(ticks, HOUR_TICKS * FLOATS_PER_TICK, MINUTE_TICKS * FLOATS_PER_TICK,
+                minuteStyle);
+        if (numeralStyle != null) {
+            for (int i = 0; i < HOUR_TICKS; i++) {
+                target.drawText(NUMERALS[i], numeralX[i], numeralY[i], numeralStyle);
+            }
+        }
+    }
+
+    /**
+     * @return how many times the geometry was computed
+     */
+    public int getBuilds() {
+        return builds;
+    }
+}
@@ -0,0 +1,84 @@
+package net.heather_and_kevin.watchface.core;
+
+/**
+ * What the user can configure from the phone: the theme, the sweep rate and which complications
+ * are shown. Immutable; edits make a new config, and {@link #diff} tells which keys changed, one
+ * bit per key, so only what depends on those keys has to be rebuilt.
+ */
+public final class FaceConfig {
+    public static final int THEME = 0;
+    public static final int SWEEP_MAX_FPS = 1;
+    public static final int COMPLICATIONS = 2;
+    public static final int COUNT = 3;
+    public static final int ALL = (1 << COUNT) - 1;
+
+    public static final FaceConfig DEFAULT = new FaceConfig("default", 1,
+            ComplicationPipeline.ALL);
+
+    /**
+     * Name of a theme bundled with the watch app.
+     */
+    public final String theme;
+    /**
+     * Highest sweep rate, one of {@link FrameRateGovernor#RATES}.
+     */
+    public final int sweepMaxFps;
+    /**
+     * Enabled complications, one bit per {@link ComplicationPipeline} source.
+     */
+    public final int complications;
+
+    public FaceConfig(String theme, int sweepMaxFps, int complications) {
+        if (theme == null) {
+            throw new NullPointerException("theme");
+        }
+        this.theme = theme;
+        this.sweepMaxFps = sweepMaxFps;
+        this.complications = complications;
+    }
+
+    public FaceConfig withTheme(String theme) {
+        return new FaceConfig(theme, sweepMaxFps, complications);
+    }
+
+    public FaceConfig withSweepMaxFps(int sweepMaxFps) {
+        return new FaceConfig(theme, sweepMaxFps, complications);
+    }
+
+    public FaceConfig withComplications(int complications) {
+        return new FaceConfig(theme, sweepMaxFps, complications);
+    }
+
+    /**
+     * @return one bit per key whose value differs in {@code other}
+     */
+    public int diff(FaceConfig other) {
+        int keys = 0;
+        if (!theme.equals(other.theme)) {
+            keys |= 1 << THEME;
+        }
+        if (sweepMaxFps != other.sweepMaxFps) {
+            keys |= 1 << SWEEP_MAX_FPS;
+        }
+        if (complications != other.complications) {
+            keys |= 1 << COMPLICATIONS;
+        }
+        return keys;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof FaceConfig && diff((FaceConfig) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return (theme.hashCode() * 31 + sweepMaxFps) * 31 + complications;
+    }
+
+    @Override
+    public String toString() {
+        return "theme=" + theme + " sweep=" + sweepMaxFps + "fps complications="
+                + Integer.toBinaryString(complications);
+    }
+}
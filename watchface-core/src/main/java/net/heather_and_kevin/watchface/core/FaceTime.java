@@ -0,0 +1,86 @@
+package net.heather_and_kevin.watchface.core;
+
+import java.util.TimeZone;
+
+/**
+ * Lightweight replacement for {@code android.text.format.Time} on the frame path. The zone offset
+ * is looked up at most once per wall-clock minute (offset changes happen on minute boundaries) and
+ * the rest is integer arithmetic on epoch millis.
+ *
+ * The zone itself only changes through {@link #setZone}, i.e. from the time zone broadcast.
+ */
+public class FaceTime {
+    private static final long MILLIS_PER_MINUTE = 60 * 1000;
+    private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+
+    public int hour;
+    public int minute;
+    public int second;
+    public int millis;
+
+    /**
+     * Day of the month, 1 to 31; worked out again only when the local day changes.
+     */
+    public int day;
+
+    private TimeZone zone;
+    private int offset;
+    private long offsetMinute = Long.MIN_VALUE;
+    private long localDay = Long.MIN_VALUE;
+
+    public FaceTime(TimeZone zone) {
+        this.zone = zone;
+    }
+
+    public void setZone(TimeZone zone) {
+        this.zone = zone;
+        this.offsetMinute = Long.MIN_VALUE;
+    }
+
+    public TimeZone getZone() {
+        return zone;
+    }
+
+    public void set(long epochMillis) {
+        long utcMinute = floorDiv(epochMillis, MILLIS_PER_MINUTE);
+        if (utcMinute != offsetMinute) {
+            offset = zone.getOffset(epochMillis);
+            offsetMinute = utcMinute;
+        }
+
+        long local = epochMillis + offset;
+        long epochDay = floorDiv(local, MILLIS_PER_DAY);
+        if (epochDay != localDay) {
+            day = dayOfMonth(epochDay);
+            localDay = epochDay;
+        }
+        int millisOfDay = (int) (local - epochDay * MILLIS_PER_DAY);
+        millis = millisOfDay % 1000;
+        int secondOfDay = millisOfDay / 1000;
+        second = secondOfDay % 60;
+        minute = (secondOfDay / 60) % 60;
+        hour = secondOfDay / 3600;
+    }
+
+    /**
+     * Day of the month of a day counted from 1970-01-01, in the proleptic Gregorian calendar.
+     */
+    static int dayOfMonth(long epochDay) {
+        // shift to eras of 400 years starting on March 1st, so leap days fall at the end
+        long days = epochDay + 719468;
+        long era = floorDiv(days, 146097);
+        int dayOfEra = (int) (days - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int monthIndex = (5 * dayOfYear + 2) / 153;
+        return dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x < 0) != (y < 0))) {
+            q--;
+        }
+        return q;
+    }
+}
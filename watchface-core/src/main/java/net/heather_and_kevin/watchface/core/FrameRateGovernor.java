@@ -0,0 +1,184 @@
+package net.heather_and_kevin.watchface.core;
+
+/**
+ * Picks the frame rate for the sweeping second hand. The battery sets a ceiling (charging allows
+ * the full rate, an emptying battery falls back to a once-a-second tick), and measured frame cost
+ * steps the rate down when frames keep overrunning their budget and back up once there has been
+ * headroom for a while.
+ */
+public class FrameRateGovernor {
+    /**
+     * Supported rates in frames per second; 1 is the plain ticking second hand.
+     */
+    public static final int[] RATES = {1, 10, 15, 30, 60};
+
+    /**
+     * Share of the frame interval a frame may take before it counts as an overrun; the rest is
+     * left for the system to composite and sleep.
+     */
+    private static final float BUDGET_FRACTION = 0.5f;
+
+    private static final int OVERRUNS_BEFORE_STEP_DOWN = 3;
+    private static final int HEADROOM_SECONDS_BEFORE_STEP_UP = 5;
+
+    private int maxLevel = RATES.length - 1;
+    private float batteryFraction = 1f;
+    private boolean charging;
+
+    private int level;
+    private int costLimitLevel = RATES.length - 1;
+    private int overrunStreak;
+    private int headroomFrames;
+    private long averageCostNanos;
+
+    private long frames;
+    private long overruns;
+    private long stepDowns;
+    private long stepUps;
+    private long batteryChanges;
+
+    public FrameRateGovernor() {
+        level = targetLevel();
+    }
+
+    /**
+     * Highest rate the user asked for; 1 disables sweeping.
+     */
+    public boolean setMaxRate(int fps) {
+        maxLevel = levelFor(fps);
+        return update();
+    }
+
+    /**
+     * @return whether the rate changed
+     */
+    public boolean setBattery(float fraction, boolean charging) {
+        this.batteryFraction = fraction;
+        this.charging = charging;
+        boolean changed = update();
+        if (changed) {
+            batteryChanges++;
+        }
+        return changed;
+    }
+
+    /**
+     * Records the cost of one drawn frame.
+     *
+     * @return whether the rate changed
+     */
+    public boolean onFrame(long costNanos) {
+        frames++;
+        averageCostNanos += (costNanos - averageCostNanos) / 8;
+
+        long intervalNanos = 1000000000L / RATES[level];
+        if (costNanos > intervalNanos * BUDGET_FRACTION) {
+            overruns++;
+            headroomFrames = 0;
+            if (++overrunStreak >= OVERRUNS_BEFORE_STEP_DOWN && level > 0) {
+                costLimitLevel = level - 1;
+                overrunStreak = 0;
+                stepDowns++;
+                return update();
+            }
+            return false;
+        }
+        overrunStreak = 0;
+
+        if (costLimitLevel < RATES.length - 1) {
+            long nextIntervalNanos = 1000000000L / RATES[costLimitLevel + 1];
+            if (averageCostNanos < nextIntervalNanos * BUDGET_FRACTION / 2) {
+                if (++headroomFrames >= RATES[level] * HEADROOM_SECONDS_BEFORE_STEP_UP) {
+                    costLimitLevel++;
+                    headroomFrames = 0;
+                    int before = level;
+                    boolean changed = update();
+                    if (level > before) {
+                        stepUps++;
+                    }
+                    return changed;
+                }
+            } else {
+                headroomFrames = 0;
+            }
+        }
+        return false;
+    }
+
+    public int getRate() {
+        return RATES[level];
+    }
+
+    public boolean isSweeping() {
+        return RATES[level] > 1;
+    }
+
+    public long getFrameIntervalMs() {
+        return Math.round(1000f / RATES[level]);
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getOverruns() {
+        return overruns;
+    }
+
+    public long getStepDowns() {
+        return stepDowns;
+    }
+
+    public long getStepUps() {
+        return stepUps;
+    }
+
+    public long getBatteryChanges() {
+        return batteryChanges;
+    }
+
+    public long getAverageCostNanos() {
+        return averageCostNanos;
+    }
+
+    private boolean update() {
+        int target = targetLevel();
+        if (target == level) {
+            return false;
+        }
+        level = target;
+        overrunStreak = 0;
+        headroomFrames = 0;
+        return true;
+    }
+
+    private int targetLevel() {
+        return Math.min(maxLevel, Math.min(batteryLevel(), costLimitLevel));
+    }
+
+    private int batteryLevel() {
+        if (charging) {
+            return RATES.length - 1;
+        } else if (batteryFraction >= 0.5f) {
+            return levelFor(30);
+        } else if (batteryFraction >= 0.3f) {
+            return levelFor(15);
+        } else if (batteryFraction >= 0.15f) {
+            return levelFor(10);
+        }
+        return 0;
+    }
+
+    /**
+     * Highest supported level not above {@code fps}.
+     */
+    static int levelFor(int fps) {
+        int result = 0;
+        for (int i = 0; i < RATES.length; i++) {
+            if (RATES[i] <= fps) {
+                result = i;
+            }
+        }
+        return result;
+    }
+}
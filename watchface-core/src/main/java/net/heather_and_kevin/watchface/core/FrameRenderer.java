@@ -0,0 +1,431 @@
+package net.heather_and_kevin.watchface.core;
+
+/**
+ * Draws an interactive frame of the face into a {@link RenderTarget}: the static layer with the
+ * background, dial and accessory discs, composited once and blitted every frame, then the hands.
+ * Ambient frames are drawn by {@link AmbientRenderer}. Everything the
+ * frame path needs is held here as plain fields so that {@link #draw} never allocates once the
+ * static layer is built.
+ *
+ * With a {@link LayerWorker} the static layer is built off the UI thread as soon as something it
+ * shows changes, and frames only composite finished layers.
+ */
+public class FrameRenderer {
+    private final ClockHand hourHand;
+    private final ClockHand minuteHand;
+    private final ClockHand secondHand;
+    private final float hourHandLengthPercent;
+    private final HandGeometry geometry;
+    private final AccessoryLayout accessoryLayout;
+    private final Style backgroundStyle;
+    private final Style accessoryBackgroundStyle;
+    private float hourHandLength;
+    private FrameStats stats = new FrameStats();
+
+    /**
+     * Static dial layer. The background, accessory discs and anything else that doesn't move
+     * between ticks is composited into this layer once, so a frame is a single drawLayer
+     * followed by the hands.
+     */
+    private Layer background;
+    private Layer staticLayer;
+    private boolean staticLayerDirty = true;
+    private LayerWorker layerWorker;
+    private ComplicationPipeline complications;
+    private AccessoryPainter accessoryPainter;
+    private int surfaceWidth;
+    private int surfaceHeight;
+    private boolean surfaceRound;
+    private float surfaceChinSize;
+    private DialGenerator dial;
+
+    /**
+     * Partial redraw. The surface handed to onDraw doesn't keep the previous frame, so frames
+     * are composed in {@link #frameLayer}, where only the damaged region is repainted, and then
+     * blitted whole. That blit costs as much as the full redraw of the static layer it saves,
+     * and the frame layer is another surface-sized bitmap, so it is off unless enabled.
+     */
+    private boolean partialRedraw;
+    private Layer frameLayer;
+    private int frameSaveCount;
+    private final DamageTracker damage = new DamageTracker();
+    private final float[] handBounds = new float[4];
+    /**
+     * The values an inline static layer rebuild paints; the worker gets its own copy.
+     */
+    private final int[] inlineValues = new int[ComplicationPipeline.COUNT];
+
+    /**
+     * What the next worker build paints, written by {@link #requestStaticLayer} and copied to
+     * {@link #workerBuild} when the build starts, both under {@code requestedBuild}'s lock. With
+     * the one {@link #staticLayerPainter}, a request allocates nothing.
+     */
+    private final StaticLayerBuild requestedBuild = new StaticLayerBuild();
+    private final StaticLayerBuild workerBuild = new StaticLayerBuild();
+    private final LayerWorker.Painter staticLayerPainter = new LayerWorker.Painter() {
+        @Override
+        public void paint(RenderTarget layer) {
+            StaticLayerBuild build = workerBuild;
+            synchronized (requestedBuild) {
+                build.copyFrom(requestedBuild);
+            }
+            paintStaticLayer(layer, build.background, build.hasValues ? build.values : null,
+                    build.width, build.height, build.round, build.chinSize, null);
+        }
+    };
+
+    public FrameRenderer(ClockHand hourHand, ClockHand minuteHand, ClockHand secondHand,
+                         float hourTickHeight, float handOffsetLength, float hourHandLengthPercent,
+                         AccessoryLayout accessoryLayout,
+                         Style backgroundStyle, Style accessoryBackgroundStyle) {
+        this.hourHand = hourHand;
+        this.minuteHand = minuteHand;
+        this.secondHand = secondHand;
+        this.hourHandLengthPercent = hourHandLengthPercent;
+        this.geometry = new HandGeometry(handOffsetLength + hourTickHeight, handOffsetLength);
+        this.accessoryLayout = accessoryLayout;
+        this.backgroundStyle = backgroundStyle;
+        this.accessoryBackgroundStyle = accessoryBackgroundStyle;
+    }
+
+    public void setStats(FrameStats stats) {
+        this.stats = stats;
+    }
+
+    public HandGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Builds the static layer on {@code layerWorker} from now on. Until its first build is
+     * published, frames fill with the background style.
+     */
+    public void setLayerWorker(LayerWorker layerWorker) {
+        if (this.layerWorker == null && staticLayer != null) {
+            staticLayer.release();
+        }
+        this.layerWorker = layerWorker;
+        staticLayer = null;
+        staticLayerDirty = true;
+        requestStaticLayer();
+    }
+
+    /**
+     * Paints the complication values into the accessory discs. The static layer is rebuilt at
+     * most once a frame, and only when a value changed at the precision it is shown at.
+     */
+    public void setComplications(ComplicationPipeline complications, AccessoryPainter painter) {
+        this.complications = complications;
+        this.accessoryPainter = painter;
+        invalidateStaticLayer();
+    }
+
+    /**
+     * Paints the ticks over the background, for faces whose background image doesn't have them
+     * or that have no background image at all. Null for no dial.
+     */
+    public void setDial(DialGenerator dial) {
+        this.dial = dial;
+        invalidateStaticLayer();
+    }
+
+    /**
+     * Repaints only the region the hands moved through, see {@link DamageTracker}. Off by
+     * default; only worth it once what the damage clips is costlier than a surface-sized blit.
+     */
+    public void setPartialRedraw(boolean partialRedraw) {
+        this.partialRedraw = partialRedraw;
+        damage.invalidateAll();
+        if (!partialRedraw && frameLayer != null) {
+            frameLayer.release();
+            frameLayer = null;
+        }
+    }
+
+    public boolean isPartialRedraw() {
+        return partialRedraw;
+    }
+
+    public DamageTracker getDamage() {
+        return damage;
+    }
+
+    /**
+     * Recomputes the hand length tables. Call on surface and insets changes only.
+     */
+    public void setSurface(int width, int height, boolean round, float chinSize) {
+        geometry.update(width, height, round, chinSize);
+        hourHandLength = height / 2f * hourHandLengthPercent;
+        surfaceWidth = width;
+        surfaceHeight = height;
+        surfaceRound = round;
+        surfaceChinSize = chinSize;
+        staticLayerDirty = true;
+        requestStaticLayer();
+    }
+
+    /**
+     * @param background a layer of the surface size from the target's backend, or null to fill
+     *                   with the background style while the bitmap is still loading
+     */
+    public void setBackground(Layer background) {
+        this.background = background;
+        staticLayerDirty = true;
+        requestStaticLayer();
+    }
+
+    /**
+     * Marks the static layer as stale. It is rebuilt on the next frame; call this whenever
+     * something it shows changes.
+     */
+    public void invalidateStaticLayer() {
+        staticLayerDirty = true;
+        requestStaticLayer();
+    }
+
+    /**
+     * Frees the static and frame layers. A worker's layers are freed by
+     * {@link LayerWorker#shutdown}.
+     */
+    public void release() {
+        if (layerWorker == null && staticLayer != null) {
+            staticLayer.release();
+        }
+        staticLayer = null;
+        if (frameLayer != null) {
+            frameLayer.release();
+            frameLayer = null;
+        }
+        staticLayerDirty = true;
+    }
+
+    /**
+     * Frees the static and frame layers, including a worker's, for memory pressure while frames
+     * aren't being drawn. The next frame rebuilds them.
+     */
+    public void trimMemory() {
+        release();
+        if (layerWorker != null) {
+            layerWorker.trim();
+        }
+    }
+
+    /**
+     * @param sweep whether the second hand sweeps; its angle then comes from {@code millis}
+     */
+    public void draw(RenderTarget target,
+                     int hour, int minute, int second, int millis, boolean sweep) {
+        int faceWidth = target.getWidth();
+        int faceHeight = target.getHeight();
+        float xCenter = faceWidth / 2.0f;
+        float yCenter = faceHeight / 2.0f;
+        int position;
+
+        if (complications != null && complications.takeDirty() != 0) {
+            invalidateStaticLayer();
+        }
+
+        // draw hours / minute / second hands
+        // the hour and minute hands aren't drawn, so their phases aren't timed either
+        //calculate hours
+        position = HandGeometry.hourPosition(hour, minute);
+        //display hours
+        hourHand.setHandLength(hourHandLength);
+//        hourHand.drawHand(target, xCenter, yCenter, position);
+
+        //calculate minutes
+        position = HandGeometry.minutePosition(minute, second);
+        //display minutes
+        minuteHand.setHandLength(geometry.minuteLengths[position]);
+//        minuteHand.drawHand(target,xCenter,yCenter,position);
+
+        //calculate seconds; drawn after the background, but partial redraw needs its bounds first
+        int secondPosition;
+        if (sweep) {
+            secondPosition = HandGeometry.sweepIndex(second, millis);
+            secondHand.setHandLength(geometry.secondSweepLengths[secondPosition]);
+        } else {
+            secondPosition = HandGeometry.secondPosition(second);
+            secondHand.setHandLength(geometry.secondLengths[second]);
+        }
+
+        //draw the pre-composited background and accessories
+        stats.begin(FrameStats.PHASE_BACKGROUND);
+        boolean rebuilt = false;
+        if (layerWorker != null) {
+            if (staticLayerDirty) {
+                // trimmed, or the surface wasn't known when the layer was last requested
+                requestStaticLayer();
+            }
+            Layer finished = layerWorker.acquire();
+            if (finished != null
+                    && (finished.getWidth() != faceWidth || finished.getHeight() != faceHeight)) {
+                finished = null;
+            }
+            rebuilt = finished == null || finished != staticLayer;
+            staticLayer = finished;
+        } else if (staticLayerDirty
+                || staticLayer.getWidth() != faceWidth || staticLayer.getHeight() != faceHeight) {
+            rebuildStaticLayer(target, faceWidth, faceHeight);
+            rebuilt = true;
+        }
+        RenderTarget frame = target;
+        if (partialRedraw) {
+            frame = beginPartialFrame(target, faceWidth, faceHeight, rebuilt,
+                    xCenter, yCenter, secondPosition);
+        }
+        if (staticLayer != null) {
+            frame.drawLayer(staticLayer, 0, 0);
+        } else {
+            // the worker hasn't finished a layer for this surface yet
+            frame.drawRect(0, 0, faceWidth, faceHeight, backgroundStyle);
+        }
+        stats.end(FrameStats.PHASE_BACKGROUND);
+
+        //display seconds
+        stats.begin(FrameStats.PHASE_SECOND_HAND);
+        secondHand.drawHand(frame, xCenter, yCenter, secondPosition);
+        stats.end(FrameStats.PHASE_SECOND_HAND);
+
+        if (partialRedraw) {
+            frame.restoreToCount(frameSaveCount);
+            target.drawLayer(frameLayer, 0, 0);
+        }
+    }
+
+    /**
+     * Opens {@link #frameLayer} clipped to what changed since the previous frame: the old and new
+     * second hand bounds, or everything after a rebuild.
+     */
+    private RenderTarget beginPartialFrame(RenderTarget target, int faceWidth, int faceHeight,
+                                           boolean rebuilt,
+                                           float xCenter, float yCenter, int secondPosition) {
+        if (frameLayer == null
+                || frameLayer.getWidth() != faceWidth
+                || frameLayer.getHeight() != faceHeight) {
+            if (frameLayer != null) {
+                frameLayer.release();
+            }
+            frameLayer = target.createLayer(faceWidth, faceHeight);
+            rebuilt = true;
+        }
+
+        damage.beginFrame();
+        secondHand.getBounds(xCenter, yCenter, secondPosition, handBounds);
+        damage.include(handBounds[0], handBounds[1], handBounds[2], handBounds[3]);
+        if (rebuilt) {
+            damage.invalidateAll();
+        }
+        damage.endFrame(faceWidth, faceHeight);
+
+        RenderTarget frame = target.openLayer(frameLayer);
+        frameSaveCount = frame.save();
+        frame.clipRect(damage.left, damage.top, damage.right, damage.bottom);
+        return frame;
+    }
+
+    /**
+     * Renders everything that doesn't change between ticks into {@link #staticLayer}.
+     */
+    private void rebuildStaticLayer(RenderTarget target, int faceWidth, int faceHeight) {
+        if (staticLayer == null
+                || staticLayer.getWidth() != faceWidth
+                || staticLayer.getHeight() != faceHeight) {
+            if (staticLayer != null) {
+                staticLayer.release();
+            }
+            staticLayer = target.createLayer(faceWidth, faceHeight);
+        }
+        paintStaticLayer(target.openLayer(staticLayer), background,
+                complications != null ? complications.snapshot(inlineValues) : null,
+                faceWidth, faceHeight, surfaceRound, surfaceChinSize, stats);
+
+        staticLayerDirty = false;
+    }
+
+    /**
+     * Queues a static layer build on the worker, with the background and complications as they
+     * are now. A build that starts after a newer request paints that one's state, and isn't
+     * published.
+     */
+    private void requestStaticLayer() {
+        if (layerWorker == null || surfaceWidth <= 0 || surfaceHeight <= 0) {
+            return;
+        }
+        synchronized (requestedBuild) {
+            requestedBuild.background = background;
+            requestedBuild.hasValues = complications != null;
+            if (complications != null) {
+                complications.snapshot(requestedBuild.values);
+            }
+            requestedBuild.width = surfaceWidth;
+            requestedBuild.height = surfaceHeight;
+            requestedBuild.round = surfaceRound;
+            requestedBuild.chinSize = surfaceChinSize;
+        }
+        layerWorker.request(surfaceWidth, surfaceHeight, staticLayerPainter);
+        staticLayerDirty = false;
+    }
+
+    /**
+     * Paints the background, dial, accessory discs and complications. Runs on the worker thread
+     * when there is one, which is then the only user of {@link #accessoryLayout} and the dial.
+     *
+     * @param values complication values, or null when there are no complications
+     * @param stats  null on the worker thread, which must not record into the frame stats
+     */
+    private void paintStaticLayer(RenderTarget layer, Layer background, int[] values,
+                                  int faceWidth, int faceHeight, boolean round,
+                                  float chinSize, FrameStats stats) {
+        //draw background
+        if (background != null) {
+            layer.drawLayer(background, 0, 0);
+        } else {
+            layer.drawRect(0, 0, faceWidth, faceHeight, backgroundStyle);
+        }
+        DialGenerator dial = this.dial;
+        if (dial != null) {
+            dial.update(faceWidth, faceHeight, round, chinSize);
+            dial.paint(layer);
+        }
+
+        //display other information
+        if (stats != null) {
+            stats.begin(FrameStats.PHASE_ACCESSORIES);
+        }
+        accessoryLayout.update(faceWidth, faceHeight);
+        for (int i = 0; i < AccessoryLayout.COUNT; i++) {
+            layer.drawCircle(accessoryLayout.centerX[i], accessoryLayout.centerY[i],
+                    accessoryLayout.radius, accessoryBackgroundStyle);
+        }
+        if (values != null) {
+            accessoryPainter.paint(layer, accessoryLayout, values);
+        }
+        if (stats != null) {
+            stats.end(FrameStats.PHASE_ACCESSORIES);
+        }
+    }
+
+    /**
+     * Everything a static layer build reads, so the worker never sees the frame thread's fields.
+     */
+    private static final class StaticLayerBuild {
+        Layer background;
+        final int[] values = new int[ComplicationPipeline.COUNT];
+        boolean hasValues;
+        int width;
+        int height;
+        boolean round;
+        float chinSize;
+
+        void copyFrom(StaticLayerBuild other) {
+            background = other.background;
+            System.arraycopy(other.values, 0, values, 0, values.length);
+            hasValues = other.hasValues;
+            width = other.width;
+            height = other.height;
+            round = other.round;
+            chinSize = other.chinSize;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package net.heather_and_kevin.watchface.core;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * Per-phase frame timing in fixed-size histograms. Recording is a couple of array writes and
+ * never allocates; when disabled every call returns after a single field check, so the recorder
+ * can stay in production builds.
+ *
+ * Buckets are powers of two in microseconds: bucket {@code i} holds durations in
+ * [2^i, 2^(i+1)) us, the last bucket holds everything slower.
+ */
+public class FrameStats {
+    public static final int PHASE_FRAME = 0;
+    public static final int PHASE_BACKGROUND = 1;
+    public static final int PHASE_ACCESSORIES = 2;
+    /**
+     * Not recorded by {@link FrameRenderer}, which doesn't draw the hour and minute hands.
+     */
+    public static final int PHASE_HOUR_HAND = 3;
+    public static final int PHASE_MINUTE_HAND = 4;
+    public static final int PHASE_SECOND_HAND = 5;
+    public static final int PHASE_AMBIENT = 6;
+    public static final int PHASE_COUNT = 7;
+
+    static final String[] PHASE_NAMES = {
+            "frame", "background", "accessories", "hourHand", "minuteHand", "secondHand",
+            "ambient"
+    };
+
+    static final int BUCKETS = 21;
+
+    /**
+     * Receives begin/end pairs around each phase, e.g. for systrace sections.
+     */
+    public interface Tracer {
+        void beginSection(String name);
+
+        void endSection();
+    }
+
+    private boolean enabled = true;
+    private Tracer tracer;
+
+    private final long[][] histograms = new long[PHASE_COUNT][BUCKETS];
+    private final long[] counts = new long[PHASE_COUNT];
+    private final long[] totalNanos = new long[PHASE_COUNT];
+    private final long[] maxNanos = new long[PHASE_COUNT];
+    private final long[] startNanos = new long[PHASE_COUNT];
+
+    private long interactiveFrames;
+    private long ambientFrames;
+    private long missedDeadlines;
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    public void begin(int phase) {
+        if (!enabled) {
+            return;
+        }
+        if (tracer != null) {
+            tracer.beginSection(PHASE_NAMES[phase]);
+        }
+        startNanos[phase] = System.nanoTime();
+    }
+
+    public void end(int phase) {
+        if (!enabled) {
+            return;
+        }
+        record(phase, System.nanoTime() - startNanos[phase]);
+        if (tracer != null) {
+            tracer.endSection();
+        }
+    }
+
+    /**
+     * Closes the {@link #PHASE_FRAME} phase.
+     *
+     * @param deadlineNanos the current frame interval; longer frames count as missed
+     */
+    public void endFrame(boolean ambient, long deadlineNanos) {
+        if (!enabled) {
+            return;
+        }
+        long nanos = System.nanoTime() - startNanos[PHASE_FRAME];
+        record(PHASE_FRAME, nanos);
+        if (ambient) {
+            ambientFrames++;
+        } else {
+            interactiveFrames++;
+        }
+        if (nanos > deadlineNanos) {
+            missedDeadlines++;
+        }
+        if (tracer != null) {
+            tracer.endSection();
+        }
+    }
+
+    public void record(int phase, long nanos) {
+        histograms[phase][bucket(nanos)]++;
+        counts[phase]++;
+        totalNanos[phase] += nanos;
+        if (nanos > maxNanos[phase]) {
+            maxNanos[phase] = nanos;
+        }
+    }
+
+    public long getCount(int phase) {
+        return counts[phase];
+    }
+
+    public long getMaxNanos(int phase) {
+        return maxNanos[phase];
+    }
+
+    public long getMeanNanos(int phase) {
+        return counts[phase] == 0 ? 0 : totalNanos[phase] / counts[phase];
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile, in nanoseconds.
+     */
+    public long getPercentileNanos(int phase, int percentile) {
+        long count = counts[phase];
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (count * percentile + 99) / 100;
+        long seen = 0;
+        long[] histogram = histograms[phase];
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += histogram[i];
+            if (seen >= rank) {
+                return i == BUCKETS - 1 ? maxNanos[phase] : (2L << i) * 1000;
+            }
+        }
+        return maxNanos[phase];
+    }
+
+    public long getInteractiveFrames() {
+        return interactiveFrames;
+    }
+
+    public long getAmbientFrames() {
+        return ambientFrames;
+    }
+
+    public long getMissedDeadlines() {
+        return missedDeadlines;
+    }
+
+    public void reset() {
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            Arrays.fill(histograms[phase], 0);
+        }
+        Arrays.fill(counts, 0);
+        Arrays.fill(totalNanos, 0);
+        Arrays.fill(maxNanos, 0);
+        interactiveFrames = 0;
+        ambientFrames = 0;
+        missedDeadlines = 0;
+    }
+
+    public void dump(PrintWriter out, String prefix) {
+        out.print(prefix);
+        out.println("frame stats" + (enabled ? "" : " (disabled)") + ": interactive="
+                + interactiveFrames + " ambient=" + ambientFrames
+                + " missedDeadlines=" + missedDeadlines);
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            if (counts[phase] == 0) {
+                continue;
+            }
+            out.print(prefix);
+            out.println("  " + PHASE_NAMES[phase] + ": n=" + counts[phase]
+                    + " mean=" + getMeanNanos(phase) / 1000 + "us"
+                    + " p50<=" + getPercentileNanos(phase, 50) / 1000 + "us"
+                    + " p90<=" + getPercentileNanos(phase, 90) / 1000 + "us"
+                    + " p99<=" + getPercentileNanos(phase, 99) / 1000 + "us"
+                    + " max=" + maxNanos[phase] / 1000 + "us");
+        }
+    }
+
+    static int bucket(long nanos) {
+        long micros = nanos / 1000;
+        int bucket = 0;
+        while (micros > 1 && bucket < BUCKETS - 1) {
+            micros >>= 1;
+            bucket++;
+        }
+        return bucket;
+    }
+}
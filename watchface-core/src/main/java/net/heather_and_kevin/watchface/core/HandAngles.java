@@ -0,0 +1,29 @@
+package net.heather_and_kevin.watchface.core;
+
+/**
+ * Hand angles in degrees, clockwise from 12 o'clock. Frames don't use these: they index
+ * {@link HandGeometry}'s direction tables by position, see {@link HandGeometry#hourPosition}.
+ */
+public final class HandAngles {
+    private HandAngles() {
+    }
+
+    public static float hour(int hour, int minute) {
+        return hour / 12f * 360f + minute / 60f * 1f / 12f * 360f;
+    }
+
+    public static float minute(int minute, int second) {
+        return minute / 60f * 360f + second / 60f * 1f / 60f * 360f;
+    }
+
+    public static float second(int second) {
+        return second / 60f * 360f;
+    }
+
+    /**
+     * Second hand angle including the fraction of the current second, for sweep mode.
+     */
+    public static float sweepSecond(int second, int millis) {
+        return (second * 1000 + millis) * (360f / 60000f);
+    }
+}
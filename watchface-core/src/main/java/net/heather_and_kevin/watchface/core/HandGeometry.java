@@ -0,0 +1,137 @@
+package net.heather_and_kevin.watchface.core;
+
+/**
+ * Hand lengths for every position a hand can take, clipped to the screen, and the direction of
+ * each position. Lengths are built once per surface/insets change and directions once per process,
+ * so the render thread only indexes into arrays.
+ *
+ * The screen is modelled as a circle (round) or rectangle (square) centered on the surface,
+ * optionally cut off at the bottom by a flat chin. A hand reaches from the center to that outline
+ * minus its inset.
+ */
+public class HandGeometry {
+    /**
+     * Discrete second (and minute) positions per revolution.
+     */
+    public static final int POSITIONS = 60;
+
+    /**
+     * Fine positions per revolution: one per second for the minute hand, and one per 1/60th of a
+     * second for a sweeping second hand.
+     */
+    public static final int FINE_POSITIONS = 3600;
+
+    /**
+     * Sine and cosine of each fine position's angle, clockwise from 12 o'clock. A hand at
+     * {@code position} points along (SIN, -COS) in surface coordinates.
+     */
+    public static final float[] SIN = new float[FINE_POSITIONS];
+    public static final float[] COS = new float[FINE_POSITIONS];
+
+    static {
+        for (int i = 0; i < FINE_POSITIONS; i++) {
+            double radians = Math.toRadians(i * 360.0 / FINE_POSITIONS);
+            SIN[i] = (float) Math.sin(radians);
+            COS[i] = (float) Math.cos(radians);
+        }
+    }
+
+    private final float minuteInset;
+    private final float secondInset;
+
+    /**
+     * Second hand length for each whole second.
+     */
+    public final float[] secondLengths = new float[POSITIONS];
+
+    /**
+     * Second hand length for sweep mode, indexed by {@link #sweepIndex}.
+     */
+    public final float[] secondSweepLengths = new float[FINE_POSITIONS];
+
+    /**
+     * Minute hand length indexed by {@code minute * 60 + second}.
+     */
+    public final float[] minuteLengths = new float[FINE_POSITIONS];
+
+    public HandGeometry(float minuteInset, float secondInset) {
+        this.minuteInset = minuteInset;
+        this.secondInset = secondInset;
+    }
+
+    public void update(int width, int height, boolean round, float chinSize) {
+        float halfWidth = width / 2f;
+        float halfHeight = height / 2f;
+        fill(secondLengths, secondInset, halfWidth, halfHeight, round, chinSize);
+        fill(secondSweepLengths, secondInset, halfWidth, halfHeight, round, chinSize);
+        fill(minuteLengths, minuteInset, halfWidth, halfHeight, round, chinSize);
+    }
+
+    /**
+     * Index into {@link #secondSweepLengths} for a time within the current minute; also the
+     * sweeping second hand's fine position.
+     */
+    public static int sweepIndex(int second, int millis) {
+        return (second * 1000 + millis) * FINE_POSITIONS / 60000;
+    }
+
+    /**
+     * Fine position of the hour hand, which moves every minute.
+     */
+    public static int hourPosition(int hour, int minute) {
+        return (hour % 12 * 60 + minute) * (FINE_POSITIONS / 720);
+    }
+
+    /**
+     * Fine position of the minute hand, which moves every second; also the index into
+     * {@link #minuteLengths}.
+     */
+    public static int minutePosition(int minute, int second) {
+        return minute * 60 + second;
+    }
+
+    /**
+     * Fine position of a ticking second hand.
+     */
+    public static int secondPosition(int second) {
+        return second * (FINE_POSITIONS / POSITIONS);
+    }
+
+    private static void fill(float[] table, float inset,
+                             float halfWidth, float halfHeight, boolean round, float chinSize) {
+        for (int i = 0; i < table.length; i++) {
+            float angle = i * 360f / table.length;
+            table[i] = edgeDistance(angle, halfWidth, halfHeight, round, chinSize) - inset;
+        }
+    }
+
+    /**
+     * Distance from the center to the visible edge of the screen along {@code angle} degrees,
+     * measured clockwise from 12 o'clock.
+     */
+    static float edgeDistance(float angle, float halfWidth, float halfHeight,
+                              boolean round, float chinSize) {
+        double radians = Math.toRadians(angle);
+        double sin = Math.abs(Math.sin(radians));
+        double cos = Math.cos(radians);
+
+        double distance;
+        if (round) {
+            distance = Math.min(halfWidth, halfHeight);
+        } else {
+            distance = Double.MAX_VALUE;
+            if (sin > 1e-6) {
+                distance = halfWidth / sin;
+            }
+            if (Math.abs(cos) > 1e-6) {
+                distance = Math.min(distance, halfHeight / Math.abs(cos));
+            }
+        }
+
+        // pointing down: the chin cuts the outline off with a horizontal line
+        if (chinSize > 0 && cos < 0) {
+            distance = Math.min(distance, (halfHeight - chinSize) / -cos);
+        }
+        return (float) distance;
+    }
+}
@@ -0,0 +1,21 @@
+package net.heather_and_kevin.watchface.core;
+
+/**
+ * An off-screen surface owned by a {@link RenderTarget} backend, e.g. a Bitmap on the watch. Only
+ * the backend that created a layer can draw it.
+ */
+public interface Layer {
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * @return the memory the layer's pixels take, for sprite and cache budgets
+     */
+    int getByteCount();
+
+    /**
+     * Frees the pixels. The layer must not be drawn afterwards.
+     */
+    void release();
+}
@@ -0,0 +1,232 @@
+package net.heather_and_kevin.watchface.core;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Builds a layer on a worker thread and hands finished generations to the frame path.
+ *
+ * The layer is double buffered: the worker paints the back buffer while frames keep compositing
+ * the front one, and publishes it with a single atomic swap. The front buffer only goes back to
+ * the worker when the frame path picks up a newer one, so a layer is never painted while it can
+ * still be drawn, and {@link #acquire} never locks or waits.
+ *
+ * Each {@link #request} supersedes the ones before it; older requests that haven't started are
+ * skipped and ones that finish late are not published. Requests don't allocate: the latest one is
+ * kept in fields and every queued run of the one build task picks it up.
+ */
+public class LayerWorker {
+    public interface Painter {
+        /**
+         * Called on the worker thread with the back buffer opened for drawing.
+         */
+        void paint(RenderTarget layer);
+    }
+
+    private final ExecutorService executor;
+
+    /**
+     * Creates and opens layers. Only touched on the worker thread.
+     */
+    private final RenderTarget factory;
+
+    private final AtomicReference<Layer> published = new AtomicReference<>();
+    private final AtomicReference<Layer> free = new AtomicReference<>();
+
+    /**
+     * The layer frames are compositing. Frame path only.
+     */
+    private Layer front;
+
+    /**
+     * Bumped for every request; work for older requests is dropped.
+     */
+    private volatile int generation;
+
+    /**
+     * The latest request, guarded by {@code this}.
+     */
+    private int requestGeneration;
+    private int requestWidth;
+    private int requestHeight;
+    private Painter requestPainter;
+
+    /**
+     * The generation the worker last started building. Worker thread only.
+     */
+    private int startedGeneration;
+
+    private final Runnable build = new Runnable() {
+        @Override
+        public void run() {
+            build();
+        }
+    };
+
+    private final AtomicInteger builds = new AtomicInteger();
+    private final AtomicInteger cancelled = new AtomicInteger();
+    private volatile long lastBuildNanos;
+
+    /**
+     * @param factory a target of the backend frames are drawn with, used only to create and open
+     *                layers; it must not be drawn to from any other thread
+     */
+    public LayerWorker(RenderTarget factory) {
+        this(Executors.newSingleThreadExecutor(), factory);
+    }
+
+    LayerWorker(ExecutorService executor, RenderTarget factory) {
+        this.executor = executor;
+        this.factory = factory;
+    }
+
+    /**
+     * Queues a build of a {@code width} x {@code height} layer. The painter runs on the worker
+     * thread, so it must only read state that the caller won't change afterwards.
+     */
+    public void request(int width, int height, Painter painter) {
+        synchronized (this) {
+            requestGeneration = ++generation;
+            requestWidth = width;
+            requestHeight = height;
+            requestPainter = painter;
+        }
+        executor.execute(build);
+    }
+
+    private void build() {
+        int buildGeneration;
+        int width;
+        int height;
+        Painter painter;
+        synchronized (this) {
+            buildGeneration = requestGeneration;
+            width = requestWidth;
+            height = requestHeight;
+            painter = requestPainter;
+        }
+        // superseded or trimmed, or an earlier run already built the latest request
+        if (buildGeneration != generation || buildGeneration == startedGeneration) {
+            cancelled.incrementAndGet();
+            return;
+        }
+        startedGeneration = buildGeneration;
+        long start = System.nanoTime();
+        Layer back = free.getAndSet(null);
+        if (back != null && (back.getWidth() != width || back.getHeight() != height)) {
+            back.release();
+            back = null;
+        }
+        if (back == null) {
+            back = factory.createLayer(width, height);
+        }
+        painter.paint(factory.openLayer(back));
+
+        if (buildGeneration != generation) {
+            cancelled.incrementAndGet();
+            recycle(back);
+            return;
+        }
+        // a layer the frame path never picked up goes straight back to the pool
+        recycle(published.getAndSet(back));
+        lastBuildNanos = System.nanoTime() - start;
+        builds.incrementAndGet();
+    }
+
+    /**
+     * Returns the newest finished layer, or null before the first build completes. The layer
+     * returned by the previous call is handed back to the worker once a newer one is picked up,
+     * so only draw the layer from the latest call. Frame path only.
+     */
+    public Layer acquire() {
+        Layer next = published.getAndSet(null);
+        if (next != null) {
+            recycle(front);
+            front = next;
+        }
+        return front;
+    }
+
+    /**
+     * Releases {@code layer} after the builds already queued, for layers a painter may still be
+     * reading from, e.g. a background that was just replaced.
+     */
+    public void releaseAfterPending(final Layer layer) {
+        runAfterPending(new Runnable() {
+            @Override
+            public void run() {
+                layer.release();
+            }
+        });
+    }
+
+    /**
+     * Runs {@code task} on the worker after everything already queued, including releases and
+     * {@link #trim}; right away once the worker is shut down.
+     */
+    public void runAfterPending(Runnable task) {
+        if (executor.isShutdown()) {
+            task.run();
+            return;
+        }
+        executor.execute(task);
+    }
+
+    public int getBuilds() {
+        return builds.get();
+    }
+
+    public int getCancelled() {
+        return cancelled.get();
+    }
+
+    public long getLastBuildNanos() {
+        return lastBuildNanos;
+    }
+
+    /**
+     * Drops pending requests and frees both buffers once the worker is idle, e.g. under memory
+     * pressure; the next {@link #request} allocates again. Stop drawing the acquired layer before
+     * calling this.
+     */
+    public void trim() {
+        synchronized (this) {
+            generation++;
+        }
+        final Layer current = front;
+        front = null;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                release(current);
+                release(published.getAndSet(null));
+                release(free.getAndSet(null));
+            }
+        });
+    }
+
+    /**
+     * Trims and stops the worker.
+     */
+    public void shutdown() {
+        trim();
+        executor.shutdown();
+    }
+
+    /**
+     * Puts a layer nobody draws any more back in the pool; only one spare is kept.
+     */
+    private void recycle(Layer layer) {
+        if (layer != null) {
+            release(free.getAndSet(layer));
+        }
+    }
+
+    private static void release(Layer layer) {
+        if (layer != null) {
+            layer.release();
+        }
+    }
+}
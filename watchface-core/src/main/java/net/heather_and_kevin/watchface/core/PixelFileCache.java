@@ -0,0 +1,332 @@
+package net.heather_and_kevin.watchface.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Raw, uncompressed pixels persisted in a cache directory so that a restarted process can skip
+ * decoding and scaling. Reads map the file and hand back the pixel bytes for the backend to copy
+ * straight into its bitmap.
+ *
+ * File names start with the cache version, which callers derive from the installed app, so
+ * entries from an older install are never read and {@link #pruneStale} deletes them. The rest of
+ * the key (surface size, insets, source image) is chosen by the caller, see {@link #key}. Least
+ * recently used entries are evicted once the directory grows past its cap.
+ *
+ * Thread safe, also across instances over the same directory, e.g. one per watch face engine:
+ * reads, writes and pruning of a directory take turns on one lock. A mapped entry stays readable
+ * after another instance evicts its file.
+ */
+public class PixelFileCache {
+    private static final int MAGIC = 0x57465058; // "WFPX"
+    private static final int FORMAT_VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    private static final String SUFFIX = ".px";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * One lock per cache directory, by absolute path.
+     */
+    private static final Map<String, Object> LOCKS = new HashMap<>();
+
+    /**
+     * Pixels read from the cache. {@link #pixels} is a read-only view of the mapped file,
+     * positioned at the first pixel.
+     */
+    public static final class Entry {
+        public final int width;
+        public final int height;
+        public final int bytesPerPixel;
+        /**
+         * Whatever the writer stored alongside the pixels, e.g. a lit pixel count.
+         */
+        public final int extra;
+        public final ByteBuffer pixels;
+
+        Entry(int width, int height, int bytesPerPixel, int extra, ByteBuffer pixels) {
+            this.width = width;
+            this.height = height;
+            this.bytesPerPixel = bytesPerPixel;
+            this.extra = extra;
+            this.pixels = pixels;
+        }
+    }
+
+    private final File directory;
+    private final String version;
+    private final long maxBytes;
+    private final Object lock;
+
+    private int hits;
+    private int misses;
+    private int writes;
+    private int evictions;
+    private int invalid;
+
+    /**
+     * @param version  changes whenever cached pixels may no longer match what would be decoded,
+     *                 e.g. the app version code and install time
+     * @param maxBytes cap on the total size of all entries
+     */
+    public PixelFileCache(File directory, String version, long maxBytes) {
+        this.directory = directory;
+        this.version = version;
+        this.maxBytes = maxBytes;
+        this.lock = lockFor(directory);
+    }
+
+    private static Object lockFor(File directory) {
+        synchronized (LOCKS) {
+            String path = directory.getAbsolutePath();
+            Object lock = LOCKS.get(path);
+            if (lock == null) {
+                lock = new Object();
+                LOCKS.put(path, lock);
+            }
+            return lock;
+        }
+    }
+
+    /**
+     * A key for an image scaled to a surface; {@code content} is a checksum of the source image,
+     * not a resource id, which can change meaning between builds.
+     */
+    public static String key(String name, int width, int height, int chinSize, boolean round,
+                             long content) {
+        return name + "-" + width + "x" + height + "-c" + chinSize + (round ? "r" : "s")
+                + "-" + Long.toHexString(content);
+    }
+
+    /**
+     * @return the cached pixels, or null if there is no valid entry for {@code key}
+     */
+    public Entry read(String key) {
+        synchronized (lock) {
+            return readLocked(key);
+        }
+    }
+
+    private Entry readLocked(String key) {
+        File file = file(key);
+        if (!file.isFile()) {
+            misses++;
+            return null;
+        }
+        try {
+            RandomAccessFile in = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = in.getChannel();
+                long length = channel.size();
+                if (length < HEADER_BYTES) {
+                    return invalidate(file);
+                }
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                mapped.order(ByteOrder.BIG_ENDIAN);
+                int magic = mapped.getInt();
+                int format = mapped.getInt();
+                int width = mapped.getInt();
+                int height = mapped.getInt();
+                int bytesPerPixel = mapped.getInt();
+                int extra = mapped.getInt();
+                if (magic != MAGIC || format != FORMAT_VERSION || width <= 0 || height <= 0
+                        || length != HEADER_BYTES + (long) width * height * bytesPerPixel) {
+                    return invalidate(file);
+                }
+                mapped.position(HEADER_BYTES);
+                hits++;
+                file.setLastModified(System.currentTimeMillis());
+                // the mapping stays valid after the channel is closed
+                return new Entry(width, height, bytesPerPixel, extra,
+                        mapped.slice().asReadOnlyBuffer());
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return invalidate(file);
+        }
+    }
+
+    /**
+     * Stores {@code pixels} from its position to its limit. The entry appears atomically, so a
+     * crash mid-write never leaves a truncated entry behind.
+     */
+    public void write(String key, int width, int height, int bytesPerPixel, int extra,
+                      ByteBuffer pixels) throws IOException {
+        if (pixels.remaining() != width * height * bytesPerPixel) {
+            throw new IllegalArgumentException("expected " + width * height * bytesPerPixel
+                    + " bytes, got " + pixels.remaining());
+        }
+        // under the lock, so pruneStale can't take the temporary file for a crash's leftover
+        synchronized (lock) {
+            writeLocked(key, width, height, bytesPerPixel, extra, pixels);
+        }
+    }
+
+    private void writeLocked(String key, int width, int height, int bytesPerPixel, int extra,
+                             ByteBuffer pixels) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("can't create " + directory);
+        }
+        File file = file(key);
+        // unique, in case another process writes the same key
+        File temp = File.createTempFile(file.getName() + ".", TEMP_SUFFIX, directory);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.BIG_ENDIAN);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(width).putInt(height)
+                .putInt(bytesPerPixel).putInt(extra);
+        header.rewind();
+
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            FileChannel channel = out.getChannel();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            ByteBuffer body = pixels.duplicate();
+            while (body.hasRemaining()) {
+                channel.write(body);
+            }
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("can't rename " + temp + " to " + file);
+        }
+        writes++;
+        trim();
+    }
+
+    /**
+     * Deletes entries of other cache versions and leftover temporary files.
+     */
+    public void pruneStale() {
+        synchronized (lock) {
+            File[] files = directory.listFiles();
+            if (files == null) {
+                return;
+            }
+            String prefix = version + "-";
+            for (File file : files) {
+                String name = file.getName();
+                if (!name.startsWith(prefix) || !name.endsWith(SUFFIX)) {
+                    if (file.delete()) {
+                        evictions++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the bytes all current entries take on disk
+     */
+    public long getSizeBytes() {
+        synchronized (lock) {
+            long total = 0;
+            for (File file : entries()) {
+                total += file.length();
+            }
+            return total;
+        }
+    }
+
+    public int getHits() {
+        synchronized (lock) {
+            return hits;
+        }
+    }
+
+    public int getMisses() {
+        synchronized (lock) {
+            return misses;
+        }
+    }
+
+    public int getWrites() {
+        synchronized (lock) {
+            return writes;
+        }
+    }
+
+    public int getEvictions() {
+        synchronized (lock) {
+            return evictions;
+        }
+    }
+
+    /**
+     * @return how many entries were deleted because they couldn't be read back
+     */
+    public int getInvalid() {
+        synchronized (lock) {
+            return invalid;
+        }
+    }
+
+    /**
+     * Evicts least recently used entries until the total is within {@link #maxBytes}. Called with
+     * the lock held.
+     */
+    private void trim() {
+        File[] files = entries();
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long l = a.lastModified();
+                long r = b.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < files.length && total > maxBytes; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                total -= length;
+                evictions++;
+            }
+        }
+    }
+
+    private File[] entries() {
+        final String prefix = version + "-";
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        int count = 0;
+        for (File file : files) {
+            if (file.getName().startsWith(prefix) && file.getName().endsWith(SUFFIX)) {
+                files[count++] = file;
+            }
+        }
+        return Arrays.copyOf(files, count);
+    }
+
+    private Entry invalidate(File file) {
+        misses++;
+        invalid++;
+        file.delete();
+        return null;
+    }
+
+    private File file(String key) {
+        return new File(directory, version + "-" + key + SUFFIX);
+    }
+}
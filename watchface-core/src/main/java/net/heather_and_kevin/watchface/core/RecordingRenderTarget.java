@@ -0,0 +1,283 @@
+package net.heather_and_kevin.watchface.core;
+
+/**
+ * A {@link RenderTarget} that draws nothing and counts instead: draw calls by kind, saves, clips
+ * and the area painted. Area is estimated per primitive (a line is length times width, a circle
+ * its disc or ring), so overdraw is the painted area over the target area. Counters cover the
+ * current frame, from the last {@link #beginFrame}; totals cover every frame. Drawing into layers
+ * opened from this target counts separately as off-screen work.
+ */
+public class RecordingRenderTarget implements RenderTarget {
+    public static final int OP_COLOR = 0;
+    public static final int OP_RECT = 1;
+    public static final int OP_CIRCLE = 2;
+    public static final int OP_LINE = 3;
+    public static final int OP_LAYER = 4;
+    public static final int OP_LINES = 5;
+    public static final int OP_TEXT = 6;
+    public static final int OP_COUNT = 7;
+
+    private final int width;
+    private final int height;
+    private final RecordingRenderTarget parent;
+
+    private final int[] drawCalls = new int[OP_COUNT];
+    private int saves;
+    private int clips;
+    private double paintedArea;
+    private int frames;
+    private long totalDrawCalls;
+    private long totalSaves;
+    private int offscreenDrawCalls;
+    private int layersCreated;
+    private int layersOpened;
+    private int saveCount = 1;
+    private RecordingRenderTarget layerTarget;
+
+    public RecordingRenderTarget(int width, int height) {
+        this(width, height, null);
+    }
+
+    private RecordingRenderTarget(int width, int height, RecordingRenderTarget parent) {
+        this.width = width;
+        this.height = height;
+        this.parent = parent;
+    }
+
+    /**
+     * Starts counting a new frame.
+     */
+    public void beginFrame() {
+        for (int i = 0; i < OP_COUNT; i++) {
+            drawCalls[i] = 0;
+        }
+        saves = 0;
+        clips = 0;
+        paintedArea = 0;
+        offscreenDrawCalls = 0;
+        layersCreated = 0;
+        layersOpened = 0;
+        saveCount = 1;
+        frames++;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void drawColor(int color) {
+        record(OP_COLOR, (double) width * height);
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, Style style) {
+        double w = Math.abs(right - left);
+        double h = Math.abs(bottom - top);
+        record(OP_RECT, style.stroke ? 2 * (w + h) * style.strokeWidth : w * h);
+    }
+
+    @Override
+    public void drawCircle(float centerX, float centerY, float radius, Style style) {
+        record(OP_CIRCLE, style.stroke
+                ? 2 * Math.PI * radius * style.strokeWidth
+                : Math.PI * radius * radius);
+    }
+
+    @Override
+    public void drawLine(float startX, float startY, float stopX, float stopY, Style style) {
+        double length = Math.hypot(stopX - startX, stopY - startY);
+        record(OP_LINE, length * Math.max(1f, style.strokeWidth));
+    }
+
+    @Override
+    public void drawLines(float[] points, int offset, int count, Style style) {
+        if (offset < 0 || count % 4 != 0 || offset + count > points.length) {
+            throw new IllegalArgumentException("bad segment range " + offset + "+" + count
+                    + " of " + points.length);
+        }
+        double length = 0;
+        for (int i = offset; i < offset + count; i += 4) {
+            length += Math.hypot(points[i + 2] - points[i], points[i + 3] - points[i + 1]);
+        }
+        record(OP_LINES, length * Math.max(1f, style.strokeWidth));
+    }
+
+    @Override
+    public void drawText(String text, float centerX, float centerY, Style style) {
+        if (style.textSize <= 0) {
+            throw new IllegalArgumentException("not a text style: " + style);
+        }
+        // roughly the box the glyphs cover
+        record(OP_TEXT, text.length() * 0.6 * style.textSize * style.textSize);
+    }
+
+    @Override
+    public void drawLayer(Layer layer, float left, float top) {
+        if (!(layer instanceof RecordingLayer)) {
+            throw new IllegalArgumentException("layer was not created by this backend: " + layer);
+        }
+        if (((RecordingLayer) layer).released) {
+            throw new IllegalStateException("layer has been released");
+        }
+        record(OP_LAYER, (double) layer.getWidth() * layer.getHeight());
+    }
+
+    private void record(int op, double area) {
+        if (parent != null) {
+            parent.offscreenDrawCalls++;
+            return;
+        }
+        drawCalls[op]++;
+        totalDrawCalls++;
+        paintedArea += area;
+    }
+
+    @Override
+    public int save() {
+        if (parent == null) {
+            saves++;
+            totalSaves++;
+        }
+        return saveCount++;
+    }
+
+    @Override
+    public void restoreToCount(int saveCount) {
+        if (saveCount < 1 || saveCount >= this.saveCount) {
+            throw new IllegalStateException("restore to " + saveCount + " with "
+                    + this.saveCount + " saves outstanding");
+        }
+        this.saveCount = saveCount;
+    }
+
+    @Override
+    public void clipRect(float left, float top, float right, float bottom) {
+        if (parent == null) {
+            clips++;
+        }
+    }
+
+    @Override
+    public Layer createLayer(int width, int height) {
+        layersCreated++;
+        return new RecordingLayer(width, height);
+    }
+
+    @Override
+    public RenderTarget openLayer(Layer layer) {
+        layersOpened++;
+        // reused so that rebuilding cached layers, e.g. on ambient switches, doesn't allocate
+        if (layerTarget == null || layerTarget.width != layer.getWidth()
+                || layerTarget.height != layer.getHeight()) {
+            layerTarget = new RecordingRenderTarget(layer.getWidth(), layer.getHeight(),
+                    parent != null ? parent : this);
+        }
+        return layerTarget;
+    }
+
+    /**
+     * @return draw calls of every kind this frame
+     */
+    public int getDrawCalls() {
+        int total = 0;
+        for (int i = 0; i < OP_COUNT; i++) {
+            total += drawCalls[i];
+        }
+        return total;
+    }
+
+    public int getDrawCalls(int op) {
+        return drawCalls[op];
+    }
+
+    public int getSaves() {
+        return saves;
+    }
+
+    public int getClips() {
+        return clips;
+    }
+
+    /**
+     * @return area painted this frame divided by the target area
+     */
+    public double getOverdraw() {
+        return paintedArea / ((double) width * height);
+    }
+
+    /**
+     * @return draw calls made into opened layers this frame, e.g. rebuilding the static layer
+     */
+    public int getOffscreenDrawCalls() {
+        return offscreenDrawCalls;
+    }
+
+    public int getLayersCreated() {
+        return layersCreated;
+    }
+
+    public int getLayersOpened() {
+        return layersOpened;
+    }
+
+    public int getFrames() {
+        return frames;
+    }
+
+    public long getTotalDrawCalls() {
+        return totalDrawCalls;
+    }
+
+    public long getTotalSaves() {
+        return totalSaves;
+    }
+
+    @Override
+    public String toString() {
+        return "draws=" + getDrawCalls() + " (color=" + drawCalls[OP_COLOR]
+                + " rect=" + drawCalls[OP_RECT] + " circle=" + drawCalls[OP_CIRCLE]
+                + " line=" + drawCalls[OP_LINE] + " layer=" + drawCalls[OP_LAYER]
+                + " lines=" + drawCalls[OP_LINES] + " text=" + drawCalls[OP_TEXT]
+                + ") saves=" + saves + " clips=" + clips
+                + String.format(" overdraw=%.2f", getOverdraw())
+                + " offscreen=" + offscreenDrawCalls;
+    }
+
+    private static class RecordingLayer implements Layer {
+        private final int width;
+        private final int height;
+        private boolean released;
+
+        RecordingLayer(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public int getByteCount() {
+            return width * height * 4;
+        }
+
+        @Override
+        public void release() {
+            released = true;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package net.heather_and_kevin.watchface.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A {@link Theme} compiled into what frames draw with: colors and dimensions resolved into
+ * primitive arrays, and every style built once and shared through a {@link StylePool}. A plan is
+ * immutable, so switching themes means compiling a new one and building the renderers from it;
+ * frames never look anything up by name.
+ */
+public final class RenderPlan {
+    public static final int COLOR_BACKGROUND = 0;
+    public static final int COLOR_TICK = 1;
+    public static final int COLOR_HAND = 2;
+    public static final int COLOR_HAND_ACCENT = 3;
+    public static final int COLOR_SECOND_HAND = 4;
+    public static final int COLOR_ACCESSORY = 5;
+    public static final int COLOR_ACCESSORY_BACKGROUND = 6;
+    public static final int COLOR_AMBIENT_HAND = 7;
+    public static final int COLOR_COUNT = 8;
+
+    public static final int DIM_HOUR_TICK_HEIGHT = 0;
+    public static final int DIM_MINUTE_TICK_HEIGHT = 1;
+    public static final int DIM_TICK_MARGIN = 2;
+    public static final int DIM_HOUR_TICK_WIDTH = 3;
+    public static final int DIM_MINUTE_TICK_WIDTH = 4;
+    public static final int DIM_NUMERAL_SIZE = 5;
+    public static final int DIM_NUMERAL_INSET = 6;
+    public static final int DIM_BASE_MOUNT_WIDTH = 7;
+    public static final int DIM_HOUR_HAND_WIDTH = 8;
+    public static final int DIM_MINUTE_HAND_WIDTH = 9;
+    public static final int DIM_SECOND_HAND_WIDTH = 10;
+    public static final int DIM_HAND_OFFSET_LENGTH = 11;
+    public static final int DIM_HOUR_HAND_LENGTH_PERCENT = 12;
+    public static final int DIM_AMBIENT_HOUR_HAND_WIDTH = 13;
+    public static final int DIM_AMBIENT_MINUTE_HAND_WIDTH = 14;
+    public static final int DIM_ACCESSORY_CIRCLE_SIZE = 15;
+    public static final int DIM_ACCESSORY_STROKE_WIDTH = 16;
+    public static final int DIM_COUNT = 17;
+
+    /**
+     * Theme keys, indexed by the constants above.
+     */
+    private static final String[] COLOR_KEYS = {
+            "background", "tick", "hand", "handAccent", "secondHand", "accessory",
+            "accessoryBackground", "ambientHand"
+    };
+    private static final String[] DIMENSION_KEYS = {
+            "hourTickHeight", "minuteTickHeight", "tickMargin", "hourTickWidth",
+            "minuteTickWidth", "numeralSize", "numeralInset", "baseMountWidth", "hourHandWidth",
+            "minuteHandWidth", "secondHandWidth", "handOffsetLength", "hourHandLengthPercent",
+            "ambientHourHandWidth", "ambientMinuteHandWidth", "accessoryCircleSize",
+            "accessoryStrokeWidth"
+    };
+    private static final String NAME_KEY = "name";
+    /**
+     * Optional, false when absent: whether the dial is drawn by {@link DialGenerator} instead of
+     * coming from the interactive background image.
+     */
+    private static final String PROCEDURAL_DIAL_KEY = "proceduralDial";
+
+    private final String name;
+    private final boolean proceduralDial;
+    private final int[] colors;
+    private final float[] dimensions;
+    private final StylePool pool;
+
+    public final Style background;
+    public final Style accessoryBackground;
+    public final Style hand;
+    public final Style secondHand;
+    public final Style hourTick;
+    public final Style minuteTick;
+    /**
+     * Null when the theme has no numerals, i.e. a numeral size of 0.
+     */
+    public final Style numeral;
+    public final Style batteryTrack;
+    public final Style batteryLevel;
+    public final Style dateMark;
+    public final Style dateToday;
+
+    private RenderPlan(String name, boolean proceduralDial, int[] colors, float[] dimensions,
+                       StylePool pool) {
+        this.name = name;
+        this.proceduralDial = proceduralDial;
+        this.colors = colors;
+        this.dimensions = dimensions;
+        this.pool = pool;
+
+        background = pool.intern(Style.fill(colors[COLOR_BACKGROUND], false));
+        accessoryBackground = pool.intern(Style.fill(colors[COLOR_ACCESSORY_BACKGROUND], true));
+        hand = pool.intern(Style.fill(colors[COLOR_HAND], true));
+        secondHand = pool.intern(Style.fill(colors[COLOR_SECOND_HAND], true));
+        hourTick = pool.intern(Style.stroke(colors[COLOR_TICK],
+                dimensions[DIM_HOUR_TICK_WIDTH], true));
+        minuteTick = pool.intern(Style.stroke(colors[COLOR_TICK],
+                dimensions[DIM_MINUTE_TICK_WIDTH], true));
+        numeral = dimensions[DIM_NUMERAL_SIZE] > 0
+                ? pool.intern(Style.text(colors[COLOR_TICK], dimensions[DIM_NUMERAL_SIZE], true))
+                : null;
+        batteryTrack = pool.intern(Style.fill(colors[COLOR_ACCESSORY], false));
+        batteryLevel = pool.intern(Style.fill(colors[COLOR_HAND], false));
+        dateMark = pool.intern(Style.stroke(colors[COLOR_ACCESSORY],
+                dimensions[DIM_ACCESSORY_STROKE_WIDTH], true));
+        dateToday = pool.intern(Style.stroke(colors[COLOR_HAND_ACCENT],
+                dimensions[DIM_ACCESSORY_STROKE_WIDTH], true));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the theme lacks a key, has one this plan doesn't know,
+     *                                  or a value doesn't parse
+     */
+    public static RenderPlan compile(Theme theme, StylePool pool) {
+        List<String> colorKeys = Arrays.asList(COLOR_KEYS);
+        List<String> dimensionKeys = Arrays.asList(DIMENSION_KEYS);
+        for (String key : theme.keys()) {
+            if (!key.equals(NAME_KEY) && !key.equals(PROCEDURAL_DIAL_KEY)
+                    && !colorKeys.contains(key) && !dimensionKeys.contains(key)) {
+                throw new IllegalArgumentException("unknown theme key " + key);
+            }
+        }
+
+        int[] colors = new int[COLOR_COUNT];
+        for (int i = 0; i < COLOR_COUNT; i++) {
+            colors[i] = theme.getColor(COLOR_KEYS[i]);
+        }
+        float[] dimensions = new float[DIM_COUNT];
+        for (int i = 0; i < DIM_COUNT; i++) {
+            dimensions[i] = theme.getFloat(DIMENSION_KEYS[i]);
+            if (dimensions[i] < 0) {
+                throw new IllegalArgumentException(DIMENSION_KEYS[i] + " is negative");
+            }
+        }
+        String name = theme.has(NAME_KEY) ? theme.getString(NAME_KEY) : "unnamed";
+        boolean proceduralDial = theme.has(PROCEDURAL_DIAL_KEY)
+                && theme.getBoolean(PROCEDURAL_DIAL_KEY);
+        return new RenderPlan(name, proceduralDial, colors, dimensions, pool);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Whether frames draw the dial from {@link #newDial} over the background color; otherwise it
+     * is part of the interactive background image.
+     */
+    public boolean isProceduralDial() {
+        return proceduralDial;
+    }
+
+    public int color(int id) {
+        return colors[id];
+    }
+
+    public float dimension(int id) {
+        return dimensions[id];
+    }
+
+    /**
+     * A frame renderer with this plan's hands, accessory discs and background color. The dial
+     * isn't set, see {@link #isProceduralDial}.
+     */
+    public FrameRenderer newFrameRenderer() {
+        ClockHand hourHand = new ClockHand(hand, dimensions[DIM_HOUR_HAND_WIDTH], 0f, pool);
+        ClockHand minuteHand = new ClockHand(hand, dimensions[DIM_MINUTE_HAND_WIDTH], 0f, pool);
+        ClockHand secondHand = new ClockHand(this.secondHand, dimensions[DIM_SECOND_HAND_WIDTH],
+                dimensions[DIM_HAND_OFFSET_LENGTH] * 2f, pool);
+        AccessoryLayout layout = new AccessoryLayout(dimensions[DIM_HOUR_TICK_HEIGHT],
+                dimensions[DIM_BASE_MOUNT_WIDTH], dimensions[DIM_ACCESSORY_CIRCLE_SIZE]);
+        return new FrameRenderer(hourHand, minuteHand, secondHand,
+                dimensions[DIM_HOUR_TICK_HEIGHT], dimensions[DIM_HAND_OFFSET_LENGTH],
+                dimensions[DIM_HOUR_HAND_LENGTH_PERCENT], layout, background,
+                accessoryBackground);
+    }
+
+    /**
+     * The procedural dial. Hour ticks reach in as far as the minute hand length leaves room for.
+     */
+    public DialGenerator newDial() {
+        float margin = dimensions[DIM_TICK_MARGIN];
+        return new DialGenerator(margin, dimensions[DIM_HOUR_TICK_HEIGHT] - margin,
+                dimensions[DIM_MINUTE_TICK_HEIGHT], dimensions[DIM_NUMERAL_INSET], hourTick,
+                minuteTick, numeral);
+    }
+
+    public AccessoryPainter newAccessoryPainter() {
+        return new AccessoryPainter(batteryTrack, batteryLevel, dateMark, dateToday);
+    }
+
+    /**
+     * @param geometry the hand tables of the frame renderer built from this plan
+     */
+    public AmbientRenderer newAmbientRenderer(HandGeometry geometry) {
+        return new AmbientRenderer(geometry, colors[COLOR_AMBIENT_HAND],
+                dimensions[DIM_AMBIENT_HOUR_HAND_WIDTH], dimensions[DIM_AMBIENT_MINUTE_HAND_WIDTH],
+                dimensions[DIM_HOUR_HAND_LENGTH_PERCENT], pool);
+    }
+}
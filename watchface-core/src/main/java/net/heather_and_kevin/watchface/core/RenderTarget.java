@@ -0,0 +1,59 @@
+package net.heather_and_kevin.watchface.core;
+
+/**
+ * The drawing primitives the face uses. The watch draws through a Canvas backend; tests draw
+ * through {@link RecordingRenderTarget} to count operations, or a raster backend to compare
+ * pixels against golden images.
+ */
+public interface RenderTarget {
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * Fills the whole target (within the clip), replacing what was there.
+     */
+    void drawColor(int color);
+
+    void drawRect(float left, float top, float right, float bottom, Style style);
+
+    void drawCircle(float centerX, float centerY, float radius, Style style);
+
+    void drawLine(float startX, float startY, float stopX, float stopY, Style style);
+
+    /**
+     * Draws a batch of line segments in one call. Like Canvas, {@code count} is the number of
+     * floats to use from {@code offset}, four (startX, startY, stopX, stopY) per segment.
+     */
+    void drawLines(float[] points, int offset, int count, Style style);
+
+    /**
+     * Draws a single line of text centered on the given point, at the style's text size.
+     */
+    void drawText(String text, float centerX, float centerY, Style style);
+
+    /**
+     * Draws a layer created by this backend unscaled with its top left corner at the given point.
+     */
+    void drawLayer(Layer layer, float left, float top);
+
+    /**
+     * Saves the clip; returns the save count to pass to {@link #restoreToCount}.
+     */
+    int save();
+
+    void restoreToCount(int saveCount);
+
+    void clipRect(float left, float top, float right, float bottom);
+
+    /**
+     * Creates a transparent off-screen layer compatible with this target.
+     */
+    Layer createLayer(int width, int height);
+
+    /**
+     * Returns a target that draws into {@code layer}, for rebuilding cached content. This may
+     * allocate and is not meant for the per-frame path.
+     */
+    RenderTarget openLayer(Layer layer);
+}
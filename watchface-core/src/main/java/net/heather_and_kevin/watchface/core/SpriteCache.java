@@ -0,0 +1,142 @@
+package net.heather_and_kevin.watchface.core;
+
+/**
+ * Sprites indexed by hand position, bounded by a byte budget. Once the budget is exceeded the
+ * least recently drawn sprites are evicted. The LRU order lives in int arrays so lookups on the
+ * frame path don't allocate.
+ *
+ * The most recently added sprite is never evicted, so a single sprite larger than the budget is
+ * still usable for the frame that created it.
+ */
+public class SpriteCache<T> {
+    public interface Recycler<T> {
+        void recycle(T sprite);
+    }
+
+    private static final int NONE = -1;
+
+    private final Object[] sprites;
+    private final int[] sizes;
+    private final int[] newer;
+    private final int[] older;
+    private final Recycler<T> recycler;
+    private int newest = NONE;
+    private int oldest = NONE;
+    private int budgetBytes;
+    private int usedBytes;
+
+    private int hits;
+    private int misses;
+    private int evictions;
+
+    public SpriteCache(int positions, int budgetBytes, Recycler<T> recycler) {
+        this.sprites = new Object[positions];
+        this.sizes = new int[positions];
+        this.newer = new int[positions];
+        this.older = new int[positions];
+        this.budgetBytes = budgetBytes;
+        this.recycler = recycler;
+    }
+
+    public int positions() {
+        return sprites.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int position) {
+        Object sprite = sprites[position];
+        if (sprite == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        unlink(position);
+        linkNewest(position);
+        return (T) sprite;
+    }
+
+    public void put(int position, T sprite, int bytes) {
+        remove(position);
+        sprites[position] = sprite;
+        sizes[position] = bytes;
+        usedBytes += bytes;
+        linkNewest(position);
+        trim();
+    }
+
+    public void remove(int position) {
+        if (sprites[position] == null) {
+            return;
+        }
+        unlink(position);
+        usedBytes -= sizes[position];
+        @SuppressWarnings("unchecked")
+        T sprite = (T) sprites[position];
+        sprites[position] = null;
+        sizes[position] = 0;
+        if (recycler != null) {
+            recycler.recycle(sprite);
+        }
+    }
+
+    public void clear() {
+        while (oldest != NONE) {
+            remove(oldest);
+        }
+    }
+
+    public void setBudgetBytes(int budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        trim();
+    }
+
+    public int getUsedBytes() {
+        return usedBytes;
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    public int getEvictions() {
+        return evictions;
+    }
+
+    private void trim() {
+        while (usedBytes > budgetBytes && oldest != newest) {
+            remove(oldest);
+            evictions++;
+        }
+    }
+
+    private void linkNewest(int position) {
+        older[position] = newest;
+        newer[position] = NONE;
+        if (newest != NONE) {
+            newer[newest] = position;
+        }
+        newest = position;
+        if (oldest == NONE) {
+            oldest = position;
+        }
+    }
+
+    private void unlink(int position) {
+        int before = older[position];
+        int after = newer[position];
+        if (before != NONE) {
+            newer[before] = after;
+        } else {
+            oldest = after;
+        }
+        if (after != NONE) {
+            older[after] = before;
+        } else {
+            newest = before;
+        }
+    }
+}
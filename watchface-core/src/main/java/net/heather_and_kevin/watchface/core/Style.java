@@ -0,0 +1,75 @@
+package net.heather_and_kevin.watchface.core;
+
+/**
+ * How a primitive is painted: color, fill or stroke, stroke width, text size and anti-aliasing.
+ * Styles are immutable, so backends can build their native paint once per style and look it up
+ * by identity; {@link StylePool} makes equal styles identical. Strokes always use butt caps.
+ */
+public final class Style {
+    public final int color;
+    public final boolean stroke;
+    public final float strokeWidth;
+    public final boolean antiAlias;
+
+    /**
+     * Text height in pixels for {@link RenderTarget#drawText}; 0 for styles that aren't for text.
+     */
+    public final float textSize;
+
+    private Style(int color, boolean stroke, float strokeWidth, boolean antiAlias,
+                  float textSize) {
+        this.color = color;
+        this.stroke = stroke;
+        this.strokeWidth = strokeWidth;
+        this.antiAlias = antiAlias;
+        this.textSize = textSize;
+    }
+
+    public static Style fill(int color, boolean antiAlias) {
+        return new Style(color, false, 0f, antiAlias, 0f);
+    }
+
+    public static Style stroke(int color, float strokeWidth, boolean antiAlias) {
+        return new Style(color, true, strokeWidth, antiAlias, 0f);
+    }
+
+    public static Style text(int color, float textSize, boolean antiAlias) {
+        return new Style(color, false, 0f, antiAlias, textSize);
+    }
+
+    public Style withStrokeWidth(float strokeWidth) {
+        return new Style(color, true, strokeWidth, antiAlias, textSize);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Style)) {
+            return false;
+        }
+        Style other = (Style) o;
+        return color == other.color && stroke == other.stroke
+                && Float.compare(strokeWidth, other.strokeWidth) == 0
+                && antiAlias == other.antiAlias
+                && Float.compare(textSize, other.textSize) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = color;
+        result = 31 * result + (stroke ? 1 : 0);
+        result = 31 * result + Float.floatToIntBits(strokeWidth);
+        result = 31 * result + (antiAlias ? 1 : 0);
+        result = 31 * result + Float.floatToIntBits(textSize);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        String kind = textSize > 0 ? "text(" + textSize + ", "
+                : stroke ? "stroke(" + strokeWidth + ", " : "fill(";
+        return kind + String.format("#%08X", color) + (antiAlias ? ", aa)" : ")");
+    }
+}
@@ -0,0 +1,28 @@
+package net.heather_and_kevin.watchface.core;
+
+import java.util.HashMap;
+
+/**
+ * Hands out one shared instance per distinct {@link Style}. Backends cache their native paint by
+ * style identity, so styles that went through the same pool share a paint, across render plans
+ * too: switching back to a theme finds its paints already built.
+ */
+public class StylePool {
+    private final HashMap<Style, Style> styles = new HashMap<>();
+
+    /**
+     * @return the pooled instance equal to {@code style}, which becomes it if there is none yet
+     */
+    public Style intern(Style style) {
+        Style pooled = styles.get(style);
+        if (pooled == null) {
+            styles.put(style, style);
+            pooled = style;
+        }
+        return pooled;
+    }
+
+    public int size() {
+        return styles.size();
+    }
+}
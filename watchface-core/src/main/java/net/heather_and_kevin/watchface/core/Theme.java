@@ -0,0 +1,236 @@
+package net.heather_and_kevin.watchface.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A declarative description of how the face looks: colors and dimensions by name, as a flat JSON
+ * object such as {@code {"background": "#333333", "hourHandWidth": 10}}. Colors are
+ * {@code #RRGGBB} or {@code #AARRGGBB} strings, dimensions numbers in pixels.
+ *
+ * A theme is only read when it is loaded; {@link RenderPlan#compile} resolves it once into what
+ * frames draw with.
+ */
+public final class Theme {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Map<String, String> values;
+
+    private Theme(Map<String, String> values) {
+        this.values = Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code json} isn't a flat object of strings, numbers
+     *                                  and booleans
+     */
+    public static Theme parse(String json) {
+        return new Theme(new Parser(json).parseObject());
+    }
+
+    /**
+     * Reads and parses UTF-8 JSON; the stream is closed.
+     */
+    public static Theme read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, n);
+            }
+            return parse(new String(bytes.toByteArray(), UTF_8));
+        } finally {
+            in.close();
+        }
+    }
+
+    public Set<String> keys() {
+        return values.keySet();
+    }
+
+    public boolean has(String key) {
+        return values.containsKey(key);
+    }
+
+    public String getString(String key) {
+        String value = values.get(key);
+        if (value == null) {
+            throw new IllegalArgumentException("theme has no " + key);
+        }
+        return value;
+    }
+
+    public int getColor(String key) {
+        String value = getString(key);
+        if (!value.startsWith("#") || (value.length() != 7 && value.length() != 9)) {
+            throw new IllegalArgumentException(key + " is not a color: " + value);
+        }
+        try {
+            long color = Long.parseLong(value.substring(1), 16);
+            if (value.length() == 7) {
+                color |= 0xFF000000L;
+            }
+            return (int) color;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " is not a color: " + value);
+        }
+    }
+
+    public boolean getBoolean(String key) {
+        String value = getString(key);
+        if (!value.equals("true") && !value.equals("false")) {
+            throw new IllegalArgumentException(key + " is not a boolean: " + value);
+        }
+        return value.equals("true");
+    }
+
+    public float getFloat(String key) {
+        String value = getString(key);
+        try {
+            return Float.parseFloat(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " is not a number: " + value);
+        }
+    }
+
+    /**
+     * Just enough JSON for a theme: one object whose values are strings, numbers or booleans,
+     * all kept as their text.
+     */
+    private static class Parser {
+        private final String json;
+        private int position;
+
+        Parser(String json) {
+            this.json = json;
+        }
+
+        Map<String, String> parseObject() {
+            Map<String, String> values = new LinkedHashMap<>();
+            expect('{');
+            if (peek() == '}') {
+                position++;
+            } else {
+                do {
+                    String key = parseString();
+                    expect(':');
+                    if (values.put(key, parseValue()) != null) {
+                        throw error("duplicate key " + key);
+                    }
+                } while (next() == ',');
+                position--;
+                expect('}');
+            }
+            if (peek() != 0) {
+                throw error("trailing characters");
+            }
+            return values;
+        }
+
+        private String parseValue() {
+            char c = peek();
+            if (c == '"') {
+                return parseString();
+            }
+            if (c == '{' || c == '[') {
+                throw error("nested values aren't supported");
+            }
+            int start = position;
+            while (position < json.length() && ",}] \t\r\n".indexOf(json.charAt(position)) < 0) {
+                position++;
+            }
+            String literal = json.substring(start, position);
+            if (!literal.equals("true") && !literal.equals("false")) {
+                try {
+                    Double.parseDouble(literal);
+                } catch (NumberFormatException e) {
+                    throw error("bad value " + literal);
+                }
+            }
+            return literal;
+        }
+
+        private String parseString() {
+            expect('"');
+            StringBuilder builder = new StringBuilder();
+            while (true) {
+                if (position >= json.length()) {
+                    throw error("unterminated string");
+                }
+                char c = json.charAt(position++);
+                if (c == '"') {
+                    return builder.toString();
+                }
+                if (c != '\\') {
+                    builder.append(c);
+                    continue;
+                }
+                if (position >= json.length()) {
+                    throw error("unterminated string");
+                }
+                char escaped = json.charAt(position++);
+                switch (escaped) {
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > json.length()) {
+                            throw error("bad escape");
+                        }
+                        try {
+                            builder.append((char) Integer.parseInt(
+                                    json.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("bad escape");
+                        }
+                        position += 4;
+                        break;
+                    case '"':
+                    case '\\':
+                    case '/':
+                        builder.append(escaped);
+                        break;
+                    default:
+                        throw error("bad escape \\" + escaped);
+                }
+            }
+        }
+
+        private void expect(char expected) {
+            if (next() != expected) {
+                position--;
+                throw error("expected '" + expected + "'");
+            }
+        }
+
+        /**
+         * The next non-whitespace character, or 0 at the end; consumes it.
+         */
+        private char next() {
+            char c = peek();
+            position++;
+            return c;
+        }
+
+        private char peek() {
+            while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+                position++;
+            }
+            return position < json.length() ? json.charAt(position) : 0;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at " + position);
+        }
+    }
+}
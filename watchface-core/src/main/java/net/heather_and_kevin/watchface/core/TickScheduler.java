@@ -0,0 +1,164 @@
+package net.heather_and_kevin.watchface.core;
+
+/**
+ * Schedules face updates on the boundaries of the wall clock while keeping the wakeups themselves
+ * on the monotonic clock, so a wall clock jump (NTP, time zone change) can neither stall nor
+ * double the cadence: every wakeup simply re-aligns to the next boundary of whatever the wall
+ * clock now says.
+ *
+ * Frame requests are coalesced per period, so an {@code onTimeTick} and a scheduled wakeup
+ * landing in the same second result in a single invalidate.
+ */
+public class TickScheduler {
+    public interface Clock {
+        /**
+         * Monotonic time in the same base the {@link Host} schedules wakeups in.
+         */
+        long uptimeMillis();
+
+        long currentTimeMillis();
+    }
+
+    public interface Host {
+        void scheduleWakeup(long uptimeMillis);
+
+        void cancelWakeup();
+
+        void invalidate();
+    }
+
+    private final Clock clock;
+    private final Host host;
+    private long periodMs;
+    private boolean running;
+
+    private long scheduledUptime = -1;
+    private long lastFramePeriod = Long.MIN_VALUE;
+
+    private long wakeups;
+    private long framesRequested;
+    private long framesCoalesced;
+    private long missedTicks;
+
+    public TickScheduler(Clock clock, Host host, long periodMs) {
+        this.clock = clock;
+        this.host = host;
+        this.periodMs = periodMs;
+    }
+
+    public void setPeriod(long periodMs) {
+        if (this.periodMs == periodMs) {
+            return;
+        }
+        this.periodMs = periodMs;
+        lastFramePeriod = Long.MIN_VALUE;
+        if (running) {
+            scheduleNext();
+        }
+    }
+
+    public long getPeriod() {
+        return periodMs;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Draws a frame now and keeps ticking until {@link #stop()}.
+     */
+    public void start() {
+        running = true;
+        requestFrame();
+        scheduleNext();
+    }
+
+    public void stop() {
+        running = false;
+        scheduledUptime = -1;
+        host.cancelWakeup();
+    }
+
+    /**
+     * Called when a wakeup scheduled through {@link Host#scheduleWakeup} fires.
+     */
+    public void onWakeup() {
+        wakeups++;
+        if (scheduledUptime >= 0) {
+            long late = clock.uptimeMillis() - scheduledUptime;
+            if (late >= periodMs) {
+                missedTicks += late / periodMs;
+            }
+        }
+        scheduledUptime = -1;
+        requestFrame();
+        if (running) {
+            scheduleNext();
+        }
+    }
+
+    /**
+     * Invalidates unless a frame for the current period has already been requested.
+     *
+     * @return whether an invalidate was issued
+     */
+    public boolean requestFrame() {
+        long period = floorDiv(clock.currentTimeMillis(), periodMs);
+        if (period == lastFramePeriod) {
+            framesCoalesced++;
+            return false;
+        }
+        lastFramePeriod = period;
+        framesRequested++;
+        host.invalidate();
+        return true;
+    }
+
+    /**
+     * The wall clock or time zone changed underneath us: redraw right away and re-align.
+     */
+    public void onClockChanged() {
+        lastFramePeriod = Long.MIN_VALUE;
+        requestFrame();
+        if (running) {
+            scheduleNext();
+        }
+    }
+
+    private void scheduleNext() {
+        long wall = clock.currentTimeMillis();
+        long delay = periodMs - floorMod(wall, periodMs);
+        scheduledUptime = clock.uptimeMillis() + delay;
+        host.cancelWakeup();
+        host.scheduleWakeup(scheduledUptime);
+    }
+
+    public long getWakeups() {
+        return wakeups;
+    }
+
+    public long getFramesRequested() {
+        return framesRequested;
+    }
+
+    public long getFramesCoalesced() {
+        return framesCoalesced;
+    }
+
+    public long getMissedTicks() {
+        return missedTicks;
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x < 0) != (y < 0))) {
+            q--;
+        }
+        return q;
+    }
+
+    private static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+}
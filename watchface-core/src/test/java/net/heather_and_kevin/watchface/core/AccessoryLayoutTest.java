@@ -0,0 +1,23 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AccessoryLayoutTest {
+    private static final float DELTA = 0.001f;
+
+    @Test
+    public void discsSitHalfwayToTheTicks() {
+        AccessoryLayout layout = new AccessoryLayout(30f, 8f, 42f);
+        layout.update(320, 320);
+
+        // (160 - 30 + 8) / 2 = 69 from the center, plus one pixel of clearance
+        assertEquals(160f, layout.centerX[AccessoryLayout.TOP], DELTA);
+        assertEquals(160f - 70f, layout.centerY[AccessoryLayout.TOP], DELTA);
+        assertEquals(160f + 70f, layout.centerX[AccessoryLayout.RIGHT], DELTA);
+        assertEquals(160f - 70f, layout.centerX[AccessoryLayout.LEFT], DELTA);
+        assertEquals(160f, layout.centerY[AccessoryLayout.LEFT], DELTA);
+        assertEquals(40f, layout.radius, DELTA);
+    }
+}
@@ -0,0 +1,25 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class AmbientPaletteTest {
+    @Test
+    public void toOneBitThresholdsAtHalfLuminance() {
+        int[] pixels = {0xFFE5E4E2, 0xFF333333, 0xFF808080, 0xFF7F7F7F, 0xFFC35817, 0x40FFFFFF};
+        AmbientPalette.toOneBit(pixels);
+
+        assertArrayEquals(new int[]{
+                AmbientPalette.WHITE, AmbientPalette.BLACK, AmbientPalette.WHITE,
+                AmbientPalette.BLACK, AmbientPalette.BLACK, AmbientPalette.BLACK
+        }, pixels);
+    }
+
+    @Test
+    public void countLitIgnoresBlackAndTransparent() {
+        int[] pixels = {0xFF000000, 0x00FFFFFF, 0xFF010000, 0xFFFFFFFF, 0x80333333};
+        assertEquals(3, AmbientPalette.countLit(pixels));
+    }
+}
@@ -0,0 +1,134 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AmbientRendererTest {
+    private static final int SIZE = 320;
+
+    /**
+     * The hands alone should light well under one percent of the screen.
+     */
+    private static final double HANDS_LIT_PIXEL_BUDGET = 0.01;
+
+    private FrameRenderer renderer;
+    private AmbientRenderer ambient;
+
+    @Before
+    public void setUp() {
+        renderer = TestFaces.newRenderer();
+        renderer.setSurface(SIZE, SIZE, true, 30f);
+        ambient = TestFaces.newAmbientRenderer(renderer, SIZE, SIZE);
+    }
+
+    @Test
+    public void drawsOnlyTheDialAndTwoHands() {
+        RecordingRenderTarget target = new RecordingRenderTarget(SIZE, SIZE);
+        ambient.setDial(target.createLayer(SIZE, SIZE), 1000);
+        target.beginFrame();
+        ambient.draw(target, 10, 8);
+
+        assertEquals(target.toString(), 3, target.getDrawCalls());
+        assertEquals(1, target.getDrawCalls(RecordingRenderTarget.OP_LAYER));
+        assertEquals(2, target.getDrawCalls(RecordingRenderTarget.OP_LINE));
+        assertEquals(0, target.getOffscreenDrawCalls());
+    }
+
+    @Test
+    public void clearsToBlackWithoutADial() {
+        RecordingRenderTarget target = new RecordingRenderTarget(SIZE, SIZE);
+        target.beginFrame();
+        ambient.draw(target, 10, 8);
+
+        assertEquals(1, target.getDrawCalls(RecordingRenderTarget.OP_COLOR));
+        assertEquals(2, target.getDrawCalls(RecordingRenderTarget.OP_LINE));
+    }
+
+    @Test
+    public void burnInProtectionShiftsEveryMinuteWithinBounds() {
+        RecordingRenderTarget target = new RecordingRenderTarget(SIZE, SIZE);
+        ambient.setDial(target.createLayer(SIZE, SIZE), 1000);
+        ambient.setDisplay(false, true);
+
+        Set<Integer> offsets = new HashSet<>();
+        int previous = Integer.MIN_VALUE;
+        for (int minute = 0; minute < 25; minute++) {
+            target.beginFrame();
+            ambient.draw(target, 10, minute);
+            int dx = ambient.getOffsetX();
+            int dy = ambient.getOffsetY();
+            assertTrue(Math.abs(dx) <= AmbientRenderer.BURN_IN_SHIFT);
+            assertTrue(Math.abs(dy) <= AmbientRenderer.BURN_IN_SHIFT);
+
+            int offset = dx * 100 + dy;
+            assertTrue("offset repeated on consecutive minutes", offset != previous);
+            previous = offset;
+            offsets.add(offset);
+
+            // the edge uncovered by the shift is cleared
+            assertEquals(dx != 0 || dy != 0 ? 1 : 0,
+                    target.getDrawCalls(RecordingRenderTarget.OP_COLOR));
+        }
+        assertEquals(25, offsets.size());
+    }
+
+    @Test
+    public void lowBitFramesAreNotAntiAliased() {
+        ambient.setDisplay(true, false);
+        int[] pixels = render();
+        for (int pixel : pixels) {
+            assertTrue(Integer.toHexString(pixel),
+                    pixel == AmbientPalette.BLACK || pixel == TestFaces.AMBIENT_HAND);
+        }
+
+        ambient.setDisplay(false, false);
+        pixels = render();
+        boolean blended = false;
+        for (int pixel : pixels) {
+            blended |= pixel != AmbientPalette.BLACK && pixel != TestFaces.AMBIENT_HAND;
+        }
+        assertTrue("expected anti-aliased edges", blended);
+    }
+
+    @Test
+    public void litPixelRatioMatchesRenderedPixels() {
+        ambient.setDisplay(true, false);
+        int[] pixels = render();
+        double rendered = AmbientPalette.countLit(pixels) / (double) pixels.length;
+
+        assertTrue("estimated " + ambient.getLitPixelRatio() + ", rendered " + rendered,
+                Math.abs(ambient.getLitPixelRatio() - rendered) <= 0.15 * rendered);
+        assertTrue(rendered < HANDS_LIT_PIXEL_BUDGET);
+    }
+
+    @Test
+    public void litPixelRatioIncludesTheDial() {
+        RecordingRenderTarget target = new RecordingRenderTarget(SIZE, SIZE);
+        ambient.draw(target, 10, 8);
+        double handsOnly = ambient.getLitPixelRatio();
+
+        ambient.setDial(target.createLayer(SIZE, SIZE), SIZE * SIZE / 10);
+        ambient.draw(target, 10, 8);
+        assertEquals(handsOnly + 0.1, ambient.getLitPixelRatio(), 1e-9);
+
+        ambient.setDial(null, SIZE * SIZE / 10);
+        ambient.draw(target, 10, 8);
+        assertEquals(handsOnly, ambient.getLitPixelRatio(), 1e-9);
+        assertFalse(ambient.isLowBit());
+    }
+
+    private int[] render() {
+        RasterRenderTarget target = new RasterRenderTarget(SIZE, SIZE);
+        ambient.draw(target, 10, 8);
+        BufferedImage image = target.getImage();
+        return image.getRGB(0, 0, SIZE, SIZE, null, 0, SIZE);
+    }
+}
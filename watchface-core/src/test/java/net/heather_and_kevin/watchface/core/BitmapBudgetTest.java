@@ -0,0 +1,146 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class BitmapBudgetTest {
+    private static final int SIZE = 100;
+    private static final long ARGB_BYTES = SIZE * SIZE * 4;
+    private static final long RGB_565_BYTES = SIZE * SIZE * 2;
+
+    private final FakeAllocator allocator = new FakeAllocator();
+    private final BitmapBudget<int[]> budget = new BitmapBudget<>(allocator, 2 * ARGB_BYTES);
+
+    @Test
+    public void bytesAreAccountedPerKind() {
+        budget.allocate(BitmapBudget.STATIC_LAYER, SIZE, SIZE);
+        budget.allocate(BitmapBudget.AMBIENT_DIAL, SIZE, SIZE);
+
+        assertEquals(ARGB_BYTES, budget.getBytes(BitmapBudget.STATIC_LAYER));
+        assertEquals(RGB_565_BYTES, budget.getBytes(BitmapBudget.AMBIENT_DIAL));
+        assertEquals(0, budget.getBytes(BitmapBudget.BACKGROUND));
+        assertEquals(ARGB_BYTES + RGB_565_BYTES, budget.getCurrentBytes());
+    }
+
+    @Test
+    public void theAmbientDialIsSixteenBit() {
+        int[] dial = budget.allocate(BitmapBudget.AMBIENT_DIAL, SIZE, SIZE);
+        int[] layer = budget.allocate(BitmapBudget.FRAME_LAYER, SIZE, SIZE);
+
+        assertEquals(2, dial[0]);
+        assertEquals(4, layer[0]);
+    }
+
+    @Test
+    public void releasedBitmapsAreReusedAtTheSameSizeAndFormat() {
+        int[] layer = budget.allocate(BitmapBudget.STATIC_LAYER, SIZE, SIZE);
+        layer[1] = 0xFF;
+        budget.release(layer);
+
+        assertNotSame(layer, budget.allocate(BitmapBudget.AMBIENT_DIAL, SIZE, SIZE));
+        assertNotSame(layer, budget.allocate(BitmapBudget.FRAME_LAYER, SIZE, SIZE + 1));
+        int[] reused = budget.allocate(BitmapBudget.FRAME_LAYER, SIZE, SIZE);
+        assertSame(layer, reused);
+        assertEquals("reset before reuse", 0, reused[1]);
+        assertEquals(1, budget.getReuses());
+        assertEquals(3, budget.getAllocations());
+        assertEquals(2 * ARGB_BYTES + SIZE * 4, budget.getBytes(BitmapBudget.FRAME_LAYER));
+        assertEquals(0, budget.getBytes(BitmapBudget.STATIC_LAYER));
+    }
+
+    @Test
+    public void thePoolIsCappedAndTrimmed() {
+        int[] a = budget.allocate(BitmapBudget.STATIC_LAYER, SIZE, SIZE);
+        int[] b = budget.allocate(BitmapBudget.STATIC_LAYER, SIZE, SIZE);
+        int[] c = budget.allocate(BitmapBudget.STATIC_LAYER, SIZE, SIZE);
+        budget.release(a);
+        budget.release(b);
+        budget.release(c);
+
+        assertEquals(2 * ARGB_BYTES, budget.getPooledBytes());
+        assertEquals(2 * ARGB_BYTES, budget.getCurrentBytes());
+        assertEquals(1, allocator.freed.size());
+        assertSame(c, allocator.freed.get(0));
+
+        assertEquals(2 * ARGB_BYTES, budget.trimPool());
+        assertEquals(0, budget.getCurrentBytes());
+        assertEquals(3 * ARGB_BYTES, budget.getPeakBytes());
+        assertEquals(1, budget.getTrims());
+        assertEquals(2 * ARGB_BYTES, budget.getTrimmedBytes());
+        assertEquals(3, allocator.freed.size());
+    }
+
+    @Test
+    public void trackedBitmapsCountTowardsThePeakAndAreNeverPooled() {
+        int[] decoded = new int[1];
+        budget.track(BitmapBudget.DECODE, decoded, 2 * SIZE, 2 * SIZE, 4);
+        budget.allocate(BitmapBudget.BACKGROUND, SIZE, SIZE);
+        budget.release(decoded);
+
+        assertEquals(5 * ARGB_BYTES, budget.getPeakBytes());
+        assertEquals(ARGB_BYTES, budget.getCurrentBytes());
+        assertEquals(0, budget.getPooledBytes());
+        assertSame(decoded, allocator.freed.get(0));
+    }
+
+    @Test
+    public void runningOutOfMemoryFreesThePoolAndRetries() {
+        budget.release(budget.allocate(BitmapBudget.STATIC_LAYER, SIZE, SIZE));
+        allocator.failures = 1;
+
+        budget.allocate(BitmapBudget.STATIC_LAYER, 2 * SIZE, SIZE);
+        assertEquals(0, budget.getPooledBytes());
+        assertEquals(2 * ARGB_BYTES, budget.getCurrentBytes());
+    }
+
+    @Test
+    public void closedBudgetsFreeOnRelease() {
+        int[] layer = budget.allocate(BitmapBudget.STATIC_LAYER, SIZE, SIZE);
+        budget.close();
+        budget.release(layer);
+
+        assertEquals(0, budget.getPooledBytes());
+        assertEquals(0, budget.getCurrentBytes());
+        assertSame(layer, allocator.freed.get(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void releasingTwiceFails() {
+        int[] layer = budget.allocate(BitmapBudget.STATIC_LAYER, SIZE, SIZE);
+        budget.release(layer);
+        budget.release(layer);
+    }
+
+    /**
+     * Bitmaps are arrays holding their bytes per pixel and a pixel that reset clears.
+     */
+    private static class FakeAllocator implements BitmapBudget.Allocator<int[]> {
+        final List<int[]> freed = new ArrayList<>();
+        int failures;
+
+        @Override
+        public int[] allocate(int width, int height, int bytesPerPixel) {
+            if (failures > 0) {
+                failures--;
+                throw new OutOfMemoryError();
+            }
+            return new int[]{bytesPerPixel, 0};
+        }
+
+        @Override
+        public void reset(int[] bitmap) {
+            bitmap[1] = 0;
+        }
+
+        @Override
+        public void free(int[] bitmap) {
+            freed.add(bitmap);
+        }
+    }
+}
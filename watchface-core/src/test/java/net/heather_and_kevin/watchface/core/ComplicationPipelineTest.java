@@ -0,0 +1,100 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ComplicationPipelineTest {
+    private int frameRequests;
+    private final ComplicationPipeline pipeline = new ComplicationPipeline(
+            new ComplicationPipeline.Host() {
+                @Override
+                public void requestFrame() {
+                    frameRequests++;
+                }
+            });
+
+    @Test
+    public void sourcesHaveNoValueUntilTheyPublish() {
+        assertEquals(ComplicationPipeline.NO_VALUE, pipeline.getValue(ComplicationPipeline.BATTERY));
+        assertEquals(0, pipeline.takeDirty());
+    }
+
+    @Test
+    public void valuesAreQuantizedToTheirPrecision() {
+        assertTrue(pipeline.publish(ComplicationPipeline.BATTERY, 57.3f));
+        assertFalse(pipeline.publish(ComplicationPipeline.BATTERY, 56.6f));
+        assertFalse(pipeline.publish(ComplicationPipeline.BATTERY, 57.49f));
+        assertEquals(57, pipeline.getValue(ComplicationPipeline.BATTERY));
+        assertTrue(pipeline.publish(ComplicationPipeline.BATTERY, 57.5f));
+        assertEquals(58, pipeline.getValue(ComplicationPipeline.BATTERY));
+
+        pipeline.setPrecision(ComplicationPipeline.BATTERY, 5f);
+        assertTrue(pipeline.publish(ComplicationPipeline.BATTERY, 61f));
+        assertEquals(12, pipeline.getValue(ComplicationPipeline.BATTERY));
+        assertFalse(pipeline.publish(ComplicationPipeline.BATTERY, 58f));
+    }
+
+    @Test
+    public void changesAreBatchedIntoOneFrame() {
+        pipeline.publish(ComplicationPipeline.BATTERY, 40f);
+        pipeline.publish(ComplicationPipeline.BATTERY, 41f);
+        pipeline.publish(ComplicationPipeline.DAY_OF_MONTH, 3);
+        assertEquals(1, frameRequests);
+
+        int dirty = pipeline.takeDirty();
+        assertEquals(1 << ComplicationPipeline.BATTERY | 1 << ComplicationPipeline.DAY_OF_MONTH,
+                dirty);
+        assertEquals(0, pipeline.takeDirty());
+
+        pipeline.publish(ComplicationPipeline.DAY_OF_MONTH, 4);
+        assertEquals(2, frameRequests);
+        assertEquals(1 << ComplicationPipeline.DAY_OF_MONTH, pipeline.takeDirty());
+    }
+
+    @Test
+    public void unchangedValuesDontRequestFrames() {
+        pipeline.publish(ComplicationPipeline.DAY_OF_MONTH, 3);
+        pipeline.takeDirty();
+        for (int i = 0; i < 1000; i++) {
+            pipeline.publish(ComplicationPipeline.DAY_OF_MONTH, 3);
+        }
+        assertEquals(1, frameRequests);
+        assertEquals(0, pipeline.takeDirty());
+        assertEquals(1001, pipeline.getPublished());
+        assertEquals(1, pipeline.getChanges());
+        assertEquals(1, pipeline.getFrames());
+    }
+
+    @Test
+    public void snapshotsDontFollowLaterChanges() {
+        pipeline.publish(ComplicationPipeline.BATTERY, 90f);
+        int[] snapshot = pipeline.snapshot();
+        pipeline.publish(ComplicationPipeline.BATTERY, 10f);
+        assertEquals(90, snapshot[ComplicationPipeline.BATTERY]);
+    }
+
+    @Test
+    public void disabledSourcesReadAsNoValue() {
+        pipeline.publish(ComplicationPipeline.BATTERY, 40f);
+        pipeline.publish(ComplicationPipeline.DAY_OF_MONTH, 3);
+        pipeline.takeDirty();
+
+        pipeline.setEnabled(1 << ComplicationPipeline.DAY_OF_MONTH);
+        assertEquals(2, frameRequests);
+        assertEquals(1 << ComplicationPipeline.BATTERY, pipeline.takeDirty());
+        assertEquals(ComplicationPipeline.NO_VALUE, pipeline.getValue(ComplicationPipeline.BATTERY));
+        assertEquals(ComplicationPipeline.NO_VALUE,
+                pipeline.snapshot()[ComplicationPipeline.BATTERY]);
+        assertEquals(3, pipeline.snapshot()[ComplicationPipeline.DAY_OF_MONTH]);
+
+        // a disabled source keeps its value but doesn't dirty the layer
+        pipeline.publish(ComplicationPipeline.BATTERY, 20f);
+        assertEquals(0, pipeline.takeDirty());
+        pipeline.setEnabled(ComplicationPipeline.ALL);
+        assertEquals(1 << ComplicationPipeline.BATTERY, pipeline.takeDirty());
+        assertEquals(20, pipeline.getValue(ComplicationPipeline.BATTERY));
+    }
+}
@@ -0,0 +1,234 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConfigSyncTest {
+    /**
+     * Format, type, two versions, the key bits and a small number.
+     */
+    private static final int NUMBER_EDIT_BYTES = 6;
+
+    private final LoopbackTransport[] ends = LoopbackTransport.pair();
+    private final LoopbackTransport phone = ends[0];
+    private final LoopbackTransport watch = ends[1];
+    private int flushRequests;
+    private final ConfigSender sender = new ConfigSender(phone, new ConfigSender.Host() {
+        @Override
+        public void scheduleFlush(long delayMs) {
+            flushRequests++;
+        }
+    }, 250, FaceConfig.DEFAULT, 0);
+    private final List<Integer> changes = new ArrayList<>();
+    private final ConfigReceiver receiver = new ConfigReceiver(watch,
+            new ConfigReceiver.Listener() {
+                @Override
+                public void onConfigChanged(FaceConfig config, int changed) {
+                    changes.add(changed);
+                }
+            }, FaceConfig.DEFAULT);
+
+    @Test
+    public void aBurstOfEditsIsOneMessage() {
+        for (int fps : FrameRateGovernor.RATES) {
+            sender.edit(sender.getConfig().withSweepMaxFps(fps));
+        }
+        assertEquals(1, flushRequests);
+        sync();
+
+        assertEquals(1, sender.getMessages());
+        assertEquals(NUMBER_EDIT_BYTES, sender.getBytesSent());
+        assertEquals(60, receiver.getConfig().sweepMaxFps);
+        assertEquals(1, changes.size());
+    }
+
+    @Test
+    public void onlyChangedKeysAreSentAndApplied() {
+        sender.edit(sender.getConfig().withComplications(1 << ComplicationPipeline.BATTERY));
+        sync();
+        assertEquals(NUMBER_EDIT_BYTES, phone.bytesSent);
+        assertEquals(1 << FaceConfig.COMPLICATIONS, (int) changes.get(0));
+
+        sender.edit(sender.getConfig().withTheme("night").withSweepMaxFps(15));
+        sync();
+        assertEquals(1 << FaceConfig.THEME | 1 << FaceConfig.SWEEP_MAX_FPS, (int) changes.get(1));
+        assertEquals(new FaceConfig("night", 15, 1 << ComplicationPipeline.BATTERY),
+                receiver.getConfig());
+        assertEquals(2, receiver.getVersion());
+    }
+
+    @Test
+    public void editsThatCancelOutSendNothing() {
+        sender.edit(sender.getConfig().withSweepMaxFps(30));
+        sender.edit(sender.getConfig().withSweepMaxFps(1));
+        sync();
+        assertEquals(0, sender.getMessages());
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    public void aLostDeltaIsRepairedWithTheFullConfig() {
+        sender.edit(sender.getConfig().withSweepMaxFps(30));
+        phone.dropNext(1);
+        sync();
+        sender.edit(sender.getConfig().withTheme("night"));
+        sync();
+
+        // the second delta didn't apply; the watch asked for everything
+        assertEquals(1, receiver.getResyncsRequested());
+        assertEquals(1, sender.getResyncs());
+        assertEquals(sender.getConfig(), receiver.getConfig());
+        assertEquals(sender.getVersion(), receiver.getVersion());
+        assertEquals(1 << FaceConfig.THEME | 1 << FaceConfig.SWEEP_MAX_FPS, (int) changes.get(0));
+    }
+
+    @Test
+    public void duplicatesAreIgnored() {
+        sender.edit(sender.getConfig().withSweepMaxFps(30));
+        sender.flush();
+        byte[] message = ConfigMessage.delta(0, 1, 1 << FaceConfig.SWEEP_MAX_FPS,
+                sender.getConfig());
+        phone.deliver();
+        receiver.onMessage(message);
+
+        assertEquals(1, receiver.getApplied());
+        assertEquals(1, receiver.getIgnored());
+        assertEquals(1, changes.size());
+    }
+
+    @Test
+    public void aLateFullConfigDoesNotRollBack() {
+        FaceConfig old = sender.getConfig().withTheme("night");
+        sender.edit(old);
+        sync();
+        sender.edit(sender.getConfig().withSweepMaxFps(30));
+        sync();
+
+        receiver.onMessage(ConfigMessage.full(1, old));
+        assertEquals(sender.getConfig(), receiver.getConfig());
+        assertEquals(2, receiver.getVersion());
+        assertEquals(1, receiver.getIgnored());
+    }
+
+    @Test
+    public void aPhoneThatStartedOverIsResynced() {
+        for (int fps : new int[]{10, 15, 30}) {
+            sender.edit(sender.getConfig().withSweepMaxFps(fps));
+            sync();
+        }
+        assertEquals(3, receiver.getVersion());
+
+        // the phone app's data was cleared: it counts from 0 again
+        ConfigSender cleared = new ConfigSender(phone, new ConfigSender.Host() {
+            @Override
+            public void scheduleFlush(long delayMs) {
+            }
+        }, 250, FaceConfig.DEFAULT, 0);
+        cleared.edit(cleared.getConfig().withTheme("night"));
+        for (int round = 0; round < 4; round++) {
+            cleared.flush();
+            phone.deliver();
+            watch.deliver();
+        }
+
+        assertEquals(1, receiver.getResyncsRequested());
+        assertEquals(cleared.getConfig(), receiver.getConfig());
+        assertEquals(cleared.getVersion(), receiver.getVersion());
+    }
+
+    @Test
+    public void aRestartedWatchCatchesUpOnConnect() {
+        sender.edit(sender.getConfig().withTheme("night").withSweepMaxFps(10));
+        sync();
+
+        ConfigReceiver restarted = new ConfigReceiver(watch, new ConfigReceiver.Listener() {
+            @Override
+            public void onConfigChanged(FaceConfig config, int changed) {
+                changes.add(changed);
+            }
+        }, FaceConfig.DEFAULT);
+        restarted.requestResync();
+        sync();
+
+        assertEquals(sender.getConfig(), restarted.getConfig());
+        assertEquals(sender.getVersion(), restarted.getVersion());
+    }
+
+    @Test
+    public void aRestoredWatchContinuesTheSequence() {
+        sender.edit(sender.getConfig().withTheme("night"));
+        sync();
+
+        ConfigReceiver restored = new ConfigReceiver(watch, new ConfigReceiver.Listener() {
+            @Override
+            public void onConfigChanged(FaceConfig config, int changed) {
+                changes.add(changed);
+            }
+        }, receiver.getConfig(), receiver.getVersion());
+        sender.edit(sender.getConfig().withSweepMaxFps(30));
+        sync();
+
+        assertEquals(0, restored.getResyncsRequested());
+        assertEquals(sender.getConfig(), restored.getConfig());
+        assertEquals(1 << FaceConfig.SWEEP_MAX_FPS, (int) changes.get(1));
+    }
+
+    @Test
+    public void malformedMessagesAreDropped() {
+        receiver.onMessage(new byte[0]);
+        receiver.onMessage(new byte[]{(byte) ConfigMessage.FORMAT, (byte) ConfigMessage.DELTA,
+                1, 0, (byte) (1 << FaceConfig.THEME), 9, 'x'});
+        receiver.onMessage(new byte[]{9, 1, 1, 0, 0});
+
+        assertEquals(3, receiver.getMalformed());
+        assertEquals(FaceConfig.DEFAULT, receiver.getConfig());
+    }
+
+    @Test
+    public void messagesRoundTrip() {
+        FaceConfig config = new FaceConfig("n\u00e9on", 300, 0x7F);
+        ConfigMessage full = ConfigMessage.decode(ConfigMessage.full(1000, config));
+        assertEquals(ConfigMessage.FULL, full.type);
+        assertEquals(1000, full.version);
+        assertEquals(config, full.applyTo(FaceConfig.DEFAULT));
+
+        ConfigMessage delta = ConfigMessage.decode(ConfigMessage.delta(7, 8,
+                1 << FaceConfig.COMPLICATIONS, config));
+        assertEquals(7, delta.baseVersion);
+        assertEquals(FaceConfig.DEFAULT.withComplications(0x7F),
+                delta.applyTo(FaceConfig.DEFAULT));
+    }
+
+    @Test
+    public void bytesPerEditAndApplyLatencyAreMeasured() {
+        int edits = 0;
+        for (int i = 0; i < 100; i++) {
+            sender.edit(sender.getConfig().withSweepMaxFps(
+                    FrameRateGovernor.RATES[(i + 1) % FrameRateGovernor.RATES.length]));
+            edits++;
+            sync();
+        }
+
+        double bytesPerEdit = (double) sender.getBytesSent() / edits;
+        assertTrue("bytes per edit " + bytesPerEdit, bytesPerEdit <= NUMBER_EDIT_BYTES + 1);
+        assertEquals(100, receiver.getApplied());
+        assertTrue(receiver.getMaxApplyNanos() >= receiver.getMeanApplyNanos());
+        assertTrue(receiver.getMeanApplyNanos() >= 0);
+    }
+
+    /**
+     * Runs the pending flush and delivers messages both ways until both ends are quiet.
+     */
+    private void sync() {
+        for (int round = 0; round < 4; round++) {
+            sender.flush();
+            phone.deliver();
+            watch.deliver();
+        }
+    }
+}
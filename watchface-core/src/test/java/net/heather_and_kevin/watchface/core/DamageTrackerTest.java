@@ -0,0 +1,98 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DamageTrackerTest {
+    private final DamageTracker tracker = new DamageTracker();
+
+    @Test
+    public void firstFrameDamagesEverything() {
+        tracker.beginFrame();
+        tracker.include(10, 10, 20, 20);
+        assertTrue(tracker.endFrame(100, 50));
+
+        assertDamage(0, 0, 100, 50);
+    }
+
+    @Test
+    public void damageIsTheUnionOfPreviousAndCurrentBounds() {
+        frame(10, 10, 20, 20);
+
+        tracker.beginFrame();
+        tracker.include(30, 5, 40, 15);
+        assertTrue(tracker.endFrame(100, 100));
+        assertDamage(10, 5, 40, 20);
+
+        tracker.beginFrame();
+        tracker.include(30, 5, 40, 15);
+        assertTrue(tracker.endFrame(100, 100));
+        assertDamage(30, 5, 40, 15);
+    }
+
+    @Test
+    public void damageIsRoundedOutAndClamped() {
+        frame(-5.5f, 0.5f, 10.2f, 20.7f);
+
+        tracker.beginFrame();
+        tracker.include(90.5f, 90.5f, 120f, 99.1f);
+        tracker.endFrame(100, 100);
+        assertDamage(0, 0, 100, 100);
+
+        tracker.beginFrame();
+        tracker.include(90.5f, 90.5f, 95.2f, 99.1f);
+        tracker.endFrame(100, 100);
+        assertDamage(90, 90, 100, 100);
+    }
+
+    @Test
+    public void nothingMovedMeansNoDamage() {
+        frame(10, 10, 20, 20);
+
+        tracker.beginFrame();
+        tracker.endFrame(100, 100);
+        tracker.beginFrame();
+        assertFalse(tracker.endFrame(100, 100));
+        assertDamage(0, 0, 0, 0);
+    }
+
+    @Test
+    public void invalidateAllDamagesTheNextFrameOnly() {
+        frame(10, 10, 20, 20);
+
+        tracker.invalidateAll();
+        frame(10, 10, 20, 20);
+        assertDamage(0, 0, 100, 100);
+
+        frame(10, 10, 20, 20);
+        assertDamage(10, 10, 20, 20);
+    }
+
+    @Test
+    public void averageFractionCoversEveryFrame() {
+        frame(0, 0, 10, 10);
+        frame(0, 0, 10, 10);
+
+        assertEquals(2, tracker.getFrames());
+        assertEquals((1 + 0.01) / 2, tracker.getAverageFraction(), 1e-9);
+
+        tracker.resetStats();
+        assertEquals(0, tracker.getAverageFraction(), 0);
+    }
+
+    private void frame(float left, float top, float right, float bottom) {
+        tracker.beginFrame();
+        tracker.include(left, top, right, bottom);
+        tracker.endFrame(100, 100);
+    }
+
+    private void assertDamage(int left, int top, int right, int bottom) {
+        assertEquals("left", left, tracker.left);
+        assertEquals("top", top, tracker.top);
+        assertEquals("right", right, tracker.right);
+        assertEquals("bottom", bottom, tracker.bottom);
+    }
+}
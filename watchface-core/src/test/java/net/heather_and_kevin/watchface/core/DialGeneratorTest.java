@@ -0,0 +1,102 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DialGeneratorTest {
+    private static final float DELTA = 1e-3f;
+
+    private final DialGenerator dial = TestFaces.newDial(null);
+
+    @Test
+    public void roundTicksEndJustInsideTheEdge() {
+        dial.update(320, 320, true, 0f);
+
+        for (int tick = 0; tick < HandGeometry.POSITIONS; tick++) {
+            assertEquals("tick " + tick, 160f - 4f, outer(tick), DELTA);
+            float length = tick < DialGenerator.HOUR_TICKS ? 26f : 10f;
+            assertEquals("tick " + tick, 160f - 4f - length, inner(tick), DELTA);
+        }
+    }
+
+    @Test
+    public void hourTicksComeFirstFromTwelveClockwise() {
+        dial.update(320, 320, true, 0f);
+
+        // 12 o'clock points straight up, 3 o'clock straight right
+        assertEquals(160f, dial.ticks[2], DELTA);
+        assertEquals(4f, dial.ticks[3], DELTA);
+        assertEquals(316f, dial.ticks[3 * DialGenerator.FLOATS_PER_TICK + 2], DELTA);
+        assertEquals(160f, dial.ticks[3 * DialGenerator.FLOATS_PER_TICK + 3], DELTA);
+    }
+
+    @Test
+    public void squareTicksFollowTheOutline() {
+        dial.update(280, 280, false, 0f);
+
+        for (int tick = 0; tick < HandGeometry.POSITIONS; tick++) {
+            int i = tick * DialGenerator.FLOATS_PER_TICK;
+            float x = dial.ticks[i + 2];
+            float y = dial.ticks[i + 3];
+            // 4px in from the square along the tick, so at most 4px from the nearest side
+            float gap = Math.min(Math.min(x, 280f - x), Math.min(y, 280f - y));
+            assertTrue("tick " + tick + " gap " + gap, gap > 2.8f && gap <= 4f + DELTA);
+        }
+    }
+
+    @Test
+    public void theChinCutsOffTheBottomTicks() {
+        dial.update(320, 320, true, 30f);
+
+        for (int tick = 0; tick < HandGeometry.POSITIONS; tick++) {
+            int i = tick * DialGenerator.FLOATS_PER_TICK;
+            assertTrue("tick " + tick, dial.ticks[i + 3] < 320f - 30f - 2f);
+            assertTrue("tick " + tick, dial.ticks[i + 1] < 320f - 30f - 2f);
+        }
+        // 6 o'clock sits right on the chin
+        assertEquals(320f - 30f - 4f, dial.ticks[6 * DialGenerator.FLOATS_PER_TICK + 3], DELTA);
+    }
+
+    @Test
+    public void unchangedSurfacesAreNotRecomputed() {
+        dial.update(320, 320, true, 30f);
+        dial.update(320, 320, true, 30f);
+        assertEquals(1, dial.getBuilds());
+
+        dial.update(320, 320, true, 0f);
+        dial.update(320, 320, false, 0f);
+        assertEquals(3, dial.getBuilds());
+    }
+
+    @Test
+    public void numeralsAreOneTextDrawEach() {
+        DialGenerator numbered = TestFaces.newDial(Style.text(TestFaces.TICK, 20f, true));
+        numbered.update(320, 320, true, 0f);
+        RecordingRenderTarget target = new RecordingRenderTarget(320, 320);
+        numbered.paint(target);
+
+        assertEquals(2, target.getDrawCalls(RecordingRenderTarget.OP_LINES));
+        assertEquals(DialGenerator.HOUR_TICKS, target.getDrawCalls(RecordingRenderTarget.OP_TEXT));
+        // 12 inside the top hour tick
+        assertEquals(160f, numbered.numeralX[0], DELTA);
+        assertEquals(52f, numbered.numeralY[0], DELTA);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void partialSegmentsAreRejected() {
+        new RecordingRenderTarget(320, 320).drawLines(dial.ticks, 0, 6,
+                Style.stroke(TestFaces.TICK, 2f, true));
+    }
+
+    private float outer(int tick) {
+        int i = tick * DialGenerator.FLOATS_PER_TICK;
+        return (float) Math.hypot(dial.ticks[i + 2] - 160f, dial.ticks[i + 3] - 160f);
+    }
+
+    private float inner(int tick) {
+        int i = tick * DialGenerator.FLOATS_PER_TICK;
+        return (float) Math.hypot(dial.ticks[i] - 160f, dial.ticks[i + 1] - 160f);
+    }
+}
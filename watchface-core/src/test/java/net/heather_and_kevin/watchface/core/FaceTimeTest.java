@@ -0,0 +1,106 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class FaceTimeTest {
+    private static final String[] ZONES = {
+            "UTC", "America/Los_Angeles", "Europe/London", "Asia/Kolkata",
+            "Australia/Lord_Howe", "Pacific/Chatham", "America/St_Johns"
+    };
+
+    @Test
+    public void springForwardSkipsAnHour() {
+        TimeZone zone = TimeZone.getTimeZone("America/Los_Angeles");
+        FaceTime time = new FaceTime(zone);
+
+        // 2016-03-13 01:59:59.999 PST, one millisecond before clocks jump to 03:00 PDT
+        long beforeJump = 1457863199999L;
+        time.set(beforeJump);
+        assertTime(time, 1, 59, 59, 999);
+
+        time.set(beforeJump + 1);
+        assertTime(time, 3, 0, 0, 0);
+    }
+
+    @Test
+    public void fallBackRepeatsAnHour() {
+        TimeZone zone = TimeZone.getTimeZone("America/Los_Angeles");
+        FaceTime time = new FaceTime(zone);
+
+        // 2016-11-06 01:59:59 PDT, one second before clocks fall back to 01:00 PST
+        long beforeJump = 1478422799000L;
+        time.set(beforeJump);
+        assertTime(time, 1, 59, 59, 0);
+
+        time.set(beforeJump + 1000);
+        assertTime(time, 1, 0, 0, 0);
+    }
+
+    @Test
+    public void matchesCalendarEverywhere() {
+        Random random = new Random(42);
+        for (String id : ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            FaceTime time = new FaceTime(zone);
+            Calendar calendar = Calendar.getInstance(zone);
+            long millis = 1420070400000L;
+            for (int i = 0; i < 20000; i++) {
+                // mostly short steps like real frames, sometimes a long jump
+                millis += random.nextInt(10) == 0 ? random.nextInt(1000000000) : random.nextInt(70000);
+                time.set(millis);
+                calendar.setTimeInMillis(millis);
+                assertTime(id + " @" + millis, time, calendar.get(Calendar.HOUR_OF_DAY),
+                        calendar.get(Calendar.MINUTE), calendar.get(Calendar.SECOND),
+                        calendar.get(Calendar.MILLISECOND));
+                assertEquals(id + " @" + millis, calendar.get(Calendar.DAY_OF_MONTH), time.day);
+            }
+        }
+    }
+
+    @Test
+    public void handlesTimesBeforeTheEpoch() {
+        FaceTime time = new FaceTime(TimeZone.getTimeZone("UTC"));
+        time.set(-1);
+        assertTime(time, 23, 59, 59, 999);
+    }
+
+    @Test
+    public void dayOfMonthCoversLeapDays() {
+        FaceTime time = new FaceTime(TimeZone.getTimeZone("UTC"));
+        // 2016-02-29 12:00 UTC
+        time.set(1456747200000L);
+        assertEquals(29, time.day);
+        time.set(1456747200000L + 12 * 3600 * 1000);
+        assertEquals(1, time.day);
+        // 1969-12-31 23:59:59.999 UTC
+        time.set(-1);
+        assertEquals(31, time.day);
+    }
+
+    @Test
+    public void zoneChangeTakesEffectImmediately() {
+        FaceTime time = new FaceTime(TimeZone.getTimeZone("UTC"));
+        time.set(0);
+        time.setZone(TimeZone.getTimeZone("Asia/Kolkata"));
+        time.set(0);
+        assertTime(time, 5, 30, 0, 0);
+    }
+
+    private static void assertTime(FaceTime time, int hour, int minute, int second, int millis) {
+        assertTime("", time, hour, minute, second, millis);
+    }
+
+    private static void assertTime(String message, FaceTime time,
+                                   int hour, int minute, int second, int millis) {
+        assertEquals(message, hour, time.hour);
+        assertEquals(message, minute, time.minute);
+        assertEquals(message, second, time.second);
+        assertEquals(message, millis, time.millis);
+    }
+}
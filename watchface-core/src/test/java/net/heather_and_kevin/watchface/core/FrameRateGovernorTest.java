@@ -0,0 +1,108 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FrameRateGovernorTest {
+    private static final long CHEAP_FRAME_NANOS = 500000L;
+
+    private FrameRateGovernor governor;
+
+    @Before
+    public void setUp() {
+        governor = new FrameRateGovernor();
+        governor.setMaxRate(60);
+    }
+
+    @Test
+    public void batterySetsTheCeiling() {
+        governor.setBattery(0.9f, false);
+        assertEquals(30, governor.getRate());
+
+        governor.setBattery(0.4f, false);
+        assertEquals(15, governor.getRate());
+
+        governor.setBattery(0.2f, false);
+        assertEquals(10, governor.getRate());
+
+        governor.setBattery(0.05f, false);
+        assertEquals(1, governor.getRate());
+        assertFalse(governor.isSweeping());
+
+        governor.setBattery(0.05f, true);
+        assertEquals(60, governor.getRate());
+        assertEquals(4, governor.getBatteryChanges());
+    }
+
+    @Test
+    public void userCeilingWins() {
+        governor.setMaxRate(15);
+        governor.setBattery(1f, true);
+        assertEquals(15, governor.getRate());
+        assertEquals(67, governor.getFrameIntervalMs());
+
+        governor.setMaxRate(1);
+        assertFalse(governor.isSweeping());
+        assertEquals(1000, governor.getFrameIntervalMs());
+    }
+
+    @Test
+    public void stepsDownAfterRepeatedOverruns() {
+        governor.setBattery(1f, true);
+        assertEquals(60, governor.getRate());
+
+        // 12 ms is more than half of a 16.7 ms frame
+        assertFalse(governor.onFrame(12000000L));
+        assertFalse(governor.onFrame(12000000L));
+        assertTrue(governor.onFrame(12000000L));
+
+        assertEquals(30, governor.getRate());
+        assertEquals(1, governor.getStepDowns());
+        assertEquals(3, governor.getOverruns());
+    }
+
+    @Test
+    public void singleSlowFrameDoesNotStepDown() {
+        governor.setBattery(1f, true);
+        governor.onFrame(12000000L);
+        governor.onFrame(CHEAP_FRAME_NANOS);
+        governor.onFrame(12000000L);
+        governor.onFrame(12000000L);
+
+        assertEquals(60, governor.getRate());
+    }
+
+    @Test
+    public void stepsBackUpAfterSustainedHeadroom() {
+        governor.setBattery(1f, true);
+        for (int i = 0; i < 3; i++) {
+            governor.onFrame(12000000L);
+        }
+        assertEquals(30, governor.getRate());
+
+        boolean changed = false;
+        for (int i = 0; i < 30 * 10 && !changed; i++) {
+            changed = governor.onFrame(CHEAP_FRAME_NANOS);
+        }
+
+        assertTrue(changed);
+        assertEquals(60, governor.getRate());
+        assertEquals(1, governor.getStepUps());
+    }
+
+    @Test
+    public void costLimitSurvivesBatteryChanges() {
+        governor.setBattery(1f, true);
+        for (int i = 0; i < 3; i++) {
+            governor.onFrame(12000000L);
+        }
+        governor.setBattery(1f, false);
+        governor.setBattery(1f, true);
+
+        assertEquals(30, governor.getRate());
+    }
+}
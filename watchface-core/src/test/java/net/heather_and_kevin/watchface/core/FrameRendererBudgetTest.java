@@ -0,0 +1,150 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Draw-op budget for a frame, counted with {@link RecordingRenderTarget}. Anything that doesn't
+ * move between ticks belongs in the static layer, so a steady-state frame is one layer blit plus
+ * one draw per visible hand. Raise a budget here only together with the change that needs it.
+ */
+public class FrameRendererBudgetTest {
+    private static final int INTERACTIVE_DRAW_BUDGET = 2;
+    private static final int DIAL_DRAW_BUDGET = 2;
+    private static final int STATIC_LAYER_DRAW_BUDGET = 1 + DIAL_DRAW_BUDGET + AccessoryLayout.COUNT;
+    private static final int COMPLICATION_DRAW_BUDGET = 2 + AccessoryPainter.DAYS;
+    private static final double OVERDRAW_BUDGET = 1.1;
+
+    private FrameRenderer renderer;
+    private RecordingRenderTarget target;
+
+    @Before
+    public void setUp() {
+        renderer = TestFaces.newRenderer();
+        renderer.setSurface(320, 320, true, 30f);
+        target = new RecordingRenderTarget(320, 320);
+    }
+
+    @Test
+    public void firstFrameBuildsStaticLayer() {
+        drawFrame(10, 8, 37, 0, false);
+
+        assertEquals(1, target.getLayersCreated());
+        assertTrue(target.toString(), target.getOffscreenDrawCalls() <= STATIC_LAYER_DRAW_BUDGET);
+        assertTrue(target.toString(), target.getDrawCalls() <= INTERACTIVE_DRAW_BUDGET);
+    }
+
+    @Test
+    public void interactiveFramesStayWithinBudget() {
+        drawFrame(10, 8, 0, 0, false);
+        for (int second = 1; second < 60; second++) {
+            drawFrame(10, 8, second, 0, false);
+
+            assertTrue(target.toString(), target.getDrawCalls() <= INTERACTIVE_DRAW_BUDGET);
+            assertEquals(1, target.getDrawCalls(RecordingRenderTarget.OP_LAYER));
+            assertEquals(0, target.getSaves());
+            assertEquals(0, target.getOffscreenDrawCalls());
+            assertEquals(0, target.getLayersCreated());
+            assertTrue(target.toString(), target.getOverdraw() <= OVERDRAW_BUDGET);
+        }
+    }
+
+    @Test
+    public void sweepFramesStayWithinBudget() {
+        drawFrame(10, 8, 0, 0, true);
+        for (int millis = 0; millis < 1000; millis += 33) {
+            drawFrame(10, 8, 1, millis, true);
+
+            assertTrue(target.toString(), target.getDrawCalls() <= INTERACTIVE_DRAW_BUDGET);
+            assertEquals(0, target.getOffscreenDrawCalls());
+        }
+    }
+
+    @Test
+    public void partialRedrawFramesStayWithinBudget() {
+        renderer.setPartialRedraw(true);
+        drawFrame(10, 8, 0, 0, false);
+        for (int second = 1; second < 60; second++) {
+            drawFrame(10, 8, second, 0, false);
+
+            // the frame layer goes to the screen; the background slice and hand go into it
+            assertEquals(target.toString(), 1, target.getDrawCalls());
+            assertTrue(target.toString(), target.getOffscreenDrawCalls() <= INTERACTIVE_DRAW_BUDGET);
+            assertEquals(0, target.getLayersCreated());
+            assertTrue(target.toString(), target.getOverdraw() <= OVERDRAW_BUDGET);
+        }
+    }
+
+    @Test
+    public void complicationsRebuildTheStaticLayerOnlyWhenTheirValueChanges() {
+        ComplicationPipeline complications = new ComplicationPipeline(
+                new ComplicationPipeline.Host() {
+                    @Override
+                    public void requestFrame() {
+                    }
+                });
+        renderer.setComplications(complications, TestFaces.newAccessoryPainter());
+        complications.publish(ComplicationPipeline.BATTERY, 80f);
+        complications.publish(ComplicationPipeline.DAY_OF_MONTH, 17);
+        drawFrame(10, 8, 0, 0, false);
+        assertTrue(target.toString(), target.getOffscreenDrawCalls()
+                <= STATIC_LAYER_DRAW_BUDGET + COMPLICATION_DRAW_BUDGET);
+
+        for (int second = 1; second < 30; second++) {
+            // a charging battery reports often, but this doesn't change the displayed percent
+            complications.publish(ComplicationPipeline.BATTERY, 80f + (second % 5 - 2) / 10f);
+            complications.publish(ComplicationPipeline.DAY_OF_MONTH, 17);
+            drawFrame(10, 8, second, 0, false);
+            assertEquals(0, target.getOffscreenDrawCalls());
+        }
+
+        complications.publish(ComplicationPipeline.BATTERY, 79.4f);
+        complications.publish(ComplicationPipeline.BATTERY, 78.6f);
+        drawFrame(10, 8, 30, 0, false);
+        assertEquals(0, target.getLayersCreated());
+        assertEquals(1, target.getLayersOpened());
+        drawFrame(10, 8, 31, 0, false);
+        assertEquals(0, target.getOffscreenDrawCalls());
+    }
+
+    @Test
+    public void dialTicksAreOneBatchPerTickClass() {
+        DialGenerator dial = TestFaces.newDial(null);
+        dial.update(320, 320, true, 30f);
+        dial.paint(target);
+
+        assertEquals(target.toString(), DIAL_DRAW_BUDGET, target.getDrawCalls());
+        assertEquals(DIAL_DRAW_BUDGET, target.getDrawCalls(RecordingRenderTarget.OP_LINES));
+    }
+
+    @Test
+    public void spriteHandsStayWithinBudget() {
+        ClockHand secondHand = new ClockHand(Style.fill(TestFaces.SECOND_HAND, true), 2f, 20f);
+        secondHand.enableSprites(60, 16 * 1024 * 1024);
+        renderer = new FrameRenderer(new ClockHand(Style.fill(TestFaces.HAND, true), 10f),
+                new ClockHand(Style.fill(TestFaces.HAND, true), 10f), secondHand,
+                30f, 10f, 1f / 2.5f, new AccessoryLayout(30f, 8f, 42f),
+                Style.fill(TestFaces.BACKGROUND, false),
+                Style.fill(TestFaces.ACCESSORY_BACKGROUND, true));
+        renderer.setSurface(320, 320, true, 30f);
+        for (int second = 0; second < 60; second++) {
+            drawFrame(10, 8, second, 0, false);
+        }
+
+        for (int second = 0; second < 60; second++) {
+            drawFrame(10, 9, second, 0, false);
+
+            assertTrue(target.toString(), target.getDrawCalls() <= INTERACTIVE_DRAW_BUDGET);
+            assertEquals(2, target.getDrawCalls(RecordingRenderTarget.OP_LAYER));
+            assertEquals(0, target.getLayersCreated());
+        }
+    }
+
+    private void drawFrame(int hour, int minute, int second, int millis, boolean sweep) {
+        target.beginFrame();
+        renderer.draw(target, hour, minute, second, millis, sweep);
+    }
+}
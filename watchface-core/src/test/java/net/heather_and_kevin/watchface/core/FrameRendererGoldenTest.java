@@ -0,0 +1,136 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Renders whole interactive and ambient frames with {@link RasterRenderTarget} and compares them
+ * against the PNGs in src/test/resources/golden. On a mismatch the rendered frame is written to
+ * build/golden-failures. After an intended visual change, regenerate the goldens by running the
+ * tests with UPDATE_GOLDENS=1 in the environment and review the new PNGs before committing.
+ */
+public class FrameRendererGoldenTest {
+    private static final File GOLDEN_DIR = new File("src/test/resources/golden");
+    private static final File FAILURE_DIR = new File("build/golden-failures");
+
+    /**
+     * Java2D and Skia anti-alias edges slightly differently, as do Java2D versions. A pixel only
+     * counts as different past this per-channel delta, and a few edge pixels may differ.
+     */
+    private static final int CHANNEL_TOLERANCE = 8;
+    private static final double PIXEL_TOLERANCE = 0.005;
+
+    private static final int HOUR = 10;
+    private static final int MINUTE = 8;
+    private static final int SECOND = 37;
+
+    @Test
+    public void flatTire() throws IOException {
+        // a 320x320 surface with a 30px chin; only the top 290 rows are on the panel
+        check("flat_tire_320x290", 320, 320, true, 30f, 290);
+    }
+
+    @Test
+    public void round() throws IOException {
+        check("round_360x360", 360, 360, true, 0f, 360);
+    }
+
+    @Test
+    public void square() throws IOException {
+        check("square_280x280", 280, 280, false, 0f, 280);
+    }
+
+    @Test
+    public void generatedDial() throws IOException {
+        // the ambient dial is an image for every theme, so only the interactive frame differs
+        RenderPlan plan = RenderPlan.compile(TestFaces.theme(TestFaces.TICKS_THEME),
+                new StylePool());
+        compare("ticks_flat_tire_320x290", render(plan, 320, 320, true, 30f, false)
+                .getSubimage(0, 0, 320, 290));
+    }
+
+    private static void check(String name, int width, int height, boolean round, float chin,
+                              int visibleHeight) throws IOException {
+        RenderPlan plan = TestFaces.defaultPlan();
+        compare(name, render(plan, width, height, round, chin, false).getSubimage(
+                0, 0, width, visibleHeight));
+        compare(name + "_ambient", render(plan, width, height, round, chin, true).getSubimage(
+                0, 0, width, visibleHeight));
+    }
+
+    private static BufferedImage render(RenderPlan plan, int width, int height, boolean round,
+                                        float chin, boolean ambient) {
+        FrameRenderer renderer = TestFaces.newRenderer(plan);
+        renderer.setSurface(width, height, round, chin);
+        RasterRenderTarget target = new RasterRenderTarget(width, height);
+        if (ambient) {
+            TestFaces.newAmbientRenderer(renderer, width, height).draw(target, HOUR, MINUTE);
+        } else {
+            renderer.draw(target, HOUR, MINUTE, SECOND, 0, false);
+        }
+        return target.getImage();
+    }
+
+    private static void compare(String name, BufferedImage actual) throws IOException {
+        if (System.getenv("UPDATE_GOLDENS") != null) {
+            write(actual, new File(GOLDEN_DIR, name + ".png"));
+            return;
+        }
+
+        BufferedImage expected;
+        try (InputStream in = FrameRendererGoldenTest.class.getResourceAsStream(
+                "/golden/" + name + ".png")) {
+            assertNotNull("no golden image for " + name + "; run with UPDATE_GOLDENS=1", in);
+            expected = ImageIO.read(in);
+        }
+
+        boolean sameSize = expected.getWidth() == actual.getWidth()
+                && expected.getHeight() == actual.getHeight();
+        int differing = 0;
+        if (sameSize) {
+            for (int y = 0; y < actual.getHeight(); y++) {
+                for (int x = 0; x < actual.getWidth(); x++) {
+                    if (channelDelta(expected.getRGB(x, y), actual.getRGB(x, y))
+                            > CHANNEL_TOLERANCE) {
+                        differing++;
+                    }
+                }
+            }
+        }
+        double fraction = differing / (double) (actual.getWidth() * actual.getHeight());
+        if (!sameSize || fraction > PIXEL_TOLERANCE) {
+            File failure = new File(FAILURE_DIR, name + ".png");
+            write(actual, failure);
+            assertTrue(name + ": " + (sameSize
+                    ? differing + " pixels differ (" + String.format("%.2f%%", fraction * 100) + ")"
+                    : "size " + actual.getWidth() + "x" + actual.getHeight() + ", expected "
+                            + expected.getWidth() + "x" + expected.getHeight())
+                    + "; rendered frame written to " + failure, false);
+        }
+    }
+
+    private static int channelDelta(int expected, int actual) {
+        int max = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            max = Math.max(max, Math.abs(((expected >>> shift) & 0xFF) - ((actual >>> shift) & 0xFF)));
+        }
+        return max;
+    }
+
+    private static void write(BufferedImage image, File file) throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("cannot create " + dir);
+        }
+        ImageIO.write(image, "png", file);
+    }
+}
@@ -0,0 +1,118 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Partial redraw must produce exactly the frames a full redraw does. Every frame is drawn onto a
+ * fresh target filled with garbage, like a surface buffer that doesn't keep the last frame.
+ */
+public class FrameRendererPartialRedrawTest {
+    private static final int SIZE = 320;
+    private static final int GARBAGE = 0xFFFF00FF;
+
+    /**
+     * A ticking second hand sweeps 6 degrees a second, so the union of two positions is a small
+     * part of the screen.
+     */
+    private static final double TICKING_FRACTION_BUDGET = 0.15;
+
+    @Test
+    public void tickingFramesMatchFullRedraw() {
+        FrameRenderer full = newRenderer(false);
+        FrameRenderer partial = newRenderer(false);
+        partial.setPartialRedraw(true);
+
+        // across a minute boundary, and a frame to let the first full repaint drop out
+        compare(full, partial, 10, 8, 59, 0, false);
+        partial.getDamage().resetStats();
+        for (int second = 0; second < 60; second++) {
+            compare(full, partial, 10, 9, second, 0, false);
+        }
+        compare(full, partial, 10, 10, 0, 0, false);
+
+        double fraction = partial.getDamage().getAverageFraction();
+        assertTrue("repainted " + fraction, fraction < TICKING_FRACTION_BUDGET);
+    }
+
+    @Test
+    public void sweepFramesMatchFullRedraw() {
+        FrameRenderer full = newRenderer(false);
+        FrameRenderer partial = newRenderer(false);
+        partial.setPartialRedraw(true);
+
+        for (int frame = 0; frame < 150; frame++) {
+            int millis = frame * 33;
+            compare(full, partial, 4, 30, 20 + millis / 1000, millis % 1000, true);
+        }
+    }
+
+    @Test
+    public void spriteFramesMatchFullRedraw() {
+        FrameRenderer full = newRenderer(true);
+        FrameRenderer partial = newRenderer(true);
+        partial.setPartialRedraw(true);
+
+        for (int frame = 0; frame < 90; frame++) {
+            int millis = frame * 67;
+            compare(full, partial, 4, 30, 20 + millis / 1000, millis % 1000, true);
+        }
+    }
+
+    @Test
+    public void invalidatedStaticLayerRepaintsEverything() {
+        FrameRenderer full = newRenderer(false);
+        FrameRenderer partial = newRenderer(false);
+        partial.setPartialRedraw(true);
+        compare(full, partial, 10, 8, 0, 0, false);
+        compare(full, partial, 10, 8, 1, 0, false);
+
+        partial.invalidateStaticLayer();
+        compare(full, partial, 10, 8, 2, 0, false);
+        DamageTracker damage = partial.getDamage();
+        assertEquals(SIZE, damage.right - damage.left);
+        assertEquals(SIZE, damage.bottom - damage.top);
+    }
+
+    private static FrameRenderer newRenderer(boolean sprites) {
+        FrameRenderer renderer;
+        if (sprites) {
+            ClockHand secondHand = new ClockHand(Style.fill(TestFaces.SECOND_HAND, true), 2f, 20f);
+            secondHand.enableSprites(60, 16 * 1024 * 1024);
+            renderer = new FrameRenderer(new ClockHand(Style.fill(TestFaces.HAND, true), 10f),
+                    new ClockHand(Style.fill(TestFaces.HAND, true), 10f), secondHand,
+                    30f, 10f, 1f / 2.5f, new AccessoryLayout(30f, 8f, 42f),
+                    Style.fill(TestFaces.BACKGROUND, false),
+                    Style.fill(TestFaces.ACCESSORY_BACKGROUND, true));
+        } else {
+            renderer = TestFaces.newRenderer();
+        }
+        renderer.setSurface(SIZE, SIZE, true, 30f);
+        return renderer;
+    }
+
+    private static void compare(FrameRenderer full, FrameRenderer partial,
+                                int hour, int minute, int second, int millis, boolean sweep) {
+        int[] expected = render(full, hour, minute, second, millis, sweep);
+        int[] actual = render(partial, hour, minute, second, millis, sweep);
+
+        int differing = 0;
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] != actual[i]) {
+                differing++;
+            }
+        }
+        assertEquals("pixels differing at " + hour + ":" + minute + ":" + second + "." + millis,
+                0, differing);
+    }
+
+    private static int[] render(FrameRenderer renderer,
+                                int hour, int minute, int second, int millis, boolean sweep) {
+        RasterRenderTarget target = new RasterRenderTarget(SIZE, SIZE);
+        target.drawColor(GARBAGE);
+        renderer.draw(target, hour, minute, second, millis, sweep);
+        return target.getImage().getRGB(0, 0, SIZE, SIZE, null, 0, SIZE);
+    }
+}
@@ -0,0 +1,524 @@
+package net.heather_and_kevin.watchface.core;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a day of the engine's frame loop in fast-forward, headless: a {@link TickScheduler} on a
+ * fake clock wakes up once a second, each wakeup draws an interactive frame the way
+ * {@code onDraw} does (time, complications, {@link FrameRenderer}), and on every minute the face
+ * drops into ambient for one {@link AmbientRenderer} frame and comes back. That is 86,400
+ * interactive and 1,440 ambient frames per run.
+ *
+ * Every frame's time, allocated bytes and draw calls are recorded into arrays sized up front, so
+ * recording doesn't allocate on the replayed thread. Draw calls count those into layers too, so a
+ * rebuild's static layer painting shows up in its frame. {@link #analyze} then flags
+ * outliers: frames that opened more layers than the steady state (static layer rebuilds), created
+ * layers (bitmap rescales), drew a different number of calls for no such reason, allocated, or
+ * took much longer than the median, and compares the chin-clipped hand ranges against the rest
+ * of the dial.
+ *
+ * The static layer is built on a {@link LayerWorker}, as on the watch, but the worker runs its
+ * builds inline on the replayed thread, so that their cost and allocations land in the frame
+ * that requested them.
+ */
+final class FrameReplay {
+    static final int INTERACTIVE_FRAMES = 24 * 60 * 60;
+    static final int AMBIENT_FRAMES = 24 * 60;
+
+    static final int OUTLIER_SLOW = 1;
+    static final int OUTLIER_ALLOCATION = 1 << 1;
+    static final int OUTLIER_DRAW_CALLS = 1 << 2;
+    static final int OUTLIER_REBUILD = 1 << 3;
+    static final int OUTLIER_LAYER = 1 << 4;
+
+    /**
+     * A frame is slow when it takes this many times the median, and at least
+     * {@link #SLOW_FRAME_MIN_NANOS}.
+     */
+    static final int SLOW_FRAME_FACTOR = 8;
+    static final long SLOW_FRAME_MIN_NANOS = 100 * 1000;
+
+    private static final long PERIOD_MS = 1000;
+    private static final int REPORTED_OUTLIERS = 50;
+
+    private final int width;
+    private final int height;
+    private final long startMillis;
+
+    private final FrameRenderer renderer;
+    private final AmbientRenderer ambientRenderer;
+    private final ComplicationPipeline complications;
+    private final FaceTime time;
+    private final RecordingRenderTarget target;
+    private final TickScheduler scheduler;
+
+    private long uptimeMillis;
+    private long wakeupAt = -1;
+    private boolean invalidated;
+
+    private final com.sun.management.ThreadMXBean allocationBean;
+    private final long threadId = Thread.currentThread().getId();
+    private long allocationOverhead;
+
+    final long[] nanos = new long[INTERACTIVE_FRAMES];
+    final long[] allocated = new long[INTERACTIVE_FRAMES];
+    final int[] drawCalls = new int[INTERACTIVE_FRAMES];
+    final int[] layersOpened = new int[INTERACTIVE_FRAMES];
+    final int[] layersCreated = new int[INTERACTIVE_FRAMES];
+    /**
+     * The wall clock time the frame showed, as hour * 3600 + minute * 60 + second.
+     */
+    final int[] shown = new int[INTERACTIVE_FRAMES];
+    final long[] ambientNanos = new long[AMBIENT_FRAMES];
+    final long[] ambientAllocated = new long[AMBIENT_FRAMES];
+    final int[] ambientDrawCalls = new int[AMBIENT_FRAMES];
+    int interactiveFrames;
+    int ambientFrames;
+
+    int steadyDrawCalls;
+    int steadyLayersOpened;
+    long medianNanos;
+    final int[] outliers = new int[INTERACTIVE_FRAMES];
+    int rebuilds;
+    int layerFrames;
+    int allocatingFrames;
+    int slowFrames;
+    int unexplainedFrames;
+
+    /**
+     * @param startMillis when the day starts; a day with a DST change replays a 23 or 25 hour
+     *                    wall clock
+     */
+    FrameReplay(TimeZone zone, long startMillis, int width, int height, boolean round,
+                float chinSize) {
+        this.width = width;
+        this.height = height;
+        this.startMillis = startMillis;
+
+        complications = new ComplicationPipeline(new ComplicationPipeline.Host() {
+            @Override
+            public void requestFrame() {
+                scheduler.requestFrame();
+            }
+        });
+        target = new RecordingRenderTarget(width, height);
+        renderer = TestFaces.newRenderer();
+        renderer.setLayerWorker(new LayerWorker(new InlineExecutor(), target));
+        renderer.setSurface(width, height, round, chinSize);
+        renderer.setComplications(complications, TestFaces.newAccessoryPainter());
+        ambientRenderer = TestFaces.newAmbientRenderer(renderer, width, height);
+        ambientRenderer.setDisplay(false, true);
+        ambientRenderer.setDial(target.createLayer(width, height), width * height / 8);
+        time = new FaceTime(zone);
+
+        scheduler = new TickScheduler(new TickScheduler.Clock() {
+            @Override
+            public long uptimeMillis() {
+                return uptimeMillis;
+            }
+
+            @Override
+            public long currentTimeMillis() {
+                return FrameReplay.this.startMillis + uptimeMillis;
+            }
+        }, new TickScheduler.Host() {
+            @Override
+            public void scheduleWakeup(long uptimeMillis) {
+                wakeupAt = uptimeMillis;
+            }
+
+            @Override
+            public void cancelWakeup() {
+                wakeupAt = -1;
+            }
+
+            @Override
+            public void invalidate() {
+                invalidated = true;
+            }
+        }, PERIOD_MS);
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadBean)
+                .isThreadAllocatedMemorySupported()) {
+            allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+            allocationBean.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            allocationBean = null;
+        }
+    }
+
+    boolean measuresAllocations() {
+        return allocationBean != null;
+    }
+
+    TickScheduler getScheduler() {
+        return scheduler;
+    }
+
+    ComplicationPipeline getComplications() {
+        return complications;
+    }
+
+    /**
+     * Replays the whole day. Call once per instance, on the thread that created it.
+     */
+    void run() {
+        // reading the counter can itself allocate, so measure that and subtract it
+        long before = allocatedBytes();
+        allocationOverhead = allocatedBytes() - before;
+
+        scheduler.start();
+        while (interactiveFrames < INTERACTIVE_FRAMES) {
+            if (invalidated) {
+                invalidated = false;
+                drawInteractive();
+                if (time.second == 0 && ambientFrames < AMBIENT_FRAMES) {
+                    // wrist down: the engine stops ticking, draws one ambient frame, then
+                    // restarts the ticks when it becomes interactive again
+                    scheduler.stop();
+                    drawAmbient();
+                    scheduler.start();
+                }
+            }
+            if (wakeupAt < 0) {
+                throw new IllegalStateException("scheduler stopped ticking at frame "
+                        + interactiveFrames);
+            }
+            uptimeMillis = wakeupAt;
+            scheduler.onWakeup();
+        }
+        scheduler.stop();
+    }
+
+    private void drawInteractive() {
+        int frame = interactiveFrames++;
+        target.beginFrame();
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+
+        time.set(startMillis + uptimeMillis);
+        complications.publish(ComplicationPipeline.DAY_OF_MONTH, time.day);
+        // drains from full to 20% over the day, published as often as the battery broadcast
+        complications.publish(ComplicationPipeline.BATTERY,
+                100f - 80f * frame / INTERACTIVE_FRAMES);
+        renderer.draw(target, time.hour, time.minute, time.second, time.millis, false);
+
+        nanos[frame] = System.nanoTime() - start;
+        allocated[frame] = Math.max(0, allocatedBytes() - allocatedBefore - allocationOverhead);
+        drawCalls[frame] = target.getDrawCalls() + target.getOffscreenDrawCalls();
+        layersOpened[frame] = target.getLayersOpened();
+        layersCreated[frame] = target.getLayersCreated();
+        shown[frame] = time.hour * 3600 + time.minute * 60 + time.second;
+    }
+
+    private void drawAmbient() {
+        int frame = ambientFrames++;
+        target.beginFrame();
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+
+        time.set(startMillis + uptimeMillis);
+        ambientRenderer.draw(target, time.hour, time.minute);
+
+        ambientNanos[frame] = System.nanoTime() - start;
+        ambientAllocated[frame] = Math.max(0,
+                allocatedBytes() - allocatedBefore - allocationOverhead);
+        ambientDrawCalls[frame] = target.getDrawCalls() + target.getOffscreenDrawCalls();
+    }
+
+    private long allocatedBytes() {
+        return allocationBean != null ? allocationBean.getThreadAllocatedBytes(threadId) : 0;
+    }
+
+    /**
+     * Works out the steady state and flags the frames that depart from it.
+     */
+    void analyze() {
+        steadyDrawCalls = mode(drawCalls, 1);
+        steadyLayersOpened = mode(layersOpened, 1);
+        medianNanos = percentile(nanos, 0.5);
+        long slowNanos = Math.max(SLOW_FRAME_MIN_NANOS, SLOW_FRAME_FACTOR * medianNanos);
+        for (int i = 0; i < interactiveFrames; i++) {
+            int flags = 0;
+            if (nanos[i] > slowNanos) {
+                flags |= OUTLIER_SLOW;
+                slowFrames++;
+            }
+            if (allocated[i] > 0) {
+                flags |= OUTLIER_ALLOCATION;
+                allocatingFrames++;
+            }
+            if (layersOpened[i] > steadyLayersOpened) {
+                flags |= OUTLIER_REBUILD;
+                rebuilds++;
+            }
+            if (layersCreated[i] > 0) {
+                flags |= OUTLIER_LAYER;
+                layerFrames++;
+            }
+            if (drawCalls[i] != steadyDrawCalls && (flags & (OUTLIER_REBUILD | OUTLIER_LAYER)) == 0) {
+                flags |= OUTLIER_DRAW_CALLS;
+                unexplainedFrames++;
+            }
+            outliers[i] = flags;
+        }
+    }
+
+    /**
+     * Whether the frame showed a minute or second hand in the ranges the chin clips,
+     * minutes 23 to 35 and seconds 24 to 36. The minute hand isn't drawn, see
+     * {@link FrameRenderer#draw}, so only its length lookup is exercised.
+     */
+    boolean inChinRange(int frame) {
+        int minute = shown[frame] / 60 % 60;
+        int second = shown[frame] % 60;
+        return (minute >= 23 && minute <= 35) || (second >= 24 && second <= 36);
+    }
+
+    /**
+     * Median frame time of the frames in, or out of, the chin ranges.
+     */
+    long chinMedianNanos(boolean inChin) {
+        long[] selected = new long[interactiveFrames];
+        int count = 0;
+        for (int i = 0; i < interactiveFrames; i++) {
+            if (inChinRange(i) == inChin) {
+                selected[count++] = nanos[i];
+            }
+        }
+        return percentile(Arrays.copyOf(selected, count), 0.5);
+    }
+
+    /**
+     * Most common draw call count of the frames in, or out of, the chin ranges, skipping
+     * rebuilds.
+     */
+    int chinSteadyDrawCalls(boolean inChin) {
+        int[] selected = new int[interactiveFrames];
+        int count = 0;
+        for (int i = 0; i < interactiveFrames; i++) {
+            if (inChinRange(i) == inChin && layersOpened[i] <= steadyLayersOpened) {
+                selected[count++] = drawCalls[i];
+            }
+        }
+        return mode(Arrays.copyOf(selected, count), 0);
+    }
+
+    /**
+     * Median frame time of each elapsed hour of the replay.
+     */
+    long[] hourlyMedianNanos() {
+        long[] medians = new long[INTERACTIVE_FRAMES / 3600];
+        for (int hour = 0; hour < medians.length; hour++) {
+            medians[hour] = percentile(
+                    Arrays.copyOfRange(nanos, hour * 3600, (hour + 1) * 3600), 0.5);
+        }
+        return medians;
+    }
+
+    /**
+     * Frames where the wall clock shown didn't advance by exactly one second, e.g. DST changes
+     * and midnight.
+     */
+    int[] clockJumps() {
+        int[] jumps = new int[interactiveFrames];
+        int count = 0;
+        for (int i = 1; i < interactiveFrames; i++) {
+            int step = shown[i] - shown[i - 1];
+            if (step != 1 && step != 1 - 24 * 3600) {
+                jumps[count++] = i;
+            }
+        }
+        return Arrays.copyOf(jumps, count);
+    }
+
+    String report() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.US, "frame replay: %dx%d, %d interactive and %d ambient"
+                        + " frames, allocation counter %s%n", width, height, interactiveFrames,
+                ambientFrames, measuresAllocations() ? "on" : "unavailable"));
+        out.append(String.format(Locale.US, "interactive: p50=%.1fus p99=%.1fus max=%.1fus"
+                        + " total=%.1fms steady draw calls=%d%n", medianNanos / 1000.0,
+                percentile(nanos, 0.99) / 1000.0, max(nanos) / 1000.0, sum(nanos) / 1e6,
+                steadyDrawCalls));
+        out.append(String.format(Locale.US, "ambient: p50=%.1fus max=%.1fus draw calls=%d"
+                        + " allocated=%dB%n", percentile(ambientNanos, 0.5) / 1000.0,
+                max(ambientNanos) / 1000.0, mode(ambientDrawCalls, 0), sum(ambientAllocated)));
+        out.append(String.format(Locale.US, "outliers: rebuilds=%d layers=%d allocating=%d"
+                        + " (%dB) slow=%d unexplained=%d%n", rebuilds, layerFrames,
+                allocatingFrames, sum(allocated), slowFrames, unexplainedFrames));
+        out.append(String.format(Locale.US, "chin ranges: p50=%.1fus draw calls=%d, elsewhere:"
+                        + " p50=%.1fus draw calls=%d%n", chinMedianNanos(true) / 1000.0,
+                chinSteadyDrawCalls(true), chinMedianNanos(false) / 1000.0,
+                chinSteadyDrawCalls(false)));
+        out.append(String.format(Locale.US, "scheduler: wakeups=%d requested=%d coalesced=%d"
+                        + " missed=%d complications: published=%d changes=%d%n",
+                scheduler.getWakeups(), scheduler.getFramesRequested(),
+                scheduler.getFramesCoalesced(), scheduler.getMissedTicks(),
+                complications.getPublished(), complications.getChanges()));
+        for (int jump : clockJumps()) {
+            out.append("clock jump at frame ").append(jump).append(": ")
+                    .append(clock(shown[jump - 1])).append(" -> ").append(clock(shown[jump]))
+                    .append('\n');
+        }
+
+        out.append("hour  p50us   p99us   maxus  draws  allocB  flagged\n");
+        for (int hour = 0; hour < INTERACTIVE_FRAMES / 3600; hour++) {
+            int from = hour * 3600;
+            int to = from + 3600;
+            long[] hourNanos = Arrays.copyOfRange(nanos, from, to);
+            long draws = 0;
+            long hourAllocated = 0;
+            int flagged = 0;
+            for (int i = from; i < to; i++) {
+                draws += drawCalls[i];
+                hourAllocated += allocated[i];
+                if (outliers[i] != 0) {
+                    flagged++;
+                }
+            }
+            out.append(String.format(Locale.US, "%4d %6.1f %7.1f %7.1f %6.2f %7d %8d%n", hour,
+                    percentile(hourNanos, 0.5) / 1000.0, percentile(hourNanos, 0.99) / 1000.0,
+                    max(hourNanos) / 1000.0, draws / 3600.0, hourAllocated, flagged));
+        }
+
+        int reported = 0;
+        for (int i = 0; i < interactiveFrames && reported < REPORTED_OUTLIERS; i++) {
+            if (outliers[i] == 0) {
+                continue;
+            }
+            reported++;
+            out.append(String.format(Locale.US, "frame %d at %s: %.1fus draws=%d opened=%d"
+                            + " created=%d allocated=%dB %s%n", i, clock(shown[i]),
+                    nanos[i] / 1000.0, drawCalls[i], layersOpened[i], layersCreated[i],
+                    allocated[i], describe(outliers[i])));
+        }
+        int flagged = 0;
+        for (int i = 0; i < interactiveFrames; i++) {
+            if (outliers[i] != 0) {
+                flagged++;
+            }
+        }
+        if (flagged > reported) {
+            out.append("... ").append(flagged - reported).append(" more flagged frames\n");
+        }
+        return out.toString();
+    }
+
+    private static String describe(int flags) {
+        StringBuilder causes = new StringBuilder();
+        if ((flags & OUTLIER_REBUILD) != 0) {
+            causes.append(" static-layer-rebuild");
+        }
+        if ((flags & OUTLIER_LAYER) != 0) {
+            causes.append(" layer-allocated");
+        }
+        if ((flags & OUTLIER_ALLOCATION) != 0) {
+            causes.append(" heap-allocation");
+        }
+        if ((flags & OUTLIER_SLOW) != 0) {
+            causes.append(" slow");
+        }
+        if ((flags & OUTLIER_DRAW_CALLS) != 0) {
+            causes.append(" unexplained-draw-calls");
+        }
+        return "[" + causes.toString().trim() + "]";
+    }
+
+    private static String clock(int secondOfDay) {
+        return String.format(Locale.US, "%02d:%02d:%02d", secondOfDay / 3600,
+                secondOfDay / 60 % 60, secondOfDay % 60);
+    }
+
+    /**
+     * @param from the first index counted, e.g. 1 to leave out the frame that builds everything
+     */
+    private static int mode(int[] values, int from) {
+        int[] sorted = Arrays.copyOfRange(values, from, values.length);
+        Arrays.sort(sorted);
+        int best = sorted.length > 0 ? sorted[0] : 0;
+        int bestRun = 0;
+        int run = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            run = i > 0 && sorted[i] == sorted[i - 1] ? run + 1 : 1;
+            if (run > bestRun) {
+                bestRun = run;
+                best = sorted[i];
+            }
+        }
+        return best;
+    }
+
+    private static long percentile(long[] values, double fraction) {
+        if (values.length == 0) {
+            return 0;
+        }
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, (int) (fraction * sorted.length))];
+    }
+
+    private static long max(long[] values) {
+        long max = 0;
+        for (long value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    /**
+     * Runs each task as it is queued, on the calling thread.
+     */
+    private static class InlineExecutor extends AbstractExecutorService {
+        private boolean shutdown;
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return shutdown;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Soaks the frame path with 24 hours of simulated time, see {@link FrameReplay}, and fails if
+ * rendering cost doesn't stay flat: every frame that draws more than the steady state must be a
+ * static layer rebuild caused by a complication change, no frame creates layers, the
+ * chin-clipped second hand draws like it does on the rest of the dial, and nothing allocates.
+ * Timings are only reported, to build/reports/frame-replay.txt, since they depend on the
+ * machine.
+ *
+ * The replayed day is a spring-forward day in New York on a flat tire screen, so the wall clock
+ * skips an hour and crosses midnight while the hands pass the chin.
+ */
+public class FrameReplayTest {
+    private static final File REPORT = new File("build/reports/frame-replay.txt");
+    private static final TimeZone ZONE = TimeZone.getTimeZone("America/New_York");
+    private static final int SIZE = 320;
+    private static final float CHIN_SIZE = 30f;
+
+    private static FrameReplay replay;
+
+    /**
+     * Replays the day once for all tests.
+     */
+    private static synchronized FrameReplay replay() throws IOException {
+        if (replay != null) {
+            return replay;
+        }
+        // the first day only warms up the JIT and loads classes
+        newReplay().run();
+        FrameReplay measured = newReplay();
+        measured.run();
+        measured.analyze();
+
+        File dir = REPORT.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("can't create " + dir);
+        }
+        Writer out = new OutputStreamWriter(new FileOutputStream(REPORT), "UTF-8");
+        try {
+            out.write(measured.report());
+        } finally {
+            out.close();
+        }
+        replay = measured;
+        return replay;
+    }
+
+    private static FrameReplay newReplay() {
+        Calendar start = Calendar.getInstance(ZONE);
+        start.clear();
+        start.set(2016, Calendar.MARCH, 13);
+        return new FrameReplay(ZONE, start.getTimeInMillis(), SIZE, SIZE, true, CHIN_SIZE);
+    }
+
+    @Test
+    public void replaysEveryFrameOfTheDay() throws IOException {
+        FrameReplay replay = replay();
+        assertEquals(FrameReplay.INTERACTIVE_FRAMES, replay.interactiveFrames);
+        assertEquals(FrameReplay.AMBIENT_FRAMES, replay.ambientFrames);
+        assertEquals(0, replay.getScheduler().getMissedTicks());
+    }
+
+    @Test
+    public void theWallClockSkipsTheDstHourAndCrossesMidnight() throws IOException {
+        FrameReplay replay = replay();
+        int[] jumps = replay.clockJumps();
+        assertEquals(1, jumps.length);
+        assertEquals(3600 + 1, replay.shown[jumps[0]] - replay.shown[jumps[0] - 1]);
+        assertEquals(0, replay.shown[24 * 3600 - 3600]);
+    }
+
+    @Test
+    public void extraDrawCallsAreAlwaysStaticLayerRebuilds() throws IOException {
+        FrameReplay replay = replay();
+        assertEquals(replay.report(), 0, replay.unexplainedFrames);
+        // the first frame, then at most once per change the discs show
+        assertTrue(replay.report(),
+                replay.rebuilds <= 1 + replay.getComplications().getChanges());
+    }
+
+    /**
+     * The worker creates both of its buffers while the renderer is set up, before the first frame,
+     * and reuses them for every rebuild after.
+     */
+    @Test
+    public void noFrameCreatesLayers() throws IOException {
+        FrameReplay replay = replay();
+        assertEquals(replay.report(), 0, replay.layerFrames);
+    }
+
+    /**
+     * Only covers the second hand: FrameRenderer doesn't draw the hour and minute hands, so for
+     * minutes 23-35 this passes without the minute hand being drawn at all, and only its clipped
+     * length is looked up.
+     */
+    @Test
+    public void chinClippedHandsDrawLikeTheRestOfTheDial() throws IOException {
+        FrameReplay replay = replay();
+        assertEquals(replay.chinSteadyDrawCalls(false), replay.chinSteadyDrawCalls(true));
+        assertEquals(replay.steadyDrawCalls, replay.chinSteadyDrawCalls(false));
+    }
+
+    @Test
+    public void ambientFramesOnlyAddTheBlackFillWhenShifted() throws IOException {
+        FrameReplay replay = replay();
+        // the dial and both hands, plus clearing what the dial doesn't cover when burn-in
+        // protection shifts it
+        for (int i = 0; i < replay.ambientFrames; i++) {
+            int drawCalls = replay.ambientDrawCalls[i];
+            assertTrue("ambient frame " + i + ": " + drawCalls,
+                    drawCalls == 3 || drawCalls == 4);
+        }
+    }
+
+    @Test
+    public void theDayDoesNotAllocate() throws IOException {
+        FrameReplay replay = replay();
+        assumeTrue(replay.measuresAllocations());
+        // the VM occasionally allocates once on the thread, e.g. relinking a call site; a leak
+        // shows up every frame, or every minute at the least
+        assertTrue(replay.report(), replay.allocatingFrames <= 2);
+        long ambientAllocated = 0;
+        for (long bytes : replay.ambientAllocated) {
+            ambientAllocated += bytes;
+        }
+        assertTrue(replay.report(), ambientAllocated <= 1024);
+    }
+}
@@ -0,0 +1,103 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrameStatsTest {
+    @Test
+    public void bucketsArePowersOfTwoInMicroseconds() {
+        assertEquals(0, FrameStats.bucket(0));
+        assertEquals(0, FrameStats.bucket(1999));
+        assertEquals(1, FrameStats.bucket(2000));
+        assertEquals(1, FrameStats.bucket(3999));
+        assertEquals(10, FrameStats.bucket(1024000));
+        assertEquals(FrameStats.BUCKETS - 1, FrameStats.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesComeFromTheHistogram() {
+        FrameStats stats = new FrameStats();
+        for (int i = 0; i < 90; i++) {
+            stats.record(FrameStats.PHASE_SECOND_HAND, 100000);
+        }
+        for (int i = 0; i < 10; i++) {
+            stats.record(FrameStats.PHASE_SECOND_HAND, 5000000);
+        }
+
+        assertEquals(128000, stats.getPercentileNanos(FrameStats.PHASE_SECOND_HAND, 50));
+        assertEquals(128000, stats.getPercentileNanos(FrameStats.PHASE_SECOND_HAND, 90));
+        assertEquals(8192000, stats.getPercentileNanos(FrameStats.PHASE_SECOND_HAND, 99));
+        assertEquals(5000000, stats.getMaxNanos(FrameStats.PHASE_SECOND_HAND));
+        assertEquals(590000, stats.getMeanNanos(FrameStats.PHASE_SECOND_HAND));
+    }
+
+    @Test
+    public void countsModesAndMissedDeadlines() {
+        FrameStats stats = new FrameStats();
+        stats.begin(FrameStats.PHASE_FRAME);
+        stats.endFrame(false, 0);
+        stats.begin(FrameStats.PHASE_FRAME);
+        stats.endFrame(true, Long.MAX_VALUE);
+
+        assertEquals(1, stats.getInteractiveFrames());
+        assertEquals(1, stats.getAmbientFrames());
+        assertEquals(1, stats.getMissedDeadlines());
+        assertEquals(2, stats.getCount(FrameStats.PHASE_FRAME));
+    }
+
+    @Test
+    public void disabledRecordsNothing() {
+        final int[] sections = new int[1];
+        FrameStats stats = new FrameStats();
+        stats.setTracer(new FrameStats.Tracer() {
+            @Override
+            public void beginSection(String name) {
+                sections[0]++;
+            }
+
+            @Override
+            public void endSection() {
+            }
+        });
+        stats.setEnabled(false);
+
+        stats.begin(FrameStats.PHASE_FRAME);
+        stats.begin(FrameStats.PHASE_HOUR_HAND);
+        stats.end(FrameStats.PHASE_HOUR_HAND);
+        stats.endFrame(false, 0);
+
+        assertEquals(0, stats.getCount(FrameStats.PHASE_FRAME));
+        assertEquals(0, stats.getMissedDeadlines());
+        assertEquals(0, sections[0]);
+    }
+
+    @Test
+    public void dumpListsRecordedPhases() {
+        FrameStats stats = new FrameStats();
+        stats.record(FrameStats.PHASE_BACKGROUND, 300000);
+        StringWriter out = new StringWriter();
+        stats.dump(new PrintWriter(out), "  ");
+
+        String dump = out.toString();
+        assertTrue(dump, dump.contains("background: n=1"));
+        assertTrue(dump, !dump.contains("hourHand"));
+    }
+
+    @Test
+    public void frameRendererOnlyTimesTheHandsItDraws() {
+        FrameStats stats = new FrameStats();
+        FrameRenderer renderer = TestFaces.newRenderer();
+        renderer.setStats(stats);
+        renderer.setSurface(320, 320, true, 30f);
+        renderer.draw(new RecordingRenderTarget(320, 320), 10, 10, 30, 0, false);
+
+        assertEquals(1, stats.getCount(FrameStats.PHASE_SECOND_HAND));
+        assertEquals(0, stats.getCount(FrameStats.PHASE_HOUR_HAND));
+        assertEquals(0, stats.getCount(FrameStats.PHASE_MINUTE_HAND));
+    }
+}
@@ -0,0 +1,31 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HandAnglesTest {
+    private static final float DELTA = 0.001f;
+
+    @Test
+    public void hourHandMovesWithTheMinutes() {
+        assertEquals(0f, HandAngles.hour(0, 0), DELTA);
+        assertEquals(90f, HandAngles.hour(3, 0), DELTA);
+        assertEquals(105f, HandAngles.hour(3, 30), DELTA);
+        assertEquals(360f + 15f, HandAngles.hour(12, 30), DELTA);
+    }
+
+    @Test
+    public void minuteHandMovesWithTheSeconds() {
+        assertEquals(180f, HandAngles.minute(30, 0), DELTA);
+        assertEquals(183f, HandAngles.minute(30, 30), DELTA);
+    }
+
+    @Test
+    public void sweepingSecondHandMatchesTickingOnWholeSeconds() {
+        for (int second = 0; second < 60; second++) {
+            assertEquals(HandAngles.second(second), HandAngles.sweepSecond(second, 0), DELTA);
+        }
+        assertEquals(3f, HandAngles.sweepSecond(0, 500), DELTA);
+    }
+}
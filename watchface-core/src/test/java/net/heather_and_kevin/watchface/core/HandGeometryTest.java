@@ -0,0 +1,86 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HandGeometryTest {
+    private static final float DELTA = 0.01f;
+
+    @Test
+    public void flatTireFollowsWhicheverEdgeIsNearer() {
+        // 320x320 surface with a 30px chin, as on the Moto 360
+        HandGeometry geometry = new HandGeometry(40f, 10f);
+        geometry.update(320, 320, true, 30f);
+
+        for (int second = 0; second < 60; second++) {
+            float expected = 160f - 10f;
+            double cos = Math.cos(Math.toRadians(second / 60f * 360f));
+            if (cos < 0) {
+                expected = Math.min(expected, (float) ((160f - 30f) / -cos) - 10f);
+            }
+            assertEquals("second " + second, expected, geometry.secondLengths[second], DELTA);
+        }
+        // the old hard-coded ranges let seconds 24 and 36 poke past the rim
+        assertEquals(150f, geometry.secondLengths[24], DELTA);
+        assertEquals(150f, geometry.secondLengths[36], DELTA);
+        assertEquals(130f - 40f, geometry.minuteLengths[30 * 60], DELTA);
+        assertEquals(160f - 40f, geometry.minuteLengths[0], DELTA);
+    }
+
+    @Test
+    public void roundWithoutChinIsConstant() {
+        HandGeometry geometry = new HandGeometry(40f, 10f);
+        geometry.update(360, 360, true, 0f);
+
+        for (float length : geometry.secondSweepLengths) {
+            assertEquals(170f, length, DELTA);
+        }
+    }
+
+    @Test
+    public void squareReachesIntoTheCorners() {
+        HandGeometry geometry = new HandGeometry(0f, 0f);
+        geometry.update(280, 280, false, 0f);
+
+        assertEquals(140f, geometry.secondLengths[0], DELTA);
+        assertEquals(140f, geometry.secondLengths[15], DELTA);
+        // 7.5 seconds is 45 degrees, straight at the corner
+        float corner = geometry.secondSweepLengths[HandGeometry.sweepIndex(7, 500)];
+        assertEquals(140f * (float) Math.sqrt(2), corner, DELTA);
+        assertTrue(geometry.secondLengths[8] < corner);
+    }
+
+    @Test
+    public void positionsPointWhereTheAnglesDo() {
+        for (int hour = 0; hour < 24; hour++) {
+            for (int minute = 0; minute < 60; minute++) {
+                assertDirection(HandAngles.hour(hour, minute),
+                        HandGeometry.hourPosition(hour, minute));
+                for (int second = 0; second < 60; second++) {
+                    assertDirection(HandAngles.minute(minute, second),
+                            HandGeometry.minutePosition(minute, second));
+                }
+            }
+        }
+        for (int second = 0; second < 60; second++) {
+            assertDirection(HandAngles.second(second), HandGeometry.secondPosition(second));
+            assertDirection(HandAngles.sweepSecond(second, 500),
+                    HandGeometry.sweepIndex(second, 500));
+        }
+    }
+
+    @Test
+    public void sweepIndexCoversTheMinute() {
+        assertEquals(0, HandGeometry.sweepIndex(0, 0));
+        assertEquals(HandGeometry.FINE_POSITIONS / 2, HandGeometry.sweepIndex(30, 0));
+        assertEquals(HandGeometry.FINE_POSITIONS - 1, HandGeometry.sweepIndex(59, 999));
+    }
+
+    private static void assertDirection(float angle, int position) {
+        double radians = Math.toRadians(angle);
+        assertEquals(angle + " degrees", Math.sin(radians), HandGeometry.SIN[position], 1e-5);
+        assertEquals(angle + " degrees", Math.cos(radians), HandGeometry.COS[position], 1e-5);
+    }
+}
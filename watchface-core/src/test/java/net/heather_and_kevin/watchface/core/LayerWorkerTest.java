@@ -0,0 +1,375 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LayerWorkerTest {
+    private static final int SIZE = 64;
+
+    private final ManualExecutor executor = new ManualExecutor();
+    private final RecordingRenderTarget factory = new RecordingRenderTarget(SIZE, SIZE);
+    private final LayerWorker worker = new LayerWorker(executor, factory);
+
+    @Test
+    public void nothingIsPublishedUntilABuildFinishes() {
+        worker.request(SIZE, SIZE, fill(0xFF0000FF));
+        assertNull(worker.acquire());
+
+        executor.runAll();
+        Layer layer = worker.acquire();
+        assertEquals(SIZE, layer.getWidth());
+        assertSame(layer, worker.acquire());
+        assertEquals(1, worker.getBuilds());
+    }
+
+    @Test
+    public void supersededRequestsAreCancelled() {
+        CountingPainter first = new CountingPainter();
+        CountingPainter second = new CountingPainter();
+        CountingPainter third = new CountingPainter();
+        worker.request(SIZE, SIZE, first);
+        worker.request(SIZE, SIZE, second);
+        worker.request(SIZE, SIZE, third);
+        executor.runAll();
+
+        assertEquals(0, first.paints);
+        assertEquals(0, second.paints);
+        assertEquals(1, third.paints);
+        assertEquals(2, worker.getCancelled());
+        assertEquals(1, worker.getBuilds());
+    }
+
+    @Test
+    public void requestsArrivingDuringABuildDropItsResult() {
+        final CountingPainter next = new CountingPainter();
+        worker.request(SIZE, SIZE, new LayerWorker.Painter() {
+            @Override
+            public void paint(RenderTarget layer) {
+                worker.request(SIZE, SIZE, next);
+            }
+        });
+        executor.runAll();
+
+        assertEquals(1, next.paints);
+        assertEquals(1, worker.getCancelled());
+        assertEquals(1, worker.getBuilds());
+        assertEquals(1, factory.getLayersCreated());
+    }
+
+    @Test
+    public void layersAreDoubleBuffered() {
+        Layer previous = null;
+        for (int i = 0; i < 10; i++) {
+            worker.request(SIZE, SIZE, fill(0xFF000000 | i));
+            executor.runAll();
+            Layer layer = worker.acquire();
+            assertNotSame(previous, layer);
+            previous = layer;
+        }
+        assertEquals(2, factory.getLayersCreated());
+    }
+
+    @Test
+    public void unacquiredLayersAreReused() {
+        for (int i = 0; i < 10; i++) {
+            worker.request(SIZE, SIZE, fill(0xFF000000 | i));
+            executor.runAll();
+        }
+        worker.acquire();
+        assertEquals(2, factory.getLayersCreated());
+    }
+
+    @Test
+    public void resizedRequestsReplaceTheSpare() {
+        worker.request(SIZE, SIZE, fill(0xFF000000));
+        executor.runAll();
+        Layer small = worker.acquire();
+        worker.request(SIZE, SIZE, fill(0xFF000000));
+        executor.runAll();
+        worker.acquire();
+
+        worker.request(SIZE * 2, SIZE * 2, fill(0xFF000000));
+        executor.runAll();
+        Layer large = worker.acquire();
+        assertEquals(SIZE * 2, large.getWidth());
+        assertTrue(isReleased(small));
+    }
+
+    @Test
+    public void theAcquiredLayerIsNeverPaintedOver() {
+        RasterRenderTarget raster = new RasterRenderTarget(SIZE, SIZE);
+        LayerWorker worker = new LayerWorker(executor, raster);
+        worker.request(SIZE, SIZE, fill(0xFFFF0000));
+        executor.runAll();
+        Layer front = worker.acquire();
+        int[] before = pixels(front);
+
+        for (int i = 0; i < 5; i++) {
+            worker.request(SIZE, SIZE, fill(0xFF00FF00 + i));
+            executor.runAll();
+        }
+        assertArrayEquals(before, pixels(front));
+    }
+
+    @Test
+    public void framesNeverSeeAHalfPaintedLayer() throws Exception {
+        RasterRenderTarget raster = new RasterRenderTarget(SIZE, SIZE);
+        final LayerWorker worker = new LayerWorker(Executors.newSingleThreadExecutor(), raster);
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread requester = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 500; i++) {
+                    worker.request(SIZE, SIZE, halves(0xFF000000 | i * 997));
+                    Thread.yield();
+                }
+                done.set(true);
+            }
+        });
+        requester.start();
+
+        int frames = 0;
+        try {
+            while (!done.get() || frames < 100) {
+                Layer layer = worker.acquire();
+                if (layer != null) {
+                    int[] pixels = pixels(layer);
+                    assertEquals("frame " + frames, pixels[0], pixels[pixels.length - 1]);
+                    frames++;
+                }
+            }
+        } finally {
+            requester.join();
+            worker.shutdown();
+        }
+        assertTrue(worker.getBuilds() > 0);
+    }
+
+    @Test
+    public void shutdownReleasesBothBuffers() {
+        worker.request(SIZE, SIZE, fill(0xFF000000));
+        executor.runAll();
+        Layer front = worker.acquire();
+        worker.request(SIZE, SIZE, fill(0xFF000000));
+        executor.runAll();
+        worker.acquire();
+
+        worker.request(SIZE, SIZE, fill(0xFF000000));
+        worker.shutdown();
+        executor.runAll();
+        assertTrue(isReleased(front));
+        assertEquals(1, worker.getCancelled());
+    }
+
+    @Test
+    public void trimReleasesBothBuffersAndTheNextRequestAllocates() {
+        worker.request(SIZE, SIZE, fill(0xFF000000));
+        executor.runAll();
+        Layer front = worker.acquire();
+
+        worker.trim();
+        assertNull(worker.acquire());
+        executor.runAll();
+        assertTrue(isReleased(front));
+
+        worker.request(SIZE, SIZE, fill(0xFF000000));
+        executor.runAll();
+        assertNotSame(front, worker.acquire());
+        assertEquals(2, factory.getLayersCreated());
+    }
+
+    @Test
+    public void tasksRunAfterTheQueuedReleasesAndTrims() {
+        worker.request(SIZE, SIZE, fill(0xFF000000));
+        executor.runAll();
+        final Layer front = worker.acquire();
+        final Layer replaced = factory.createLayer(SIZE, SIZE);
+
+        worker.releaseAfterPending(replaced);
+        worker.trim();
+        final boolean[] ran = new boolean[1];
+        worker.runAfterPending(new Runnable() {
+            @Override
+            public void run() {
+                assertTrue(isReleased(replaced));
+                assertTrue(isReleased(front));
+                ran[0] = true;
+            }
+        });
+        assertFalse(ran[0]);
+        executor.runAll();
+        assertTrue(ran[0]);
+    }
+
+    @Test
+    public void frameRendererRebuildsTrimmedLayersOnTheNextFrame() {
+        FrameRenderer renderer = TestFaces.newRenderer();
+        renderer.setSurface(320, 320, true, 30f);
+        RasterRenderTarget screen = new RasterRenderTarget(320, 320);
+        renderer.setLayerWorker(new LayerWorker(executor, screen));
+        executor.runAll();
+        renderer.draw(screen, 10, 8, 37, 0, false);
+        int[] before = screen.getImage().getRGB(0, 0, 320, 320, null, 0, 320);
+
+        renderer.trimMemory();
+        executor.runAll();
+        renderer.draw(screen, 10, 8, 37, 0, false);
+        executor.runAll();
+        renderer.draw(screen, 10, 8, 37, 0, false);
+        assertArrayEquals(before, screen.getImage().getRGB(0, 0, 320, 320, null, 0, 320));
+    }
+
+    @Test
+    public void frameRendererFillsUntilTheFirstLayerIsPublished() {
+        FrameRenderer renderer = TestFaces.newRenderer();
+        renderer.setSurface(320, 320, true, 30f);
+        RasterRenderTarget screen = new RasterRenderTarget(320, 320);
+        renderer.setLayerWorker(new LayerWorker(executor, screen));
+
+        renderer.draw(screen, 10, 8, 37, 0, false);
+        assertEquals(TestFaces.BACKGROUND, screen.getImage().getRGB(160, 80));
+
+        executor.runAll();
+        RasterRenderTarget inline = new RasterRenderTarget(320, 320);
+        FrameRenderer reference = TestFaces.newRenderer();
+        reference.setSurface(320, 320, true, 30f);
+        reference.draw(inline, 10, 8, 37, 0, false);
+        renderer.draw(screen, 10, 8, 37, 0, false);
+        assertArrayEquals(inline.getImage().getRGB(0, 0, 320, 320, null, 0, 320),
+                screen.getImage().getRGB(0, 0, 320, 320, null, 0, 320));
+    }
+
+    @Test
+    public void frameRendererOnlyCompositesOnTheFramePath() {
+        FrameRenderer renderer = TestFaces.newRenderer();
+        renderer.setSurface(320, 320, true, 30f);
+        RecordingRenderTarget screen = new RecordingRenderTarget(320, 320);
+        LayerWorker worker = new LayerWorker(executor, screen);
+        renderer.setLayerWorker(worker);
+        executor.runAll();
+
+        screen.beginFrame();
+        renderer.draw(screen, 10, 8, 37, 0, false);
+        assertEquals(0, screen.getLayersCreated());
+        assertEquals(0, screen.getLayersOpened());
+        assertEquals(1, screen.getDrawCalls(RecordingRenderTarget.OP_LAYER));
+
+        // rapid surface changes only build the last one
+        renderer.setSurface(300, 300, true, 0f);
+        renderer.invalidateStaticLayer();
+        renderer.setSurface(320, 320, true, 30f);
+        executor.runAll();
+        assertEquals(2, worker.getCancelled());
+        assertEquals(2, worker.getBuilds());
+    }
+
+    private static LayerWorker.Painter fill(final int color) {
+        return new LayerWorker.Painter() {
+            @Override
+            public void paint(RenderTarget layer) {
+                layer.drawColor(color);
+            }
+        };
+    }
+
+    /**
+     * Paints the top and bottom halves separately, yielding in between.
+     */
+    private static LayerWorker.Painter halves(final int color) {
+        final Style style = Style.fill(color, false);
+        return new LayerWorker.Painter() {
+            @Override
+            public void paint(RenderTarget layer) {
+                layer.drawRect(0, 0, SIZE, SIZE / 2, style);
+                Thread.yield();
+                layer.drawRect(0, SIZE / 2, SIZE, SIZE, style);
+            }
+        };
+    }
+
+    private static int[] pixels(Layer layer) {
+        RasterRenderTarget copy = new RasterRenderTarget(SIZE, SIZE);
+        copy.drawLayer(layer, 0, 0);
+        return copy.getImage().getRGB(0, 0, SIZE, SIZE, null, 0, SIZE);
+    }
+
+    private boolean isReleased(Layer layer) {
+        try {
+            factory.drawLayer(layer, 0, 0);
+            return false;
+        } catch (IllegalStateException e) {
+            return true;
+        }
+    }
+
+    private static class CountingPainter implements LayerWorker.Painter {
+        int paints;
+
+        @Override
+        public void paint(RenderTarget layer) {
+            paints++;
+        }
+    }
+
+    /**
+     * Runs queued work only when asked to, on the test thread.
+     */
+    private static class ManualExecutor extends AbstractExecutorService {
+        private final Queue<Runnable> queue = new ArrayDeque<>();
+        private boolean shutdown;
+
+        void runAll() {
+            Runnable task;
+            while ((task = queue.poll()) != null) {
+                task.run();
+            }
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            queue.add(command);
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown && queue.isEmpty();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return isTerminated();
+        }
+    }
+}
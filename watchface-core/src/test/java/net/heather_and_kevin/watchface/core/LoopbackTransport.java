@@ -0,0 +1,57 @@
+package net.heather_and_kevin.watchface.core;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * An in-memory {@link ConfigTransport} standing in for the Wearable Data Layer. Sent messages
+ * queue up until {@link #deliver}, and can be dropped to simulate a lost message.
+ */
+class LoopbackTransport implements ConfigTransport {
+    private final Queue<byte[]> outgoing = new ArrayDeque<>();
+    private LoopbackTransport peer;
+    private Receiver receiver;
+    private int dropNext;
+    long messagesSent;
+    long bytesSent;
+
+    static LoopbackTransport[] pair() {
+        LoopbackTransport phone = new LoopbackTransport();
+        LoopbackTransport watch = new LoopbackTransport();
+        phone.peer = watch;
+        watch.peer = phone;
+        return new LoopbackTransport[]{phone, watch};
+    }
+
+    @Override
+    public void send(byte[] message) {
+        messagesSent++;
+        bytesSent += message.length;
+        if (dropNext > 0) {
+            dropNext--;
+            return;
+        }
+        outgoing.add(message);
+    }
+
+    @Override
+    public void setReceiver(Receiver receiver) {
+        this.receiver = receiver;
+    }
+
+    void dropNext(int messages) {
+        dropNext = messages;
+    }
+
+    /**
+     * Hands every queued message to the other end.
+     */
+    void deliver() {
+        byte[] message;
+        while ((message = outgoing.poll()) != null) {
+            if (peer.receiver != null) {
+                peer.receiver.onMessage(message);
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PixelFileCacheTest {
+    private static final String KEY = PixelFileCache.key("interactive", 8, 4, 30, true, 0x1234);
+    private static final int BYTES = 8 * 4 * 4;
+
+    private File directory;
+    private PixelFileCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("pixels").toFile();
+        cache = new PixelFileCache(directory, "v1", 1024 * 1024);
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void pixelsRoundTrip() throws IOException {
+        cache.write(KEY, 8, 4, 4, 17, pixels(BYTES, (byte) 3));
+
+        PixelFileCache.Entry entry = cache.read(KEY);
+        assertEquals(8, entry.width);
+        assertEquals(4, entry.height);
+        assertEquals(4, entry.bytesPerPixel);
+        assertEquals(17, entry.extra);
+        assertEquals(BYTES, entry.pixels.remaining());
+        for (int i = 0; i < BYTES; i++) {
+            assertEquals((byte) (3 + i), entry.pixels.get(i));
+        }
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void missingEntriesMiss() {
+        assertNull(cache.read(KEY));
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void keysSeparateSizeInsetsAndTheme() {
+        assertFalse(KEY.equals(PixelFileCache.key("interactive", 8, 4, 0, true, 0x1234)));
+        assertFalse(KEY.equals(PixelFileCache.key("interactive", 8, 4, 30, false, 0x1234)));
+        assertFalse(KEY.equals(PixelFileCache.key("interactive", 4, 8, 30, true, 0x1234)));
+        assertFalse(KEY.equals(PixelFileCache.key("interactive", 8, 4, 30, true, 0x1235)));
+        assertFalse(KEY.equals(PixelFileCache.key("ambient", 8, 4, 30, true, 0x1234)));
+    }
+
+    @Test
+    public void otherVersionsAreNeverReadAndGetPruned() throws IOException {
+        cache.write(KEY, 8, 4, 4, 0, pixels(BYTES, (byte) 0));
+        PixelFileCache upgraded = new PixelFileCache(directory, "v2", 1024 * 1024);
+
+        assertNull(upgraded.read(KEY));
+        upgraded.pruneStale();
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void truncatedEntriesAreDeleted() throws IOException {
+        cache.write(KEY, 8, 4, 4, 0, pixels(BYTES, (byte) 0));
+        File file = directory.listFiles()[0];
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(file.length() - 1);
+        raf.close();
+
+        assertNull(cache.read(KEY));
+        assertEquals(1, cache.getInvalid());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesAreEvicted() throws IOException {
+        int entryBytes = PixelFileCache.HEADER_BYTES + BYTES;
+        cache = new PixelFileCache(directory, "v1", 2 * entryBytes);
+        String a = PixelFileCache.key("a", 8, 4, 0, true, 0);
+        String b = PixelFileCache.key("b", 8, 4, 0, true, 0);
+        String c = PixelFileCache.key("c", 8, 4, 0, true, 0);
+
+        cache.write(a, 8, 4, 4, 0, pixels(BYTES, (byte) 0));
+        cache.write(b, 8, 4, 4, 0, pixels(BYTES, (byte) 0));
+        // make a the most recently used even on file systems with coarse timestamps
+        new File(directory, "v1-" + b + ".px").setLastModified(1000);
+        new File(directory, "v1-" + a + ".px").setLastModified(2000);
+        cache.write(c, 8, 4, 4, 0, pixels(BYTES, (byte) 0));
+
+        assertNotNull(cache.read(a));
+        assertNull(cache.read(b));
+        assertNotNull(cache.read(c));
+        assertEquals(1, cache.getEvictions());
+        assertTrue(cache.getSizeBytes() <= 2 * entryBytes);
+    }
+
+    @Test
+    public void enginesSharingTheDirectoryDontTripEachOtherUp() throws Exception {
+        // room for one entry, so writing either key evicts the other
+        final long maxBytes = PixelFileCache.HEADER_BYTES + BYTES;
+        final PixelFileCache[] caches = {
+                new PixelFileCache(directory, "v1", maxBytes),
+                new PixelFileCache(directory, "v1", maxBytes)
+        };
+        final String other = PixelFileCache.key("ambient", 8, 4, 30, true, 0x1234);
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread[] writers = new Thread[caches.length];
+        for (int w = 0; w < writers.length; w++) {
+            final PixelFileCache writer = caches[w];
+            final byte first = (byte) (w * 100);
+            writers[w] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 200; i++) {
+                            writer.write(KEY, 8, 4, 4, first, pixels(BYTES, first));
+                            writer.write(other, 8, 4, 4, first, pixels(BYTES, first));
+                            // a new engine starting up while the other writes
+                            writer.pruneStale();
+                            for (String key : new String[]{KEY, other}) {
+                                PixelFileCache.Entry entry = writer.read(key);
+                                if (entry != null) {
+                                    assertIntact(entry);
+                                }
+                            }
+                        }
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    }
+                }
+            });
+        }
+        for (Thread writer : writers) {
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals(Collections.<Throwable>emptyList(), failures);
+        assertEquals(0, caches[0].getInvalid() + caches[1].getInvalid());
+        // one entry and no temporary files left behind
+        assertEquals(1, directory.listFiles().length);
+        PixelFileCache.Entry left = caches[0].read(KEY);
+        assertIntact(left != null ? left : caches[0].read(other));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void writesMustMatchTheSize() throws IOException {
+        cache.write(KEY, 8, 4, 4, 0, pixels(BYTES - 1, (byte) 0));
+    }
+
+    /**
+     * Pixels from one writer, not a mix: each byte follows the first as {@link #pixels} wrote it.
+     */
+    private static void assertIntact(PixelFileCache.Entry entry) {
+        assertNotNull(entry);
+        byte first = (byte) entry.extra;
+        for (int i = 0; i < BYTES; i++) {
+            assertEquals((byte) (first + i), entry.pixels.get(i));
+        }
+    }
+
+    private static ByteBuffer pixels(int bytes, byte first) {
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        for (int i = 0; i < bytes; i++) {
+            buffer.put((byte) (first + i));
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
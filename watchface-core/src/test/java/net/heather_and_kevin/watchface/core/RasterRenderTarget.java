@@ -0,0 +1,177 @@
+package net.heather_and_kevin.watchface.core;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A JVM {@link RenderTarget} that rasterizes into a BufferedImage with Java2D, for golden-image
+ * tests. Anti-aliasing and stroking differ from Skia in the last bit, so compare with a
+ * tolerance.
+ */
+class RasterRenderTarget implements RenderTarget {
+    private final BufferedImage image;
+    private final Graphics2D graphics;
+    private final List<Shape> savedClips = new ArrayList<>();
+
+    RasterRenderTarget(int width, int height) {
+        this(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB));
+    }
+
+    private RasterRenderTarget(BufferedImage image) {
+        this.image = image;
+        this.graphics = image.createGraphics();
+        this.graphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL,
+                RenderingHints.VALUE_STROKE_PURE);
+    }
+
+    BufferedImage getImage() {
+        return image;
+    }
+
+    @Override
+    public int getWidth() {
+        return image.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return image.getHeight();
+    }
+
+    @Override
+    public void drawColor(int color) {
+        graphics.setComposite(AlphaComposite.Src);
+        graphics.setColor(new Color(color, true));
+        graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+        graphics.setComposite(AlphaComposite.SrcOver);
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, Style style) {
+        paint(new Rectangle2D.Float(left, top, right - left, bottom - top), style);
+    }
+
+    @Override
+    public void drawCircle(float centerX, float centerY, float radius, Style style) {
+        paint(new Ellipse2D.Float(centerX - radius, centerY - radius, 2 * radius, 2 * radius),
+                style);
+    }
+
+    @Override
+    public void drawLine(float startX, float startY, float stopX, float stopY, Style style) {
+        // Canvas draws lines as strokes whatever the paint style says
+        apply(style);
+        graphics.setStroke(new BasicStroke(style.strokeWidth, BasicStroke.CAP_BUTT,
+                BasicStroke.JOIN_MITER));
+        graphics.draw(new Line2D.Float(startX, startY, stopX, stopY));
+    }
+
+    @Override
+    public void drawLines(float[] points, int offset, int count, Style style) {
+        for (int i = offset; i + 3 < offset + count; i += 4) {
+            drawLine(points[i], points[i + 1], points[i + 2], points[i + 3], style);
+        }
+    }
+
+    @Override
+    public void drawText(String text, float centerX, float centerY, Style style) {
+        apply(style);
+        graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, style.antiAlias
+                ? RenderingHints.VALUE_TEXT_ANTIALIAS_ON : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+        graphics.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 1).deriveFont(style.textSize));
+        FontMetrics metrics = graphics.getFontMetrics();
+        graphics.drawString(text, centerX - metrics.stringWidth(text) / 2f,
+                centerY + (metrics.getAscent() - metrics.getDescent()) / 2f);
+    }
+
+    @Override
+    public void drawLayer(Layer layer, float left, float top) {
+        graphics.drawImage(((RasterLayer) layer).image,
+                AffineTransform.getTranslateInstance(left, top), null);
+    }
+
+    @Override
+    public int save() {
+        savedClips.add(graphics.getClip());
+        return savedClips.size();
+    }
+
+    @Override
+    public void restoreToCount(int saveCount) {
+        while (savedClips.size() >= saveCount) {
+            graphics.setClip(savedClips.remove(savedClips.size() - 1));
+        }
+    }
+
+    @Override
+    public void clipRect(float left, float top, float right, float bottom) {
+        graphics.clip(new Rectangle2D.Float(left, top, right - left, bottom - top));
+    }
+
+    @Override
+    public Layer createLayer(int width, int height) {
+        return new RasterLayer(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB));
+    }
+
+    @Override
+    public RenderTarget openLayer(Layer layer) {
+        return new RasterRenderTarget(((RasterLayer) layer).image);
+    }
+
+    private void paint(Shape shape, Style style) {
+        apply(style);
+        if (style.stroke) {
+            graphics.setStroke(new BasicStroke(style.strokeWidth, BasicStroke.CAP_BUTT,
+                    BasicStroke.JOIN_MITER));
+            graphics.draw(shape);
+        } else {
+            graphics.fill(shape);
+        }
+    }
+
+    private void apply(Style style) {
+        graphics.setColor(new Color(style.color, true));
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, style.antiAlias
+                ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+    }
+
+    private static class RasterLayer implements Layer {
+        private final BufferedImage image;
+
+        RasterLayer(BufferedImage image) {
+            this.image = image;
+        }
+
+        @Override
+        public int getWidth() {
+            return image.getWidth();
+        }
+
+        @Override
+        public int getHeight() {
+            return image.getHeight();
+        }
+
+        @Override
+        public int getByteCount() {
+            return image.getWidth() * image.getHeight() * 4;
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.Test;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RenderPlanTest {
+    @Test
+    public void defaultThemeResolvesToTheFaceColors() {
+        RenderPlan plan = TestFaces.defaultPlan();
+
+        assertEquals("default", plan.getName());
+        assertEquals(TestFaces.BACKGROUND, plan.color(RenderPlan.COLOR_BACKGROUND));
+        assertEquals(TestFaces.HAND, plan.color(RenderPlan.COLOR_HAND));
+        assertEquals(TestFaces.ACCESSORY_BACKGROUND,
+                plan.color(RenderPlan.COLOR_ACCESSORY_BACKGROUND));
+        assertEquals(30f, plan.dimension(RenderPlan.DIM_HOUR_TICK_HEIGHT), 0f);
+        assertEquals(TestFaces.SECOND_HAND, plan.secondHand.color);
+        assertNull(plan.numeral);
+        assertFalse(plan.isProceduralDial());
+    }
+
+    @Test
+    public void theTicksThemeGeneratesItsDial() {
+        RenderPlan plan = RenderPlan.compile(TestFaces.theme(TestFaces.TICKS_THEME),
+                new StylePool());
+
+        assertEquals("ticks", plan.getName());
+        assertTrue(plan.isProceduralDial());
+    }
+
+    @Test
+    public void stylesAreSharedAcrossPlans() {
+        StylePool pool = new StylePool();
+        RenderPlan first = RenderPlan.compile(TestFaces.defaultTheme(), pool);
+        int pooled = pool.size();
+        RenderPlan second = RenderPlan.compile(TestFaces.defaultTheme(), pool);
+
+        assertSame(first.hand, second.hand);
+        assertSame(first.dateToday, second.dateToday);
+        assertEquals(pooled, pool.size());
+        // the accent and second hand colors match; the date mark is a stroke, the hand a fill
+        assertEquals(first.dateToday.color, first.secondHand.color);
+    }
+
+    @Test
+    public void renderersOfOneThemeShareTheirPaints() {
+        StylePool pool = new StylePool();
+        PaintCachingTarget target = new PaintCachingTarget(320, 320);
+        drawFrames(RenderPlan.compile(TestFaces.defaultTheme(), pool), target);
+        int paints = target.paints.size();
+        drawFrames(RenderPlan.compile(TestFaces.defaultTheme(), pool), target);
+
+        // hands included: their stroke styles go through the pool too
+        assertEquals(paints, target.paints.size());
+    }
+
+    @Test
+    public void equalStylesWithinAPlanAreOneInstance() {
+        String json = themeWith("\"accessory\": \"#E5E4E2\"", "\"accessory\": \"#262626\"");
+        RenderPlan plan = RenderPlan.compile(Theme.parse(json), new StylePool());
+        // the battery track now has the level's color
+        assertSame(plan.batteryTrack, plan.batteryLevel);
+    }
+
+    @Test
+    public void numeralsFollowTheirSize() {
+        String json = themeWith("\"numeralSize\": 18", "\"numeralSize\": 0");
+        RenderPlan plan = RenderPlan.compile(Theme.parse(json), new StylePool());
+
+        assertNotNull(plan.numeral);
+        assertEquals(18f, plan.numeral.textSize, 0f);
+        RecordingRenderTarget target = new RecordingRenderTarget(320, 320);
+        DialGenerator dial = plan.newDial();
+        dial.update(320, 320, true, 0f);
+        dial.paint(target);
+        assertEquals(DialGenerator.HOUR_TICKS, target.getDrawCalls(RecordingRenderTarget.OP_TEXT));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownKeysAreRejected() {
+        RenderPlan.compile(Theme.parse(themeWith("\"handColour\": \"#FFFFFF\", \"name\": \"x\"",
+                "\"name\": \"default\"")), new StylePool());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonBooleanDialFlagsAreRejected() {
+        RenderPlan.compile(Theme.parse(themeWith("\"proceduralDial\": \"yes\"",
+                "\"proceduralDial\": \"false\"")), new StylePool());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingKeysAreRejected() {
+        RenderPlan.compile(Theme.parse("{\"background\": \"#000000\"}"), new StylePool());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeDimensionsAreRejected() {
+        RenderPlan.compile(Theme.parse(themeWith("\"hourHandWidth\": -10",
+                "\"hourHandWidth\": 10")), new StylePool());
+    }
+
+    /**
+     * An interactive and a low-bit and regular ambient frame from new renderers of {@code plan}.
+     */
+    private static void drawFrames(RenderPlan plan, RenderTarget target) {
+        FrameRenderer renderer = TestFaces.newRenderer(plan);
+        renderer.setSurface(320, 320, true, 0f);
+        renderer.draw(target, 10, 8, 37, 0, false);
+        AmbientRenderer ambient = plan.newAmbientRenderer(renderer.getGeometry());
+        ambient.setSurface(320, 320);
+        ambient.draw(target, 10, 8);
+        ambient.setDisplay(true, false);
+        ambient.draw(target, 10, 8);
+    }
+
+    /**
+     * The default theme with one entry replaced.
+     */
+    private static String themeWith(String replacement, String original) {
+        StringBuilder json = new StringBuilder("{");
+        for (String key : TestFaces.defaultTheme().keys()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            String value = TestFaces.defaultTheme().getString(key);
+            String entry = "\"" + key + "\": " + (value.matches("-?[0-9.]+")
+                    ? value : "\"" + value + "\"");
+            json.append(entry.equals(original) ? replacement : entry);
+        }
+        return json.append('}').toString();
+    }
+
+    /**
+     * Builds a paint per style identity, as the watch's Canvas backend does.
+     */
+    private static class PaintCachingTarget extends RecordingRenderTarget {
+        final Map<Style, Object> paints = new IdentityHashMap<>();
+
+        PaintCachingTarget(int width, int height) {
+            super(width, height);
+        }
+
+        @Override
+        public void drawRect(float left, float top, float right, float bottom, Style style) {
+            paint(style);
+            super.drawRect(left, top, right, bottom, style);
+        }
+
+        @Override
+        public void drawCircle(float centerX, float centerY, float radius, Style style) {
+            paint(style);
+            super.drawCircle(centerX, centerY, radius, style);
+        }
+
+        @Override
+        public void drawLine(float startX, float startY, float stopX, float stopY, Style style) {
+            paint(style);
+            super.drawLine(startX, startY, stopX, stopY, style);
+        }
+
+        @Override
+        public void drawLines(float[] points, int offset, int count, Style style) {
+            paint(style);
+            super.drawLines(points, offset, count, style);
+        }
+
+        private void paint(Style style) {
+            if (!paints.containsKey(style)) {
+                paints.put(style, new Object());
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SpriteCacheTest {
+    private final List<String> recycled = new ArrayList<>();
+    private final SpriteCache<String> cache = new SpriteCache<>(60, 300,
+            new SpriteCache.Recycler<String>() {
+                @Override
+                public void recycle(String sprite) {
+                    recycled.add(sprite);
+                }
+            });
+
+    @Test
+    public void evictsLeastRecentlyDrawnOverBudget() {
+        cache.put(0, "a", 100);
+        cache.put(1, "b", 100);
+        cache.put(2, "c", 100);
+        cache.get(0);
+        cache.put(3, "d", 100);
+
+        assertEquals(300, cache.getUsedBytes());
+        assertNull(cache.get(1));
+        assertEquals("a", cache.get(0));
+        assertEquals(1, cache.getEvictions());
+        assertEquals("[b]", recycled.toString());
+    }
+
+    @Test
+    public void keepsNewestSpriteEvenWhenOverBudget() {
+        cache.put(5, "small", 100);
+        cache.put(6, "huge", 1000);
+
+        assertEquals("huge", cache.get(6));
+        assertNull(cache.get(5));
+        assertEquals(1000, cache.getUsedBytes());
+    }
+
+    @Test
+    public void replacingAPositionRecyclesTheOldSprite() {
+        cache.put(7, "old", 100);
+        cache.put(7, "new", 120);
+
+        assertEquals(120, cache.getUsedBytes());
+        assertEquals("[old]", recycled.toString());
+        assertEquals(0, cache.getEvictions());
+    }
+
+    @Test
+    public void clearRecyclesEverything() {
+        cache.put(0, "a", 100);
+        cache.put(59, "b", 100);
+        cache.clear();
+
+        assertEquals(0, cache.getUsedBytes());
+        assertEquals(2, recycled.size());
+        assertNull(cache.get(59));
+    }
+}
@@ -0,0 +1,87 @@
+package net.heather_and_kevin.watchface.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Builds renderers configured like the watch face engine, from wear's themes, for tests that
+ * render whole frames. The default theme's dial is its background image, which isn't loaded here,
+ * so its frames show the background color without ticks; the ticks theme generates its dial. The
+ * colors below are both themes'.
+ */
+final class TestFaces {
+    /**
+     * wear's res/raw is a test resource directory of this module, see build.gradle.
+     */
+    static final String DEFAULT_THEME = "/default_theme.json";
+    static final String TICKS_THEME = "/ticks_theme.json";
+
+    static final int BACKGROUND = 0xFF333333;
+    static final int HAND = 0xFFE5E4E2;
+    static final int SECOND_HAND = 0xFFC35817;
+    static final int ACCESSORY_BACKGROUND = 0xFF1A1A1A;
+    static final int AMBIENT_HAND = 0xFFFFFFFF;
+    static final int ACCESSORY = 0xFF262626;
+    static final int HAND_ACCENT = 0xFFC35817;
+    static final int TICK = 0xFFE5E4E2;
+
+    private TestFaces() {
+    }
+
+    static Theme defaultTheme() {
+        return theme(DEFAULT_THEME);
+    }
+
+    static Theme theme(String resource) {
+        InputStream in = TestFaces.class.getResourceAsStream(resource);
+        if (in == null) {
+            throw new AssertionError(resource + " is not on the test classpath");
+        }
+        try {
+            return Theme.read(in);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    static RenderPlan defaultPlan() {
+        return RenderPlan.compile(defaultTheme(), new StylePool());
+    }
+
+    static FrameRenderer newRenderer() {
+        return newRenderer(defaultPlan());
+    }
+
+    /**
+     * As the engine does, sets the generated dial only for a plan that asks for one.
+     */
+    static FrameRenderer newRenderer(RenderPlan plan) {
+        FrameRenderer renderer = plan.newFrameRenderer();
+        if (plan.isProceduralDial()) {
+            renderer.setDial(plan.newDial());
+        }
+        return renderer;
+    }
+
+    /**
+     * @param numeralStyle null for the engine's dial without numerals
+     */
+    static DialGenerator newDial(Style numeralStyle) {
+        return new DialGenerator(4f, 26f, 10f, 52f, Style.stroke(TICK, 4f, true),
+                Style.stroke(TICK, 2f, true), numeralStyle);
+    }
+
+    static AccessoryPainter newAccessoryPainter() {
+        return defaultPlan().newAccessoryPainter();
+    }
+
+    /**
+     * The engine's ambient renderer, sharing {@code renderer}'s hand tables. Set the surface on
+     * {@code renderer} first.
+     */
+    static AmbientRenderer newAmbientRenderer(FrameRenderer renderer, int width, int height) {
+        AmbientRenderer ambient = defaultPlan().newAmbientRenderer(renderer.getGeometry());
+        ambient.setSurface(width, height);
+        return ambient;
+    }
+}
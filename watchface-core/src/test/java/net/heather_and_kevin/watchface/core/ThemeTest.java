@@ -0,0 +1,71 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ThemeTest {
+    @Test
+    public void flatObjectsParse() {
+        Theme theme = Theme.parse(" { \"name\" : \"night\", \"width\": 2.5,\n\"dim\": -1e1,"
+                + " \"on\": true } ");
+
+        assertEquals("night", theme.getString("name"));
+        assertEquals(2.5f, theme.getFloat("width"), 0f);
+        assertEquals(-10f, theme.getFloat("dim"), 0f);
+        assertEquals("true", theme.getString("on"));
+        assertTrue(theme.getBoolean("on"));
+        assertEquals(4, theme.keys().size());
+        assertFalse(theme.has("missing"));
+    }
+
+    @Test
+    public void stringEscapesAreDecoded() {
+        Theme theme = Theme.parse("{\"s\": \"a\\\"b\\\\c\\/d\\n\\u00e9\"}");
+        assertEquals("a\"b\\c/d\n\u00e9", theme.getString("s"));
+    }
+
+    @Test
+    public void colorsWithoutAlphaAreOpaque() {
+        Theme theme = Theme.parse("{\"a\": \"#333333\", \"b\": \"#80C35817\"}");
+        assertEquals(0xFF333333, theme.getColor("a"));
+        assertEquals(0x80C35817, theme.getColor("b"));
+    }
+
+    @Test
+    public void emptyObjectsParse() {
+        assertTrue(Theme.parse("{}").keys().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nestedValuesAreRejected() {
+        Theme.parse("{\"hand\": {\"width\": 10}}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void trailingCharactersAreRejected() {
+        Theme.parse("{\"a\": 1} x");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unterminatedObjectsAreRejected() {
+        Theme.parse("{\"a\": 1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateKeysAreRejected() {
+        Theme.parse("{\"a\": 1, \"a\": 2}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badLiteralsAreRejected() {
+        Theme.parse("{\"a\": nope}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badColorsAreRejected() {
+        Theme.parse("{\"a\": \"#33333\"}").getColor("a");
+    }
+}
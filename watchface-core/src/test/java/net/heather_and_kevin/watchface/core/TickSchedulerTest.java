@@ -0,0 +1,159 @@
+package net.heather_and_kevin.watchface.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TickSchedulerTest {
+    private FakeClock clock;
+    private FakeHost host;
+    private TickScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock();
+        clock.uptime = 5000;
+        clock.wall = 1458500000250L;
+        host = new FakeHost();
+        scheduler = new TickScheduler(clock, host, 1000);
+    }
+
+    @Test
+    public void alignsWakeupsToWallClockSeconds() {
+        scheduler.start();
+
+        assertEquals(1, host.invalidates);
+        assertEquals(5750, host.scheduledAt);
+
+        runUntilScheduled();
+        assertEquals(2, host.invalidates);
+        assertEquals(6750, host.scheduledAt);
+    }
+
+    @Test
+    public void doesNotDriftOverADay() {
+        scheduler.start();
+        for (int i = 0; i < 86400; i++) {
+            runUntilScheduled();
+            assertEquals(0, clock.wall % 1000);
+        }
+        assertEquals(86401, host.invalidates);
+        assertEquals(86400, scheduler.getWakeups());
+        assertEquals(0, scheduler.getMissedTicks());
+    }
+
+    @Test
+    public void realignsAfterWallClockJumpsForward() {
+        scheduler.start();
+        runUntilScheduled();
+
+        // NTP moves the wall clock 10.4 seconds ahead between two ticks
+        clock.wall += 10400;
+        runUntilScheduled();
+        long sinceJump = host.scheduledAt - clock.uptime;
+
+        assertEquals(600, sinceJump);
+        runUntilScheduled();
+        assertEquals(0, clock.wall % 1000);
+    }
+
+    @Test
+    public void keepsTickingAfterWallClockJumpsBackward() {
+        scheduler.start();
+        runUntilScheduled();
+        int before = host.invalidates;
+
+        // back by an hour: redraw and carry on within a second
+        clock.wall -= 3600 * 1000L;
+        runUntilScheduled();
+
+        assertEquals(before + 1, host.invalidates);
+        assertTrue(host.scheduledAt - clock.uptime <= 1000);
+    }
+
+    @Test
+    public void coalescesTimeTickInTheSameSecond() {
+        scheduler.start();
+        runUntilScheduled();
+        clock.advance(10);
+
+        assertFalse(scheduler.requestFrame());
+        assertEquals(2, host.invalidates);
+        assertEquals(1, scheduler.getFramesCoalesced());
+    }
+
+    @Test
+    public void countsMissedTicksWhenWokenLate() {
+        scheduler.start();
+        clock.advance(host.scheduledAt - clock.uptime + 3200);
+        scheduler.onWakeup();
+
+        assertEquals(3, scheduler.getMissedTicks());
+        assertEquals(2, host.invalidates);
+    }
+
+    @Test
+    public void stopCancelsWakeups() {
+        scheduler.start();
+        scheduler.stop();
+
+        assertEquals(-1, host.scheduledAt);
+        assertFalse(scheduler.isRunning());
+    }
+
+    @Test
+    public void clockChangeRedrawsEvenWithinTheSameSecond() {
+        scheduler.start();
+        scheduler.onClockChanged();
+
+        assertEquals(2, host.invalidates);
+    }
+
+    private void runUntilScheduled() {
+        clock.advance(host.scheduledAt - clock.uptime);
+        scheduler.onWakeup();
+    }
+
+    private static class FakeClock implements TickScheduler.Clock {
+        long uptime;
+        long wall;
+
+        void advance(long ms) {
+            uptime += ms;
+            wall += ms;
+        }
+
+        @Override
+        public long uptimeMillis() {
+            return uptime;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return wall;
+        }
+    }
+
+    private static class FakeHost implements TickScheduler.Host {
+        long scheduledAt = -1;
+        int invalidates;
+
+        @Override
+        public void scheduleWakeup(long uptimeMillis) {
+            scheduledAt = uptimeMillis;
+        }
+
+        @Override
+        public void cancelWakeup() {
+            scheduledAt = -1;
+        }
+
+        @Override
+        public void invalidate() {
+            invalidates++;
+        }
+    }
+}
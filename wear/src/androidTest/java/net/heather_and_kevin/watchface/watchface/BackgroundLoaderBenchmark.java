@@ -0,0 +1,77 @@
+package net.heather_and_kevin.watchface.watchface;
+
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import net.heather_and_kevin.watchface.core.BitmapBudget;
+import net.heather_and_kevin.watchface.core.PixelFileCache;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from asking for the backgrounds to having them on the main thread, decoding and scaling
+ * the PNGs (empty pixel cache, the first start after install) against mapping the cached pixels
+ * (every later start). Results are in logcat under the BackgroundLoaderBenchmark tag.
+ */
+public class BackgroundLoaderBenchmark extends AndroidTestCase {
+    private static final String TAG = "BackgroundLoaderBenchmark";
+    private static final int SIZE = 320;
+    private static final int RUNS = 5;
+
+    public void testColdVersusCachedLoad() throws Exception {
+        File directory = new File(getContext().getCacheDir(), "benchmark-backgrounds");
+        long decodeMs = 0;
+        long cachedMs = 0;
+        for (int i = 0; i < RUNS; i++) {
+            clear(directory);
+            decodeMs += load(directory, false);
+            cachedMs += load(directory, true);
+        }
+        clear(directory);
+
+        Log.i(TAG, String.format("decode and scale: %.1f ms", decodeMs / (float) RUNS));
+        Log.i(TAG, String.format("pixel cache: %.1f ms", cachedMs / (float) RUNS));
+    }
+
+    /**
+     * Loads with a fresh loader and cache, as after a process restart.
+     */
+    private long load(File directory, boolean expectCached) throws InterruptedException {
+        final BitmapBudget<Bitmap> budget = new BitmapBudget<>(new BitmapAllocator(), 0);
+        BackgroundLoader loader = new BackgroundLoader(getContext().getResources(),
+                R.drawable.watchface, R.drawable.watchfaceambient,
+                new PixelFileCache(directory, "benchmark", 4 * 1024 * 1024), budget);
+        final CountDownLatch loaded = new CountDownLatch(1);
+        final boolean[] fromCache = new boolean[1];
+        long start = SystemClock.elapsedRealtime();
+        loader.load(SIZE, SIZE, 0, true, false, true, new BackgroundLoader.Callback() {
+            @Override
+            public void onBackgroundsLoaded(int width, int height, Bitmap interactive,
+                                            Bitmap ambient, int ambientLitPixels,
+                                            boolean cached) {
+                fromCache[0] = cached;
+                budget.release(interactive);
+                budget.release(ambient);
+                loaded.countDown();
+            }
+        });
+        assertTrue(loaded.await(10, TimeUnit.SECONDS));
+        long elapsed = SystemClock.elapsedRealtime() - start;
+        loader.shutdown();
+        assertEquals(expectCached, fromCache[0]);
+        return elapsed;
+    }
+
+    private static void clear(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package net.heather_and_kevin.watchface.watchface;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import net.heather_and_kevin.watchface.core.ClockHand;
+import net.heather_and_kevin.watchface.core.HandGeometry;
+import net.heather_and_kevin.watchface.core.Style;
+
+/**
+ * Compares drawing a hand as an anti-aliased stroke every frame against blitting pre-rendered
+ * sprites. Run on a watch with {@code gradlew :wear:connectedAndroidTest} and read the results
+ * from logcat (tag ClockHandBenchmark).
+ */
+public class ClockHandBenchmark extends AndroidTestCase {
+    private static final String TAG = "ClockHandBenchmark";
+    private static final int FRAMES = 3600;
+    private static final int SIZE = 320;
+
+    public void testStrokeVersusSprite() {
+        Bitmap target = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        CanvasRenderTarget canvas = new CanvasRenderTarget();
+        canvas.setCanvas(new Canvas(target), SIZE, SIZE);
+
+        long strokeNanos = run(newHand(), canvas);
+
+        ClockHand spriteHand = newHand();
+        spriteHand.enableSprites(60, 4 * 1024 * 1024);
+        // first pass renders the sprites, second pass is what every later frame costs
+        long spriteFillNanos = run(spriteHand, canvas);
+        long spriteNanos = run(spriteHand, canvas);
+
+        Log.i(TAG, String.format("stroke: %.1f us/frame", strokeNanos / 1000f / FRAMES));
+        Log.i(TAG, String.format("sprite (cold): %.1f us/frame", spriteFillNanos / 1000f / FRAMES));
+        Log.i(TAG, String.format("sprite (warm): %.1f us/frame, %d KiB cached",
+                spriteNanos / 1000f / FRAMES, spriteHand.getSprites().getUsedBytes() / 1024));
+
+        target.recycle();
+    }
+
+    private static ClockHand newHand() {
+        ClockHand hand = new ClockHand(Style.fill(0xFFE5E4E2, true), 10f, 20f);
+        hand.setHandLength(SIZE / 2f - 10f);
+        return hand;
+    }
+
+    private static long run(ClockHand hand, CanvasRenderTarget canvas) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < FRAMES; i++) {
+            hand.drawHand(canvas, SIZE / 2f, SIZE / 2f, HandGeometry.secondPosition(i % 60));
+        }
+        return SystemClock.elapsedRealtimeNanos() - start;
+    }
+}
@@ -0,0 +1,68 @@
+package net.heather_and_kevin.watchface.watchface;
+
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+import android.util.Log;
+
+import net.heather_and_kevin.watchface.core.FaceTime;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Compares the per-frame cost of {@link FaceTime} with {@link Time#setToNow()} and
+ * {@link Calendar}. {@code Time} only exists on Android, so this runs on the watch; results are
+ * in logcat under the TimeSourceBenchmark tag.
+ */
+public class TimeSourceBenchmark extends AndroidTestCase {
+    private static final String TAG = "TimeSourceBenchmark";
+    private static final int ITERATIONS = 100000;
+
+    private int sink;
+
+    public void testFaceTimeVersusTimeAndCalendar() {
+        FaceTime faceTime = new FaceTime(TimeZone.getDefault());
+        Time time = new Time();
+        Calendar calendar = Calendar.getInstance();
+
+        // warm up all three before measuring
+        runFaceTime(faceTime);
+        runTime(time);
+        runCalendar(calendar);
+
+        Log.i(TAG, String.format("FaceTime.set: %d ns/op", runFaceTime(faceTime) / ITERATIONS));
+        Log.i(TAG, String.format("Time.setToNow: %d ns/op", runTime(time) / ITERATIONS));
+        Log.i(TAG, String.format("Calendar.setTimeInMillis: %d ns/op",
+                runCalendar(calendar) / ITERATIONS));
+        Log.d(TAG, "sink " + sink);
+    }
+
+    private long runFaceTime(FaceTime faceTime) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ITERATIONS; i++) {
+            faceTime.set(System.currentTimeMillis());
+            sink += faceTime.hour + faceTime.minute + faceTime.second;
+        }
+        return SystemClock.elapsedRealtimeNanos() - start;
+    }
+
+    private long runTime(Time time) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ITERATIONS; i++) {
+            time.setToNow();
+            sink += time.hour + time.minute + time.second;
+        }
+        return SystemClock.elapsedRealtimeNanos() - start;
+    }
+
+    private long runCalendar(Calendar calendar) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ITERATIONS; i++) {
+            calendar.setTimeInMillis(System.currentTimeMillis());
+            sink += calendar.get(Calendar.HOUR_OF_DAY) + calendar.get(Calendar.MINUTE)
+                    + calendar.get(Calendar.SECOND);
+        }
+        return SystemClock.elapsedRealtimeNanos() - start;
+    }
+}
@@ -0,0 +1,312 @@
+package net.heather_and_kevin.watchface.watchface;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import net.heather_and_kevin.watchface.core.AmbientPalette;
+import net.heather_and_kevin.watchface.core.BitmapBudget;
+import net.heather_and_kevin.watchface.core.PixelFileCache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * Decodes the face backgrounds off the main thread, directly at the surface size: the bounds are
+ * probed first so the decoder can subsample, and only the final scaled bitmap is kept. The
+ * ambient background is reduced to 1-bit for low-bit displays and its lit pixels are counted
+ * here too, so neither touches the main thread. Faces that draw their dial from geometry, or
+ * already hold the interactive image, can leave it out, see {@link #load}.
+ *
+ * The finished pixels are also kept in a {@link PixelFileCache}, so after a restart the same
+ * surface loads them from a mapped file instead of decoding and scaling again. Entries are keyed
+ * on a checksum of the encoded image, since resource ids aren't stable across builds.
+ *
+ * Bitmaps come from a {@link BitmapBudget}, so the ambient background is 16-bit and a reload at
+ * the same size reuses the buffers of the backgrounds it replaces.
+ */
+public class BackgroundLoader {
+    private static final String TAG = "BackgroundLoader";
+
+    public interface Callback {
+        /**
+         * Called on the main thread with bitmaps of exactly {@code width} x {@code height}, to be
+         * released to the loader's budget. {@code interactive} is null when it wasn't asked for.
+         *
+         * @param ambientLitPixels how many pixels of {@code ambient} are lit
+         * @param fromCache        whether both came from the pixel cache
+         */
+        void onBackgroundsLoaded(int width, int height, Bitmap interactive, Bitmap ambient,
+                                 int ambientLitPixels, boolean fromCache);
+    }
+
+    private final Resources resources;
+    private final int interactiveResourceId;
+    private final int ambientResourceId;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final PixelFileCache pixelCache;
+    private final BitmapBudget<Bitmap> budget;
+    private final Paint scalePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final long createdAt = SystemClock.elapsedRealtime();
+
+    /**
+     * Checksums of the encoded images for the cache keys, computed on the loader thread the first
+     * time they're needed; 0 until then.
+     */
+    private long interactiveChecksum;
+    private long ambientChecksum;
+
+    /**
+     * Bumped for every request; results from older requests are dropped.
+     */
+    private volatile int generation;
+
+    /**
+     * @param pixelCache may be shared with other loaders, or null to always decode
+     */
+    public BackgroundLoader(Resources resources, int interactiveResourceId, int ambientResourceId,
+                            PixelFileCache pixelCache, BitmapBudget<Bitmap> budget) {
+        this.resources = resources;
+        this.interactiveResourceId = interactiveResourceId;
+        this.ambientResourceId = ambientResourceId;
+        this.pixelCache = pixelCache;
+        this.budget = budget;
+        if (pixelCache != null) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    BackgroundLoader.this.pixelCache.pruneStale();
+                }
+            });
+        }
+    }
+
+    /**
+     * @param lowBitAmbient   whether to reduce the ambient background to 1-bit
+     * @param chinSize        part of the cache key, with {@code round}
+     * @param withInteractive false when only the ambient background is needed
+     */
+    public void load(final int width, final int height, final int chinSize, final boolean round,
+                     final boolean lowBitAmbient, final boolean withInteractive,
+                     final Callback callback) {
+        final int requestGeneration = ++generation;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (requestGeneration != generation) {
+                    return;
+                }
+                long start = SystemClock.elapsedRealtime();
+                if (withInteractive && interactiveChecksum == 0) {
+                    interactiveChecksum = checksum(interactiveResourceId);
+                }
+                if (ambientChecksum == 0) {
+                    ambientChecksum = checksum(ambientResourceId);
+                }
+                String interactiveKey = PixelFileCache.key("interactive", width, height, chinSize,
+                        round, interactiveChecksum);
+                String ambientKey = PixelFileCache.key(lowBitAmbient ? "ambient-1bit" : "ambient",
+                        width, height, chinSize, round, ambientChecksum);
+                int[] extra = new int[1];
+                Bitmap cachedInteractive = withInteractive
+                        ? readCached(interactiveKey, BitmapBudget.BACKGROUND, width, height, extra)
+                        : null;
+                Bitmap cachedAmbient = cachedInteractive != null || !withInteractive
+                        ? readCached(ambientKey, BitmapBudget.AMBIENT_DIAL, width, height, extra)
+                        : null;
+                if (cachedAmbient != null) {
+                    final Bitmap interactive = cachedInteractive;
+                    final Bitmap ambient = cachedAmbient;
+                    final int ambientLitPixels = extra[0];
+                    Log.d(TAG, "mapped " + width + "x" + height + " backgrounds from cache in "
+                            + (SystemClock.elapsedRealtime() - start) + " ms, "
+                            + (SystemClock.elapsedRealtime() - createdAt)
+                            + " ms after engine start");
+                    deliver(requestGeneration, width, height, interactive, ambient,
+                            ambientLitPixels, true, callback);
+                    return;
+                }
+                if (cachedInteractive != null) {
+                    budget.release(cachedInteractive);
+                }
+
+                final Bitmap interactive = withInteractive
+                        ? decodeScaled(interactiveResourceId, BitmapBudget.BACKGROUND, width, height)
+                        : null;
+                final Bitmap ambient = decodeScaled(ambientResourceId, BitmapBudget.AMBIENT_DIAL,
+                        width, height);
+
+                int[] pixels = new int[width * height];
+                ambient.getPixels(pixels, 0, width, 0, 0, width, height);
+                if (lowBitAmbient) {
+                    AmbientPalette.toOneBit(pixels);
+                    ambient.setPixels(pixels, 0, width, 0, 0, width, height);
+                }
+                final int ambientLitPixels = AmbientPalette.countLit(pixels);
+                long decodeMs = SystemClock.elapsedRealtime() - start;
+
+                Log.d(TAG, "decoded " + width + "x" + height + " backgrounds in " + decodeMs
+                        + " ms, " + (SystemClock.elapsedRealtime() - createdAt)
+                        + " ms after engine start, peak bitmap bytes " + budget.getPeakBytes()
+                        + ", ambient lit pixels " + ambientLitPixels
+                        + (lowBitAmbient ? " (1-bit)" : ""));
+
+                if (interactive != null) {
+                    writeCached(interactiveKey, BitmapBudget.BACKGROUND, interactive, 0);
+                }
+                writeCached(ambientKey, BitmapBudget.AMBIENT_DIAL, ambient, ambientLitPixels);
+                deliver(requestGeneration, width, height, interactive, ambient,
+                        ambientLitPixels, false, callback);
+            }
+        });
+    }
+
+    private void deliver(final int requestGeneration, final int width, final int height,
+                         final Bitmap interactive, final Bitmap ambient,
+                         final int ambientLitPixels, final boolean fromCache,
+                         final Callback callback) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (requestGeneration != generation) {
+                    if (interactive != null) {
+                        budget.release(interactive);
+                    }
+                    budget.release(ambient);
+                    return;
+                }
+                callback.onBackgroundsLoaded(width, height, interactive, ambient,
+                        ambientLitPixels, fromCache);
+            }
+        });
+    }
+
+    /**
+     * Copies cached pixels straight from the mapped file into a new bitmap.
+     *
+     * @param extra receives the value stored with the pixels
+     */
+    private Bitmap readCached(String key, int kind, int width, int height, int[] extra) {
+        if (pixelCache == null) {
+            return null;
+        }
+        PixelFileCache.Entry entry = pixelCache.read(key);
+        if (entry == null || entry.width != width || entry.height != height
+                || entry.bytesPerPixel != BitmapBudget.bytesPerPixel(kind)) {
+            return null;
+        }
+        Bitmap bitmap = budget.allocate(kind, width, height);
+        bitmap.copyPixelsFromBuffer(entry.pixels);
+        extra[0] = entry.extra;
+        return bitmap;
+    }
+
+    private void writeCached(String key, int kind, Bitmap bitmap, int extra) {
+        if (pixelCache == null) {
+            return;
+        }
+        ByteBuffer pixels = ByteBuffer.allocate(bitmap.getByteCount());
+        bitmap.copyPixelsToBuffer(pixels);
+        pixels.flip();
+        try {
+            pixelCache.write(key, bitmap.getWidth(), bitmap.getHeight(),
+                    BitmapBudget.bytesPerPixel(kind), extra, pixels);
+        } catch (IOException e) {
+            Log.w(TAG, "can't cache " + key, e);
+        }
+    }
+
+    /**
+     * Hit and miss counts of the pixel cache, for dump.
+     */
+    public String getCacheStats() {
+        if (pixelCache == null) {
+            return "disabled";
+        }
+        return "hits=" + pixelCache.getHits() + " misses=" + pixelCache.getMisses()
+                + " writes=" + pixelCache.getWrites() + " evictions=" + pixelCache.getEvictions()
+                + " invalid=" + pixelCache.getInvalid();
+    }
+
+    /**
+     * Drops pending work; results still in flight are released instead of delivered.
+     */
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Drops pending work but keeps the loader running; results still in flight are released
+     * instead of delivered.
+     */
+    public void cancel() {
+        generation++;
+    }
+
+    /**
+     * CRC32 of the encoded image, one more than it so that 0 means not computed yet.
+     */
+    private long checksum(int resourceId) {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        try {
+            InputStream in = resources.openRawResource(resourceId);
+            try {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    crc.update(buffer, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("can't read background " + resourceId, e);
+        }
+        return crc.getValue() + 1;
+    }
+
+    /**
+     * Decodes subsampled, then filters into a bitmap of {@code kind} from the budget.
+     */
+    private Bitmap decodeScaled(int resourceId, int kind, int width, int height) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(resources, resourceId, options);
+
+        options.inJustDecodeBounds = false;
+        options.inScaled = false;
+        options.inSampleSize = sampleSize(options.outWidth, options.outHeight, width, height);
+        Bitmap sampled = BitmapFactory.decodeResource(resources, resourceId, options);
+        budget.track(BitmapBudget.DECODE, sampled, sampled.getWidth(), sampled.getHeight(),
+                sampled.getRowBytes() / sampled.getWidth());
+
+        Bitmap scaled = budget.allocate(kind, width, height);
+        new Canvas(scaled).drawBitmap(sampled, null, new Rect(0, 0, width, height), scalePaint);
+        budget.release(sampled);
+        return scaled;
+    }
+
+    /**
+     * Largest power of two that keeps the decoded image at least as big as the target.
+     */
+    static int sampleSize(int sourceWidth, int sourceHeight, int width, int height) {
+        int sampleSize = 1;
+        while (sourceWidth / (sampleSize * 2) >= width && sourceHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+}
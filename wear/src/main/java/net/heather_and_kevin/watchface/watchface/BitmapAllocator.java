@@ -0,0 +1,29 @@
+package net.heather_and_kevin.watchface.watchface;
+
+import android.graphics.Bitmap;
+
+import net.heather_and_kevin.watchface.core.BitmapBudget;
+
+/**
+ * Makes the bitmaps of a {@link BitmapBudget}: RGB_565 for 2 bytes per pixel, ARGB_8888
+ * otherwise.
+ */
+public class BitmapAllocator implements BitmapBudget.Allocator<Bitmap> {
+    @Override
+    public Bitmap allocate(int width, int height, int bytesPerPixel) {
+        return Bitmap.createBitmap(width, height,
+                bytesPerPixel == 2 ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888);
+    }
+
+    @Override
+    public void reset(Bitmap bitmap) {
+        if (bitmap.hasAlpha()) {
+            bitmap.eraseColor(0);
+        }
+    }
+
+    @Override
+    public void free(Bitmap bitmap) {
+        bitmap.recycle();
+    }
+}
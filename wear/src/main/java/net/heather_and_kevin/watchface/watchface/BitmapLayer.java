@@ -0,0 +1,54 @@
+package net.heather_and_kevin.watchface.watchface;
+
+import android.graphics.Bitmap;
+
+import net.heather_and_kevin.watchface.core.BitmapBudget;
+import net.heather_and_kevin.watchface.core.Layer;
+
+/**
+ * A {@link Layer} backed by a Bitmap, drawn by {@link CanvasRenderTarget}.
+ */
+public class BitmapLayer implements Layer {
+    private final Bitmap bitmap;
+    private final BitmapBudget<Bitmap> budget;
+
+    public BitmapLayer(Bitmap bitmap) {
+        this(bitmap, null);
+    }
+
+    /**
+     * @param budget where the bitmap came from; it goes back there on {@link #release}
+     */
+    public BitmapLayer(Bitmap bitmap, BitmapBudget<Bitmap> budget) {
+        this.bitmap = bitmap;
+        this.budget = budget;
+    }
+
+    public Bitmap getBitmap() {
+        return bitmap;
+    }
+
+    @Override
+    public int getWidth() {
+        return bitmap.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return bitmap.getHeight();
+    }
+
+    @Override
+    public int getByteCount() {
+        return bitmap.getByteCount();
+    }
+
+    @Override
+    public void release() {
+        if (budget != null) {
+            budget.release(bitmap);
+        } else {
+            bitmap.recycle();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package net.heather_and_kevin.watchface.watchface;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+
+import net.heather_and_kevin.watchface.core.BitmapBudget;
+import net.heather_and_kevin.watchface.core.Layer;
+import net.heather_and_kevin.watchface.core.RenderTarget;
+import net.heather_and_kevin.watchface.core.Style;
+import net.heather_and_kevin.watchface.core.StylePool;
+
+import java.util.IdentityHashMap;
+
+/**
+ * The watch backend: draws into an android.graphics.Canvas. Each {@link Style} gets its Paint
+ * the first time it is used, so drawing doesn't allocate after the first frame. Paints are kept
+ * for the life of the target; with styles from a {@link StylePool} there is one per distinct
+ * style of every theme shown.
+ */
+public class CanvasRenderTarget implements RenderTarget {
+    private final IdentityHashMap<Style, Paint> paints;
+    private final BitmapBudget<Bitmap> budget;
+    private final int layerKind;
+    private Canvas canvas;
+    private int width;
+    private int height;
+    private CanvasRenderTarget layerTarget;
+    private Bitmap layerBitmap;
+
+    public CanvasRenderTarget() {
+        this(null, 0);
+    }
+
+    /**
+     * @param budget    allocates the layers this target creates, or null to allocate them
+     *                  directly
+     * @param layerKind what they are accounted as, e.g. {@link BitmapBudget#STATIC_LAYER}
+     */
+    public CanvasRenderTarget(BitmapBudget<Bitmap> budget, int layerKind) {
+        this(new IdentityHashMap<Style, Paint>(), budget, layerKind);
+    }
+
+    private CanvasRenderTarget(IdentityHashMap<Style, Paint> paints, BitmapBudget<Bitmap> budget,
+                               int layerKind) {
+        this.paints = paints;
+        this.budget = budget;
+        this.layerKind = layerKind;
+    }
+
+    /**
+     * Points the target at the canvas handed to onDraw.
+     */
+    public void setCanvas(Canvas canvas, int width, int height) {
+        this.canvas = canvas;
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void drawColor(int color) {
+        canvas.drawColor(color, PorterDuff.Mode.SRC);
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, Style style) {
+        canvas.drawRect(left, top, right, bottom, paint(style));
+    }
+
+    @Override
+    public void drawCircle(float centerX, float centerY, float radius, Style style) {
+        canvas.drawCircle(centerX, centerY, radius, paint(style));
+    }
+
+    @Override
+    public void drawLine(float startX, float startY, float stopX, float stopY, Style style) {
+        canvas.drawLine(startX, startY, stopX, stopY, paint(style));
+    }
+
+    @Override
+    public void drawLines(float[] points, int offset, int count, Style style) {
+        canvas.drawLines(points, offset, count, paint(style));
+    }
+
+    @Override
+    public void drawText(String text, float centerX, float centerY, Style style) {
+        Paint paint = paint(style);
+        // the paint is center aligned; shift the baseline so the glyph box is centered too
+        canvas.drawText(text, centerX, centerY - (paint.ascent() + paint.descent()) / 2, paint);
+    }
+
+    @Override
+    public void drawLayer(Layer layer, float left, float top) {
+        canvas.drawBitmap(((BitmapLayer) layer).getBitmap(), left, top, null);
+    }
+
+    @Override
+    public int save() {
+        return canvas.save();
+    }
+
+    @Override
+    public void restoreToCount(int saveCount) {
+        canvas.restoreToCount(saveCount);
+    }
+
+    @Override
+    public void clipRect(float left, float top, float right, float bottom) {
+        canvas.clipRect(left, top, right, bottom);
+    }
+
+    @Override
+    public Layer createLayer(int width, int height) {
+        if (budget != null) {
+            return new BitmapLayer(budget.allocate(layerKind, width, height), budget);
+        }
+        return new BitmapLayer(Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888));
+    }
+
+    @Override
+    public RenderTarget openLayer(Layer layer) {
+        if (layerTarget == null) {
+            layerTarget = new CanvasRenderTarget(paints, budget, layerKind);
+            layerTarget.canvas = new Canvas();
+        }
+        Bitmap bitmap = ((BitmapLayer) layer).getBitmap();
+        // the frame layer is opened every frame under partial redraw; don't rebind it each time
+        if (bitmap != layerBitmap) {
+            layerTarget.canvas.setBitmap(bitmap);
+            layerBitmap = bitmap;
+        }
+        layerTarget.width = bitmap.getWidth();
+        layerTarget.height = bitmap.getHeight();
+        return layerTarget;
+    }
+
+    private Paint paint(Style style) {
+        Paint paint = paints.get(style);
+        if (paint == null) {
+            paint = new Paint();
+            paint.setColor(style.color);
+            paint.setAntiAlias(style.antiAlias);
+            if (style.stroke) {
+                paint.setStyle(Paint.Style.STROKE);
+                paint.setStrokeCap(Paint.Cap.BUTT);
+                paint.setStrokeWidth(style.strokeWidth);
+            }
+            if (style.textSize > 0) {
+                paint.setTextSize(style.textSize);
+                paint.setTextAlign(Paint.Align.CENTER);
+            }
+            paints.put(style, paint);
+        }
+        return paint;
+    }
+}
@@ -0,0 +1,109 @@
+package net.heather_and_kevin.watchface.watchface;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.wearable.MessageApi;
+import com.google.android.gms.wearable.MessageEvent;
+import com.google.android.gms.wearable.Node;
+import com.google.android.gms.wearable.NodeApi;
+import com.google.android.gms.wearable.Wearable;
+
+import net.heather_and_kevin.watchface.core.ConfigTransport;
+
+/**
+ * The watch end of config sync over the Wearable Data Layer. Config arrives as messages on
+ * {@link #DATA_LAYER_PATH}; replies go back to the phone that sent the last one, or to every connected node
+ * before any arrived.
+ */
+public class DataLayerConfigTransport implements ConfigTransport,
+        GoogleApiClient.ConnectionCallbacks, MessageApi.MessageListener {
+    private static final String TAG = "DataLayerConfig";
+    private static final String PATH = DATA_LAYER_PATH;
+
+    private final GoogleApiClient client;
+    private final Runnable onConnected;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Receiver receiver;
+    private String phoneNodeId;
+
+    /**
+     * @param onConnected run on the main thread each time the client connects
+     */
+    public DataLayerConfigTransport(Context context, Runnable onConnected) {
+        this.onConnected = onConnected;
+        client = new GoogleApiClient.Builder(context)
+                .addApi(Wearable.API)
+                .addConnectionCallbacks(this)
+                .build();
+    }
+
+    public void connect() {
+        client.connect();
+    }
+
+    public void disconnect() {
+        if (client.isConnected()) {
+            Wearable.MessageApi.removeListener(client, this);
+        }
+        client.disconnect();
+    }
+
+    @Override
+    public void setReceiver(Receiver receiver) {
+        this.receiver = receiver;
+    }
+
+    @Override
+    public void send(final byte[] message) {
+        if (!client.isConnected()) {
+            return;
+        }
+        if (phoneNodeId != null) {
+            Wearable.MessageApi.sendMessage(client, phoneNodeId, PATH, message);
+            return;
+        }
+        Wearable.NodeApi.getConnectedNodes(client).setResultCallback(
+                new ResultCallback<NodeApi.GetConnectedNodesResult>() {
+                    @Override
+                    public void onResult(NodeApi.GetConnectedNodesResult result) {
+                        for (Node node : result.getNodes()) {
+                            Wearable.MessageApi.sendMessage(client, node.getId(), PATH, message);
+                        }
+                    }
+                });
+    }
+
+    @Override
+    public void onConnected(Bundle connectionHint) {
+        Wearable.MessageApi.addListener(client, this);
+        mainHandler.post(onConnected);
+    }
+
+    @Override
+    public void onConnectionSuspended(int cause) {
+        Log.d(TAG, "connection suspended: " + cause);
+    }
+
+    @Override
+    public void onMessageReceived(final MessageEvent event) {
+        if (!PATH.equals(event.getPath())) {
+            return;
+        }
+        // listeners may be called on a binder thread
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                phoneNodeId = event.getSourceNodeId();
+                if (receiver != null) {
+                    receiver.onMessage(event.getData());
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,134 @@
+package net.heather_and_kevin.watchface.watchface;
+
+import android.graphics.Bitmap;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Scaled copies of the face backgrounds keyed by (resource, width, height, mode), so that both
+ * the interactive and the ambient variant are built once per surface size and switching modes is
+ * just picking the other reference.
+ */
+public class ScaledBitmapCache {
+    public static final int MODE_INTERACTIVE = 0;
+    public static final int MODE_AMBIENT = 1;
+    public static final int MODE_AMBIENT_LOW_BIT = 2;
+
+    public interface Recycler {
+        void recycle(Bitmap bitmap);
+    }
+
+    private static final Recycler RECYCLE_NOW = new Recycler() {
+        @Override
+        public void recycle(Bitmap bitmap) {
+            bitmap.recycle();
+        }
+    };
+
+    private final Map<Key, Entry> entries = new HashMap<>();
+    private final Recycler recycler;
+
+    public ScaledBitmapCache() {
+        this(RECYCLE_NOW);
+    }
+
+    /**
+     * @param recycler frees evicted bitmaps, e.g. once a worker thread is done reading them
+     */
+    public ScaledBitmapCache(Recycler recycler) {
+        this.recycler = recycler;
+    }
+
+    public Bitmap get(int resourceId, int width, int height, int mode) {
+        Entry entry = entries.get(new Key(resourceId, width, height, mode));
+        return entry != null ? entry.bitmap : null;
+    }
+
+    /**
+     * Takes ownership of {@code bitmap}; it is recycled when evicted or replaced.
+     */
+    public void put(int resourceId, int width, int height, int mode, Bitmap bitmap) {
+        Entry previous = entries.put(new Key(resourceId, width, height, mode), new Entry(bitmap));
+        if (previous != null && previous.bitmap != bitmap) {
+            recycler.recycle(previous.bitmap);
+        }
+    }
+
+    /**
+     * Drops and recycles one entry, if it is cached.
+     */
+    public void remove(int resourceId, int width, int height, int mode) {
+        Entry entry = entries.remove(new Key(resourceId, width, height, mode));
+        if (entry != null) {
+            recycler.recycle(entry.bitmap);
+        }
+    }
+
+    /**
+     * Drops and recycles every entry that isn't for the given surface size.
+     */
+    public void retainSize(int width, int height) {
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> e = it.next();
+            if (e.getKey().width != width || e.getKey().height != height) {
+                recycler.recycle(e.getValue().bitmap);
+                it.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        for (Entry entry : entries.values()) {
+            recycler.recycle(entry.bitmap);
+        }
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+        final Bitmap bitmap;
+
+        Entry(Bitmap bitmap) {
+            this.bitmap = bitmap;
+        }
+    }
+
+    private static final class Key {
+        final int resourceId;
+        final int width;
+        final int height;
+        final int mode;
+
+        Key(int resourceId, int width, int height, int mode) {
+            this.resourceId = resourceId;
+            this.width = width;
+            this.height = height;
+            this.mode = mode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return resourceId == other.resourceId && width == other.width
+                    && height == other.height && mode == other.mode;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = resourceId;
+            result = 31 * result + width;
+            result = 31 * result + height;
+            result = 31 * result + mode;
+            return result;
+        }
+    }
+}
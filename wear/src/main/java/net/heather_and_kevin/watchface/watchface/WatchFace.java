@@ -17,30 +17,51 @@
 package net.heather_and_kevin.watchface.watchface;
 
 import android.content.BroadcastReceiver;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.graphics.Path;
-import android.graphics.RadialGradient;
 import android.graphics.Rect;
-import android.graphics.drawable.BitmapDrawable;
-import android.graphics.drawable.Drawable;
 import android.view.WindowInsets;
 import android.os.BatteryManager;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
-import android.text.format.Time;
+import android.util.Log;
 import android.view.SurfaceHolder;
 
+import net.heather_and_kevin.watchface.core.AmbientRenderer;
+import net.heather_and_kevin.watchface.core.BitmapBudget;
+import net.heather_and_kevin.watchface.core.ComplicationPipeline;
+import net.heather_and_kevin.watchface.core.ConfigReceiver;
+import net.heather_and_kevin.watchface.core.FaceConfig;
+import net.heather_and_kevin.watchface.core.FaceTime;
+import net.heather_and_kevin.watchface.core.FrameRateGovernor;
+import net.heather_and_kevin.watchface.core.FrameRenderer;
+import net.heather_and_kevin.watchface.core.FrameStats;
+import net.heather_and_kevin.watchface.core.LayerWorker;
+import net.heather_and_kevin.watchface.core.PixelFileCache;
+import net.heather_and_kevin.watchface.core.RenderPlan;
+import net.heather_and_kevin.watchface.core.StylePool;
+import net.heather_and_kevin.watchface.core.Theme;
+import net.heather_and_kevin.watchface.core.TickScheduler;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.lang.ref.WeakReference;
-import java.util.Calendar;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
@@ -55,16 +76,89 @@ public class WatchFace extends CanvasWatchFaceService {
      */
     private static final long INTERACTIVE_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
 
+    private static final String TAG = "WatchFace";
+
+    /**
+     * The last config applied from the phone and its version.
+     */
+    private static final String CONFIG_PREFERENCES = "face_config";
+
+    /**
+     * Cap on the scaled backgrounds kept on disk; a 400x400 pair takes 1.25 MB.
+     */
+    private static final long PIXEL_CACHE_MAX_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * Cap on released bitmaps kept for reuse; a theme change at 400x400 releases a static layer
+     * of 625 KB.
+     */
+    private static final long BITMAP_POOL_MAX_BYTES = 2 * 1024 * 1024;
+
+    /**
+     * Ambient frames are drawn once a minute, so that is their deadline.
+     */
+    private static final long AMBIENT_FRAME_DEADLINE_NS = TimeUnit.MINUTES.toNanos(1);
+
     /**
      * Handler message id for updating the time periodically in interactive mode.
      */
     private static final int MSG_UPDATE_TIME = 0;
 
+    /**
+     * Running engines, for {@link #onTrimMemory}; there is more than one while the face is
+     * previewed in the picker.
+     */
+    private final Set<Engine> mEngines = new HashSet<>();
+
+    /**
+     * One for all engines, e.g. the active face and a picker preview, which load the same
+     * backgrounds into the same directory.
+     */
+    private PixelFileCache mPixelCache;
+
     @Override
     public Engine onCreateEngine() {
         return new Engine();
     }
 
+    private PixelFileCache pixelCache() {
+        if (mPixelCache == null) {
+            mPixelCache = new PixelFileCache(new File(getCacheDir(), "backgrounds"),
+                    pixelCacheVersion(), PIXEL_CACHE_MAX_BYTES);
+        }
+        return mPixelCache;
+    }
+
+    /**
+     * The version code alone stays the same across development builds, so cached pixels are
+     * also tied to when this install was made.
+     */
+    private String pixelCacheVersion() {
+        long installed = 0;
+        try {
+            installed = getPackageManager().getPackageInfo(getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.w(TAG, "can't find our own package", e);
+        }
+        return "v" + BuildConfig.VERSION_CODE + "-" + Long.toHexString(installed);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        for (Engine engine : mEngines) {
+            engine.onTrimMemory(level);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        for (Engine engine : mEngines) {
+            engine.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+    }
+
     private static class EngineHandler extends Handler {
         private final WeakReference<WatchFace.Engine> mWeakReference;
 
@@ -78,7 +172,7 @@ public class WatchFace extends CanvasWatchFaceService {
             if (engine != null) {
                 switch (msg.what) {
                     case MSG_UPDATE_TIME:
-                        engine.handleUpdateTimeMessage();
+                        engine.mTickScheduler.onWakeup();
                         break;
                 }
             }
@@ -87,89 +181,193 @@ public class WatchFace extends CanvasWatchFaceService {
 
     private class Engine extends CanvasWatchFaceService.Engine {
         final Handler mUpdateTimeHandler = new EngineHandler(this);
+        final TickScheduler mTickScheduler = new TickScheduler(new TickScheduler.Clock() {
+            @Override
+            public long uptimeMillis() {
+                return SystemClock.uptimeMillis();
+            }
+
+            @Override
+            public long currentTimeMillis() {
+                return System.currentTimeMillis();
+            }
+        }, new TickScheduler.Host() {
+            @Override
+            public void scheduleWakeup(long uptimeMillis) {
+                mUpdateTimeHandler.sendEmptyMessageAtTime(MSG_UPDATE_TIME, uptimeMillis);
+            }
+
+            @Override
+            public void cancelWakeup() {
+                mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            }
+
+            @Override
+            public void invalidate() {
+                Engine.this.invalidate();
+            }
+        }, INTERACTIVE_UPDATE_RATE_MS);
         boolean mRegisteredTimeZoneReceiver = false;
         boolean mRegisteredBatteryLevelReceiver = false;
 
-        private float angle;
+        private BackgroundLoader mBackgroundLoader;
+
+        /**
+         * Face config synced from the phone, see {@link #mConfigListener}.
+         */
+        private DataLayerConfigTransport mConfigTransport;
+        private ConfigReceiver mConfigReceiver;
+        private SharedPreferences mConfigPreferences;
+
+        /**
+         * Cold start: when the engine was created, and how long until the first frame that
+         * showed the real backgrounds, or -1 before that frame.
+         */
+        private long mCreatedAtMs;
+        private long mTimeToFirstFrameMs = -1;
+        private boolean mBackgroundsFromCache;
+
+        /**
+         * Every bitmap of this engine is allocated from here and accounted per kind, see
+         * {@link #onTrimMemory}.
+         */
+        private final BitmapBudget<Bitmap> mBitmapBudget =
+                new BitmapBudget<>(new BitmapAllocator(), BITMAP_POOL_MAX_BYTES);
 
         /**
-         * Bitmap testing
+         * Set once {@link #onTrimMemory} freed the backgrounds; they are loaded again when the
+         * face is shown.
          */
-        private Bitmap mBackgroundBitmap;
-        private Bitmap mBackgroundAmbientBitmap;
-        private Bitmap mBackgroundScaledBitmap;
+        private boolean mBackgroundsTrimmed;
 
+        /**
+         * Builds the static dial layer off the UI thread; it draws with its own
+         * {@link CanvasRenderTarget} so the two threads never share paints.
+         */
+        private final LayerWorker mLayerWorker = new LayerWorker(
+                new CanvasRenderTarget(mBitmapBudget, BitmapBudget.STATIC_LAYER));
 
         /**
-         * Tick Mark Configuration
+         * Both scaled backgrounds for the current surface size, or null while
+         * {@link #mBackgroundLoader} is still decoding; the static layer falls back to
+         * {@link #mBackgroundStyle} and the ambient dial to black until then. The ambient one is
+         * 1-bit on low-bit displays.
          */
-        private float hourTickHeight = 30.0f;
+        private final ScaledBitmapCache mScaledBackgrounds = new ScaledBitmapCache(
+                new ScaledBitmapCache.Recycler() {
+                    @Override
+                    public void recycle(Bitmap bitmap) {
+                        // a queued static layer build may still be drawing it
+                        mLayerWorker.releaseAfterPending(new BitmapLayer(bitmap, mBitmapBudget));
+                    }
+                });
+        private Bitmap mInteractiveScaledBitmap;
+        private Bitmap mAmbientScaledBitmap;
+        private int mAmbientLitPixels;
+
+        /**
+         * Wraps the canvas handed to {@link #onDraw} for {@link #frameRenderer}.
+         */
+        private final CanvasRenderTarget mRenderTarget =
+                new CanvasRenderTarget(mBitmapBudget, BitmapBudget.FRAME_LAYER);
+
+        /**
+         * Colors, dimensions and styles of the current theme, compiled from res/raw. Everything
+         * below that draws was built from it; {@link #setRenderPlan} swaps the lot.
+         */
+        private RenderPlan mRenderPlan;
+        private final StylePool mStylePool = new StylePool();
 
         /**
          * Chin size
          */
         float mChinSize;
+        boolean mIsRound;
+
+        int mSurfaceWidth;
+        int mSurfaceHeight;
+
+        private FrameRenderer frameRenderer;
 
         /**
-         * Watch Hand Configuration
+         * Ambient frames: dial, hour and minute hands only, once per minute.
          */
-        private ClockHand hourHand;
-        private ClockHand minuteHand;
-        private ClockHand secondHand;
-        private float baseMountWidth = 8f;
-        private float baseMountSecondWidth = 4f;
-        private float baseMountHole = 2f;
-        private float hourHandWidth = 10.0f;
-        private float minuteHandWidth = 10.0f;
-        private float handOffsetLength = 10f;
-        private float secondHandWidth = 2f;
-        private float hourHandLengthPercent = 1f / 2.5f;
-        private float secondHandLength;
-        private float handOpeningPercent = 0.35f;
-
-        //Setting up paint colors
-        Paint mBackgroundPaint;
-
-        Paint mHandPaint;
-        Paint mHandBasePaint;
-        Paint mHandTipPaint;
-        Paint mSecondHandPaint;
-        Paint mTickPaint;
-        Paint mAccessoryPaint;
-        Paint mAccessoryBackgroundPaint;
-
-        RadialGradient mBaseGradient;
+        private AmbientRenderer mAmbientRenderer;
 
         boolean mAmbient;
-        Time mTime;
-        Calendar calander;
+        FaceTime mTime;
         final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mTime.clear(intent.getStringExtra("time-zone"));
-                mTime.setToNow();
+                if (Intent.ACTION_TIMEZONE_CHANGED.equals(intent.getAction())) {
+                    mTime.setZone(TimeZone.getTimeZone(intent.getStringExtra("time-zone")));
+                }
+                mTickScheduler.onClockChanged();
             }
         };
 
         float batteryPercent;
+        boolean mCharging;
         final BroadcastReceiver mBatteryLevelReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
                 int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
                 int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+                int status = intent.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
                 batteryPercent = level / (float)scale;
+                mCharging = status == BatteryManager.BATTERY_STATUS_CHARGING
+                        || status == BatteryManager.BATTERY_STATUS_FULL;
+                mComplications.publish(ComplicationPipeline.BATTERY, batteryPercent * 100f);
+                if (mFrameRateGovernor.setBattery(batteryPercent, mCharging)) {
+                    onFrameRateChanged();
+                }
             }
         };
 
+        /**
+         * Battery and date for the accessory discs. Changes are quantized to what the discs
+         * show and picked up by the next interactive frame. Ambient frames don't show the discs,
+         * so changes there wait for the frame that leaving ambient draws.
+         */
+        final ComplicationPipeline mComplications = new ComplicationPipeline(
+                new ComplicationPipeline.Host() {
+                    @Override
+                    public void requestFrame() {
+                        if (!mAmbient) {
+                            mTickScheduler.requestFrame();
+                        }
+                    }
+                });
+
+        /**
+         * Sweeping second hand. {@link #mSweepMaxFps} is the rate the user picked (1 keeps the
+         * ticking hand); the governor lowers it for battery and frame cost.
+         */
+        final FrameRateGovernor mFrameRateGovernor = new FrameRateGovernor();
+        int mSweepMaxFps = 1;
+
+        /**
+         * Per-phase frame timings, reported through {@link #dump}.
+         */
+        final FrameStats mFrameStats = new FrameStats();
+
         /**
          * Whether the display supports fewer bits for each color in ambient mode. When true, we
          * disable anti-aliasing in ambient mode.
          */
         boolean mLowBitAmbient;
 
+        /**
+         * Whether the display needs burn-in protection in ambient mode; the ambient face is
+         * shifted by a few pixels every minute when it does.
+         */
+        boolean mBurnInProtection;
+
         @Override
         public void onCreate(SurfaceHolder holder) {
             super.onCreate(holder);
+            mCreatedAtMs = SystemClock.elapsedRealtime();
+            mEngines.add(this);
 
             setWatchFaceStyle(new WatchFaceStyle.Builder(WatchFace.this)
                     .setCardPeekMode(WatchFaceStyle.PEEK_MODE_SHORT)
@@ -180,91 +378,107 @@ public class WatchFace extends CanvasWatchFaceService {
 
             Resources resources = WatchFace.this.getResources();
 
-            Drawable backgroundDrawable = resources.getDrawable(R.drawable.watchface, null);
-            Drawable backgroundAmbientDrawable = resources.getDrawable(R.drawable.watchfaceambient, null);
-            mBackgroundBitmap = ((BitmapDrawable) backgroundDrawable).getBitmap();
-            mBackgroundAmbientBitmap = ((BitmapDrawable) backgroundAmbientDrawable).getBitmap();
-
-
-            mBackgroundPaint = new Paint();
-            mBackgroundPaint.setColor(resources.getColor(R.color.background));
+            mBackgroundLoader = new BackgroundLoader(resources,
+                    R.drawable.watchface, R.drawable.watchfaceambient, pixelCache(),
+                    mBitmapBudget);
 
-            mTickPaint = new Paint();
-            mTickPaint.setColor(resources.getColor(R.color.tickColor));
-            mTickPaint.setAntiAlias(true);
-
-            mHandPaint = new Paint();
-            mHandPaint.setColor(resources.getColor(R.color.handColor));
-            mHandPaint.setAntiAlias(true);
-
-            mHandBasePaint= new Paint(mHandPaint);
-
-            mHandTipPaint= new Paint();
-            mHandTipPaint.setColor(resources.getColor(R.color.handTipColor));
-
-            mSecondHandPaint = new Paint();
-            mSecondHandPaint.setColor(resources.getColor(R.color.secondHandColor));
-            mSecondHandPaint.setAntiAlias(true);
+            setRenderPlan(loadRenderPlan(resources, R.raw.default_theme));
+            mFrameStats.setTracer(new FrameStats.Tracer() {
+                @Override
+                public void beginSection(String name) {
+                    Trace.beginSection(name);
+                }
 
-            mAccessoryPaint = new Paint();
-            mAccessoryPaint.setColor(resources.getColor(R.color.accessoryColor));
-            mAccessoryPaint.setStrokeWidth(2);
-            mAccessoryPaint.setStyle(Paint.Style.STROKE);
-            mAccessoryPaint.setAntiAlias(true);
+                @Override
+                public void endSection() {
+                    Trace.endSection();
+                }
+            });
 
-            mAccessoryBackgroundPaint = new Paint();
-            mAccessoryBackgroundPaint.setColor(resources.getColor(R.color.accessoryBackGroundColor));
-            mAccessoryBackgroundPaint.setAntiAlias(true);
+            mTime = new FaceTime(TimeZone.getDefault());
 
-            hourHand = new ClockHand(mHandPaint, mHandTipPaint, hourHandWidth, R.color.handAccentColor);
-            minuteHand = new ClockHand(mHandPaint, mHandTipPaint, minuteHandWidth, R.color.handAccentColor);
-            secondHand = new ClockHand(mSecondHandPaint, mHandTipPaint, secondHandWidth, handOffsetLength * 2f);
+            mFrameRateGovernor.setMaxRate(mSweepMaxFps);
+            mTickScheduler.setPeriod(mFrameRateGovernor.getFrameIntervalMs());
 
-            mTime = new Time();
-            calander = Calendar.getInstance();
+            mConfigTransport = new DataLayerConfigTransport(WatchFace.this, new Runnable() {
+                @Override
+                public void run() {
+                    // catch up on edits made while the face wasn't running
+                    mConfigReceiver.requestResync();
+                }
+            });
+            // start from the last config applied, so a restart neither flashes the default face
+            // nor loses its place in the phone's version sequence
+            mConfigPreferences = getSharedPreferences(CONFIG_PREFERENCES, MODE_PRIVATE);
+            FaceConfig restored = new FaceConfig(
+                    mConfigPreferences.getString("theme", FaceConfig.DEFAULT.theme),
+                    mConfigPreferences.getInt("sweepMaxFps", FaceConfig.DEFAULT.sweepMaxFps),
+                    mConfigPreferences.getInt("complications", FaceConfig.DEFAULT.complications));
+            mConfigReceiver = new ConfigReceiver(mConfigTransport, mConfigListener, restored,
+                    mConfigPreferences.getInt("version", 0));
+            applyConfig(restored, FaceConfig.DEFAULT.diff(restored));
+            mConfigTransport.connect();
         }
 
         @Override
         public void onApplyWindowInsets(WindowInsets insets) {
             super.onApplyWindowInsets(insets);
             mChinSize = insets.getSystemWindowInsetBottom();
+            mIsRound = insets.isRound();
+            updateHandGeometry();
+            invalidateStaticLayer();
         }
 
         @Override
         public void onDestroy() {
-            mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mEngines.remove(this);
+            mTickScheduler.stop();
+            frameRenderer.release();
+            mBackgroundLoader.shutdown();
+            mScaledBackgrounds.clear();
+            mLayerWorker.shutdown();
+            mConfigTransport.disconnect();
+            mInteractiveScaledBitmap = null;
+            mAmbientScaledBitmap = null;
+            // layers the worker still frees after this are freed outright
+            mBitmapBudget.close();
             super.onDestroy();
         }
 
         @Override
         public void onPropertiesChanged(Bundle properties) {
             super.onPropertiesChanged(properties);
-            mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+            boolean lowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+            mBurnInProtection = properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false);
+            mAmbientRenderer.setDisplay(lowBitAmbient, mBurnInProtection);
+            if (lowBitAmbient != mLowBitAmbient) {
+                if (mSurfaceWidth > 0 && mSurfaceHeight > 0) {
+                    // only the ambient background depends on low-bit; it has to be reduced to
+                    // 1-bit (or decoded again) while the interactive one stays cached
+                    mScaledBackgrounds.remove(R.drawable.watchfaceambient,
+                            mSurfaceWidth, mSurfaceHeight, ambientCacheMode());
+                    mLowBitAmbient = lowBitAmbient;
+                    loadBackgrounds();
+                } else {
+                    mLowBitAmbient = lowBitAmbient;
+                }
+            }
         }
 
         @Override
         public void onTimeTick() {
             super.onTimeTick();
-            invalidate();
+            mTickScheduler.requestFrame();
         }
 
         @Override
         public void onAmbientModeChanged(boolean inAmbientMode) {
             super.onAmbientModeChanged(inAmbientMode);
-            Resources resources = WatchFace.this.getResources();
             if (mAmbient != inAmbientMode) {
                 mAmbient = inAmbientMode;
                 invalidate();
             }
 
-            if (mAmbient && mBackgroundScaledBitmap != null) {
-                mBackgroundScaledBitmap = Bitmap.createScaledBitmap(mBackgroundAmbientBitmap,
-                        mBackgroundScaledBitmap.getWidth(), mBackgroundScaledBitmap.getHeight(), true /* filter */);
-            } else {
-                mBackgroundScaledBitmap = Bitmap.createScaledBitmap(mBackgroundBitmap,
-                        mBackgroundScaledBitmap.getWidth(), mBackgroundScaledBitmap.getHeight(), true /* filter */);
-            }
-
             // Whether the timer should be running depends on whether we're visible (as well as
             // whether we're in ambient mode), so we may need to start or stop the timer.
             updateTimer();
@@ -273,104 +487,316 @@ public class WatchFace extends CanvasWatchFaceService {
         @Override
         public void onSurfaceChanged(
                 SurfaceHolder holder, int format, int width, int height) {
-            if (mBackgroundScaledBitmap == null
-                    || mBackgroundScaledBitmap.getWidth() != width
-                    || mBackgroundScaledBitmap.getHeight() != height) {
-                mBackgroundScaledBitmap = Bitmap.createScaledBitmap(mBackgroundBitmap,
-                        width, height, true /* filter */);
-            }
+            mScaledBackgrounds.retainSize(width, height);
+            mSurfaceWidth = width;
+            mSurfaceHeight = height;
+            loadBackgrounds();
+            updateHandGeometry();
             super.onSurfaceChanged(holder, format, width, height);
         }
 
-        @Override
-        public void onDraw(Canvas canvas, Rect bounds) {
-            mTime.setToNow();
-
-            int faceWidth = bounds.width();
-            int faceHeight = bounds.height();
-            float xCenter = faceWidth / 2.0f;
-            float yCenter = faceHeight / 2.0f;
-            double handLength;
-
-            //draw background
-//            canvas.drawRect(0, 0, faceWidth, faceHeight, mBackgroundPaint);
-            canvas.drawBitmap(mBackgroundScaledBitmap, 0, 0, null);
-
-            //display other information
-            if (!isInAmbientMode()) {
-                canvas.drawText(Float.toString(faceHeight),xCenter+20,yCenter,mSecondHandPaint);
-                float xBatteryCircleCenter = xCenter;
-                float batteryOffset = (yCenter - hourTickHeight + baseMountWidth) /2f;
-                float yBatteryCircleCenter = yCenter;
-                float accessoryCircleSize = 42f;
-//                canvas.drawCircle(xBatteryCircleCenter,yBatteryCircleCenter - batteryOffset,accessoryCircleSize,mAccessoryPaint);
-                canvas.drawCircle(xBatteryCircleCenter,yBatteryCircleCenter -1f - batteryOffset,accessoryCircleSize-2,mAccessoryBackgroundPaint);
-
-//                canvas.drawCircle(xBatteryCircleCenter + batteryOffset,yBatteryCircleCenter,accessoryCircleSize,mAccessoryPaint);
-                canvas.drawCircle(xBatteryCircleCenter +1f + batteryOffset,yBatteryCircleCenter,accessoryCircleSize-2,mAccessoryBackgroundPaint);
-//
-//                canvas.drawCircle(xBatteryCircleCenter - batteryOffset, yBatteryCircleCenter, accessoryCircleSize, mAccessoryPaint);
-                canvas.drawCircle(xBatteryCircleCenter - 1f - batteryOffset, yBatteryCircleCenter, accessoryCircleSize - 2, mAccessoryBackgroundPaint);
-                Path mArc = new Path();
-
-//                mArc.addCircle(xBatteryCircleCenter - batteryOffset,
-//                        yBatteryCircleCenter,
-//                        accessoryCircleSize,
-//                        Path.Direction.CW);
+        /**
+         * Picks up the backgrounds for the current surface size from the cache, or starts
+         * decoding them. A theme that generates its dial needs only the ambient background, and
+         * a cached interactive background isn't decoded again with the ambient one.
+         */
+        private void loadBackgrounds() {
+            boolean withInteractive = !mRenderPlan.isProceduralDial();
+            mInteractiveScaledBitmap = withInteractive
+                    ? mScaledBackgrounds.get(R.drawable.watchface,
+                            mSurfaceWidth, mSurfaceHeight, ScaledBitmapCache.MODE_INTERACTIVE)
+                    : null;
+            mAmbientScaledBitmap = mScaledBackgrounds.get(R.drawable.watchfaceambient,
+                    mSurfaceWidth, mSurfaceHeight, ambientCacheMode());
+            boolean needInteractive = withInteractive && mInteractiveScaledBitmap == null;
+            if (needInteractive || mAmbientScaledBitmap == null) {
+                mBackgroundLoader.load(mSurfaceWidth, mSurfaceHeight, (int) mChinSize, mIsRound,
+                        mLowBitAmbient, needInteractive, mBackgroundsLoaded);
+            }
+            updateBackground();
+        }
 
-//                canvas.drawPath(mArc, mHandTipPaint);
+        private int ambientCacheMode() {
+            return mLowBitAmbient
+                    ? ScaledBitmapCache.MODE_AMBIENT_LOW_BIT : ScaledBitmapCache.MODE_AMBIENT;
+        }
 
-//                canvas.drawRect(oval,mHandTipPaint);
+        /**
+         * Saves each config message applied from the phone, so the next engine restores it, and
+         * applies the keys it changed.
+         */
+        final ConfigReceiver.Listener mConfigListener = new ConfigReceiver.Listener() {
+            @Override
+            public void onConfigChanged(FaceConfig config, int changed) {
+                mConfigPreferences.edit()
+                        .putString("theme", config.theme)
+                        .putInt("sweepMaxFps", config.sweepMaxFps)
+                        .putInt("complications", config.complications)
+                        .putInt("version", mConfigReceiver.getVersion())
+                        .apply();
+                if (changed != 0) {
+                    applyConfig(config, changed);
+                    invalidate();
+                }
+            }
+        };
 
-//                canvas.drawPath(mArc,mHandTipPaint);
+        /**
+         * Rebuilds only what each changed key affects: a theme rebuilds the renderers, the sweep
+         * rate only retunes the governor, and the complications only repaint the static layer.
+         */
+        private void applyConfig(FaceConfig config, int changed) {
+            if ((changed & 1 << FaceConfig.THEME) != 0) {
+                Resources resources = WatchFace.this.getResources();
+                int themeId = resources.getIdentifier(config.theme + "_theme", "raw",
+                        WatchFace.this.getPackageName());
+                if (themeId != 0) {
+                    setRenderPlan(loadRenderPlan(resources, themeId));
+                } else {
+                    Log.w(TAG, "no theme " + config.theme);
+                }
+            }
+            if ((changed & 1 << FaceConfig.SWEEP_MAX_FPS) != 0) {
+                mSweepMaxFps = config.sweepMaxFps;
+                if (mFrameRateGovernor.setMaxRate(mSweepMaxFps)) {
+                    onFrameRateChanged();
+                }
+            }
+            if ((changed & 1 << FaceConfig.COMPLICATIONS) != 0) {
+                mComplications.setEnabled(config.complications);
+            }
+        }
 
-//                canvas.drawTextOnPath(Integer.toString(calander.DAY_OF_MONTH),mArc,0,10f,mHandTipPaint);
+        final BackgroundLoader.Callback mBackgroundsLoaded = new BackgroundLoader.Callback() {
+            @Override
+            public void onBackgroundsLoaded(int width, int height, Bitmap interactive, Bitmap ambient,
+                                            int ambientLitPixels, boolean fromCache) {
+                if (interactive != null) {
+                    mScaledBackgrounds.put(R.drawable.watchface,
+                            width, height, ScaledBitmapCache.MODE_INTERACTIVE, interactive);
+                }
+                mScaledBackgrounds.put(R.drawable.watchfaceambient,
+                        width, height, ambientCacheMode(), ambient);
+                if (width != mSurfaceWidth || height != mSurfaceHeight) {
+                    mScaledBackgrounds.retainSize(mSurfaceWidth, mSurfaceHeight);
+                    return;
+                }
+                if (interactive != null) {
+                    // an ambient-only load keeps the interactive background already shown
+                    mInteractiveScaledBitmap = interactive;
+                }
+                mAmbientScaledBitmap = ambient;
+                mAmbientLitPixels = ambientLitPixels;
+                mBackgroundsFromCache = fromCache;
+                updateBackground();
+            }
+        };
 
+        private RenderPlan loadRenderPlan(Resources resources, int themeId) {
+            try {
+                long start = SystemClock.elapsedRealtimeNanos();
+                RenderPlan plan = RenderPlan.compile(
+                        Theme.read(resources.openRawResource(themeId)), mStylePool);
+                Log.d(TAG, "compiled theme " + plan.getName() + " in "
+                        + (SystemClock.elapsedRealtimeNanos() - start) / 1000 + " us");
+                return plan;
+            } catch (IOException e) {
+                throw new IllegalStateException("can't read theme " + themeId, e);
+            }
+        }
 
+        /**
+         * Rebuilds the renderers from {@code plan}. Only called when the theme changes; frames
+         * draw with what was built here.
+         */
+        private void setRenderPlan(RenderPlan plan) {
+            if (frameRenderer != null) {
+                frameRenderer.release();
+            }
+            mRenderPlan = plan;
+            frameRenderer = plan.newFrameRenderer();
+            frameRenderer.setStats(mFrameStats);
+            frameRenderer.setLayerWorker(mLayerWorker);
+            if (plan.isProceduralDial()) {
+                frameRenderer.setDial(plan.newDial());
+            }
+            frameRenderer.setComplications(mComplications, plan.newAccessoryPainter());
+            mAmbientRenderer = plan.newAmbientRenderer(frameRenderer.getGeometry());
+            mAmbientRenderer.setStats(mFrameStats);
+            mAmbientRenderer.setDisplay(mLowBitAmbient, mBurnInProtection);
+            // paints stay cached: the plans share their styles through mStylePool, so switching
+            // back to a theme finds its paints already built
+            if (mSurfaceWidth > 0 && mSurfaceHeight > 0) {
+                updateHandGeometry();
+                // the new theme may draw its dial from the image or stop needing it
+                loadBackgrounds();
             }
+        }
 
-            // draw hours / minute / second hands
-            //calculate hours
-            angle = mTime.hour / 12f * 360f + mTime.minute / 60f * 1f / 12f * 360f;
-            //display hours
-            hourHand.setHandLength(yCenter * hourHandLengthPercent);
-//            hourHand.drawHand(canvas, xCenter, yCenter, angle);
+        private void updateHandGeometry() {
+            if (mSurfaceWidth > 0 && mSurfaceHeight > 0) {
+                frameRenderer.setSurface(mSurfaceWidth, mSurfaceHeight, mIsRound, mChinSize);
+                mAmbientRenderer.setSurface(mSurfaceWidth, mSurfaceHeight);
+            }
+        }
 
-            //calculate minutes
-            angle = mTime.minute / 60f * 360f + mTime.second / 60f * 1f / 60f * 360f;
-            //display minutes
-            if (mTime.minute < 23 || mTime.minute > 35) {
-                minuteHand.setHandLength(yCenter - handOffsetLength - hourTickHeight);
+        @Override
+        public void onDraw(Canvas canvas, Rect bounds) {
+            long frameStart = SystemClock.elapsedRealtimeNanos();
+            mFrameStats.begin(FrameStats.PHASE_FRAME);
+            mTime.set(System.currentTimeMillis());
+            mComplications.publish(ComplicationPipeline.DAY_OF_MONTH, mTime.day);
+            boolean ambient = isInAmbientMode();
+
+            mRenderTarget.setCanvas(canvas, bounds.width(), bounds.height());
+            if (ambient) {
+                mAmbientRenderer.draw(mRenderTarget, mTime.hour, mTime.minute);
             } else {
-                handLength = Math.toRadians(angle);
-                minuteHand.setHandLength((float)((yCenter - mChinSize ) / -Math.cos(handLength)) - handOffsetLength - hourTickHeight);
+                frameRenderer.draw(mRenderTarget,
+                        mTime.hour, mTime.minute, mTime.second, mTime.millis,
+                        mFrameRateGovernor.isSweeping());
             }
-//            minuteHand.drawHand(canvas,xCenter,yCenter,angle);
 
-            //draw hour hand base
-//            canvas.drawCircle(xCenter, yCenter, baseMountWidth, mHandBasePaint);
+            if (mTimeToFirstFrameMs < 0 && mAmbientScaledBitmap != null) {
+                mTimeToFirstFrameMs = SystemClock.elapsedRealtime() - mCreatedAtMs;
+                Log.d(TAG, "first frame with backgrounds " + mTimeToFirstFrameMs + " ms after start"
+                        + (mBackgroundsFromCache ? " (pixel cache)" : " (decoded)"));
+            }
 
-            //calculate seconds
-            if (!isInAmbientMode()) {
-                angle = mTime.second / 60f * 360f;
+            mFrameStats.endFrame(ambient, ambient
+                    ? AMBIENT_FRAME_DEADLINE_NS
+                    : TimeUnit.MILLISECONDS.toNanos(mTickScheduler.getPeriod()));
+            if (!ambient
+                    && mFrameRateGovernor.onFrame(SystemClock.elapsedRealtimeNanos() - frameStart)) {
+                onFrameRateChanged();
+            }
+        }
 
-                if (mTime.second < 24 || mTime.second > 36) {
-                    secondHandLength = yCenter - handOffsetLength;
-                } else {
-                    handLength = Math.toRadians(angle);
-                    secondHandLength = (float)((yCenter - mChinSize ) / -Math.cos(handLength)) - handOffsetLength;
+        @Override
+        protected void dump(String prefix, FileDescriptor fd, PrintWriter out, String[] args) {
+            super.dump(prefix, fd, out, args);
+            mFrameStats.dump(out, prefix);
+            out.print(prefix);
+            out.println("tick scheduler: period=" + mTickScheduler.getPeriod() + "ms wakeups="
+                    + mTickScheduler.getWakeups() + " frames=" + mTickScheduler.getFramesRequested()
+                    + " coalesced=" + mTickScheduler.getFramesCoalesced()
+                    + " missedTicks=" + mTickScheduler.getMissedTicks());
+            out.print(prefix);
+            out.println("frame rate governor: rate=" + mFrameRateGovernor.getRate() + "fps max="
+                    + mSweepMaxFps + "fps battery=" + batteryPercent + " charging=" + mCharging
+                    + " avgFrame=" + mFrameRateGovernor.getAverageCostNanos() / 1000 + "us overruns="
+                    + mFrameRateGovernor.getOverruns() + " stepDowns="
+                    + mFrameRateGovernor.getStepDowns() + " stepUps=" + mFrameRateGovernor.getStepUps());
+            out.print(prefix);
+            out.println("ambient: lowBit=" + mLowBitAmbient + " burnIn=" + mBurnInProtection
+                    + String.format(" lit=%.1f%%", mAmbientRenderer.getLitPixelRatio() * 100)
+                    + " offset=" + mAmbientRenderer.getOffsetX() + "," + mAmbientRenderer.getOffsetY()
+                    + " cost=" + mFrameStats.getMeanNanos(FrameStats.PHASE_AMBIENT) / 1000
+                    + "us/minute");
+            if (frameRenderer.isPartialRedraw()) {
+                out.print(prefix);
+                out.println(String.format(
+                        "partial redraw: %.1f%% of the frame layer repainted per frame",
+                        frameRenderer.getDamage().getAverageFraction() * 100));
+            }
+            out.print(prefix);
+            out.println("complications: published=" + mComplications.getPublished() + " changes="
+                    + mComplications.getChanges() + " frames=" + mComplications.getFrames());
+            out.print(prefix);
+            out.println("cold start: firstFrame=" + mTimeToFirstFrameMs + "ms backgrounds="
+                    + (mBackgroundsFromCache ? "cached" : "decoded") + " pixel cache: "
+                    + mBackgroundLoader.getCacheStats());
+            out.print(prefix);
+            out.println("layer worker: builds=" + mLayerWorker.getBuilds() + " cancelled="
+                    + mLayerWorker.getCancelled() + " lastBuild="
+                    + mLayerWorker.getLastBuildNanos() / 1000 + "us");
+            out.print(prefix);
+            out.println("bitmaps: current=" + mBitmapBudget.getCurrentBytes() / 1024 + "KB peak="
+                    + mBitmapBudget.getPeakBytes() / 1024 + "KB background="
+                    + mBitmapBudget.getBytes(BitmapBudget.BACKGROUND) / 1024 + "KB ambient="
+                    + mBitmapBudget.getBytes(BitmapBudget.AMBIENT_DIAL) / 1024 + "KB static="
+                    + mBitmapBudget.getBytes(BitmapBudget.STATIC_LAYER) / 1024 + "KB frame="
+                    + mBitmapBudget.getBytes(BitmapBudget.FRAME_LAYER) / 1024 + "KB pooled="
+                    + mBitmapBudget.getPooledBytes() / 1024 + "KB allocations="
+                    + mBitmapBudget.getAllocations() + " reuses=" + mBitmapBudget.getReuses()
+                    + " trims=" + mBitmapBudget.getTrims() + " ("
+                    + mBitmapBudget.getTrimmedBytes() / 1024 + "KB)");
+            out.print(prefix);
+            out.println("theme: " + mRenderPlan.getName() + " pooled styles="
+                    + mStylePool.size());
+            out.print(prefix);
+            out.println("config sync: " + mConfigReceiver.getConfig() + " version="
+                    + mConfigReceiver.getVersion() + " received=" + mConfigReceiver.getReceived()
+                    + " (" + mConfigReceiver.getBytesReceived() + " bytes) applied="
+                    + mConfigReceiver.getApplied() + " ignored=" + mConfigReceiver.getIgnored()
+                    + " malformed=" + mConfigReceiver.getMalformed() + " resyncs="
+                    + mConfigReceiver.getResyncsRequested() + " apply mean="
+                    + mConfigReceiver.getMeanApplyNanos() / 1000 + "us max="
+                    + mConfigReceiver.getMaxApplyNanos() / 1000 + "us");
+        }
+
+        /**
+         * Frees what can be rebuilt, by how much it would cost to rebuild: pooled bitmaps at any
+         * level, the interactive layers while they aren't drawn (ambient), and the backgrounds too
+         * while the face isn't shown; those come back from the pixel cache.
+         */
+        void onTrimMemory(final int level) {
+            final long before = mBitmapBudget.getCurrentBytes();
+            boolean hidden = !isVisible() || level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN;
+            if (hidden) {
+                mBackgroundLoader.cancel();
+                mInteractiveScaledBitmap = null;
+                mAmbientScaledBitmap = null;
+                frameRenderer.setBackground(null);
+                mAmbientRenderer.setDial(null, 0);
+                mScaledBackgrounds.clear();
+                mBackgroundsTrimmed = true;
+            }
+            if (hidden || isInAmbientMode()) {
+                // after setBackground, so the rebuild it queued is dropped too
+                frameRenderer.trimMemory();
+            }
+            // the layers and backgrounds above are released on the worker, into the pool; free
+            // the pool once they're in it
+            mLayerWorker.runAfterPending(new Runnable() {
+                @Override
+                public void run() {
+                    mBitmapBudget.trimPool();
+                    Log.d(TAG, "trim level " + level + ": bitmap bytes " + before + " -> "
+                            + mBitmapBudget.getCurrentBytes());
                 }
+            });
+        }
 
-                //display seconds
-                secondHand.setHandLength(secondHandLength);
-                secondHand.drawHand(canvas, xCenter, yCenter, angle);
+        private void onFrameRateChanged() {
+            mTickScheduler.setPeriod(mFrameRateGovernor.getFrameIntervalMs());
+            Log.d(TAG, "frame rate " + mFrameRateGovernor.getRate() + " fps (battery "
+                    + batteryPercent + (mCharging ? ", charging" : "") + ", avg frame "
+                    + mFrameRateGovernor.getAverageCostNanos() / 1000 + " us, overruns "
+                    + mFrameRateGovernor.getOverruns() + ", steps down/up "
+                    + mFrameRateGovernor.getStepDowns() + "/" + mFrameRateGovernor.getStepUps() + ")");
+        }
 
-                //draw second hand base
-//                canvas.drawCircle(xCenter, yCenter, baseMountSecondWidth, mSecondHandPaint);
-            }
+        /**
+         * Marks the static dial layer as stale. It is rebuilt on the layer worker; call this
+         * whenever the surface, insets or theme changes.
+         */
+        private void invalidateStaticLayer() {
+            frameRenderer.invalidateStaticLayer();
+            invalidate();
+        }
 
-            //cork it off with a hole punched through the middle
-//            canvas.drawCircle(xCenter, yCenter, baseMountHole, mBackgroundPaint);
+        /**
+         * Hands the backgrounds to the static layer and the ambient dial.
+         */
+        private void updateBackground() {
+            // a load started under the previous theme may still deliver the image
+            frameRenderer.setBackground(mInteractiveScaledBitmap != null
+                    && !mRenderPlan.isProceduralDial()
+                    ? new BitmapLayer(mInteractiveScaledBitmap) : null);
+            mAmbientRenderer.setDial(mAmbientScaledBitmap != null
+                    ? new BitmapLayer(mAmbientScaledBitmap) : null, mAmbientLitPixels);
+            invalidate();
         }
 
         @Override
@@ -379,10 +805,13 @@ public class WatchFace extends CanvasWatchFaceService {
 
             if (visible) {
                 registerReceiver();
+                if (mBackgroundsTrimmed && mSurfaceWidth > 0 && mSurfaceHeight > 0) {
+                    mBackgroundsTrimmed = false;
+                    loadBackgrounds();
+                }
 
                 // Update time zone in case it changed while we weren't visible.
-                mTime.clear(TimeZone.getDefault().getID());
-                mTime.setToNow();
+                mTime.setZone(TimeZone.getDefault());
             } else {
                 unregisterReceiver();
             }
@@ -397,6 +826,7 @@ public class WatchFace extends CanvasWatchFaceService {
             if (!mRegisteredTimeZoneReceiver) {
                 mRegisteredTimeZoneReceiver = true;
                 IntentFilter filter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
+                filter.addAction(Intent.ACTION_TIME_CHANGED);
                 WatchFace.this.registerReceiver(mTimeZoneReceiver, filter);
             }
 
@@ -423,35 +853,25 @@ public class WatchFace extends CanvasWatchFaceService {
 
 
         /**
-         * Starts the {@link #mUpdateTimeHandler} timer if it should be running and isn't currently
-         * or stops it if it shouldn't be running but currently is.
+         * Starts the {@link #mTickScheduler} if it should be running and isn't currently or stops it
+         * if it shouldn't be running but currently is.
          */
         private void updateTimer() {
-            mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
             if (shouldTimerBeRunning()) {
-                mUpdateTimeHandler.sendEmptyMessage(MSG_UPDATE_TIME);
+                if (!mTickScheduler.isRunning()) {
+                    mTickScheduler.start();
+                }
+            } else {
+                mTickScheduler.stop();
             }
         }
 
         /**
-         * Returns whether the {@link #mUpdateTimeHandler} timer should be running. The timer should
-         * only run when we're visible and in interactive mode.
+         * Returns whether the {@link #mTickScheduler} should be running. The timer should only run
+         * when we're visible and in interactive mode.
          */
         private boolean shouldTimerBeRunning() {
             return isVisible() && !isInAmbientMode();
         }
-
-        /**
-         * Handle updating the time periodically in interactive mode.
-         */
-        private void handleUpdateTimeMessage() {
-            invalidate();
-            if (shouldTimerBeRunning()) {
-                long timeMs = System.currentTimeMillis();
-                long delayMs = INTERACTIVE_UPDATE_RATE_MS
-                        - (timeMs % INTERACTIVE_UPDATE_RATE_MS);
-                mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
-            }
-        }
     }
 }
@@ -0,0 +1,21 @@
+package net.heather_and_kevin.watchface.watchface;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BackgroundLoaderTest {
+    @Test
+    public void sampleSizeNeverDecodesBelowTheTarget() {
+        assertEquals(1, BackgroundLoader.sampleSize(320, 320, 320, 320));
+        assertEquals(1, BackgroundLoader.sampleSize(600, 600, 320, 320));
+        assertEquals(2, BackgroundLoader.sampleSize(640, 640, 320, 290));
+        assertEquals(4, BackgroundLoader.sampleSize(1600, 1600, 360, 360));
+        assertEquals(1, BackgroundLoader.sampleSize(200, 200, 320, 320));
+    }
+
+    @Test
+    public void sampleSizeIsLimitedByTheTighterAxis() {
+        assertEquals(2, BackgroundLoader.sampleSize(1600, 800, 280, 280));
+    }
+}